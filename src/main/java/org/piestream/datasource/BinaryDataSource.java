@@ -3,6 +3,8 @@ package org.piestream.datasource;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.piestream.engine.Engine;
 import org.piestream.events.Attribute;
+import org.piestream.events.PointEvent;
+import org.piestream.events.PointEventPool;
 import org.piestream.parser.Schema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,19 +15,33 @@ import java.util.*;
 /**
  * This class implements the DataSource interface for reading binary data from a file.
  * It supports reading data based on a given schema and converting it into a JSON string format.
+ * It also implements {@link EventSource}: records are then decoded straight into the typed slots of pooled
+ * {@link PointEvent}s, skipping the JSON round trip and the preprocessing in the engine.
  * It is designed to process event data in a streaming manner, enabling real-time or batch processing of large data files.
  */
-public class BinaryDataSource implements DataSource {
+public class BinaryDataSource implements DataSource, EventSource {
 
     // Logger for tracking information, warnings, and errors
     private static final Logger logger = LoggerFactory.getLogger(BinaryDataSource.class);
 
+    // Field encodings on disk
+    private static final int FIELD_BYTE = 0;
+    private static final int FIELD_SHORT = 1;
+    private static final int FIELD_INT = 2;
+    private static final int FIELD_LONG = 3;
+    private static final int FIELD_FLOAT = 4;
+    private static final int FIELD_DOUBLE = 5;
+    private static final int FIELD_STRING = 6;
+
     // Stream and schema-related variables
     private DataInputStream dataInputStream;
     private Schema schema;
     private List<Attribute> attributes;
+    private final int[] fieldTypes; // Encoding of every attribute, resolved once from the schema
+    private final PointEventPool pool; // Pool of reusable events
+    private long sequence; // Timestamp counter for schemas without a native timestamp
     private boolean hasNextRecord;
-    private String nextRecord;
+    private PointEvent nextRecord; // The pre-read record
     private ObjectMapper objectMapper; // ObjectMapper for converting data to JSON
 
     /**
@@ -37,13 +53,28 @@ public class BinaryDataSource implements DataSource {
      * @throws IOException if there is an error reading the binary file
      */
     public BinaryDataSource(String binaryFilePath, Schema schema) throws IOException {
+        this(new FileInputStream(binaryFilePath), schema);
+    }
+
+    /**
+     * Constructor for reading binary records from an arbitrary stream, e.g. a
+     * {@link ParallelDecompressingInputStream} over a compressed file.
+     *
+     * @param inputStream the stream holding the binary records, closed with this source
+     * @param schema      the schema describing the data structure
+     */
+    public BinaryDataSource(InputStream inputStream, Schema schema) {
         // Load the schema and its attributes
         this.schema = schema;
         this.attributes = schema.getAttributes();
+        this.fieldTypes = new int[attributes.size()];
+        for (int i = 0; i < attributes.size(); i++) {
+            fieldTypes[i] = fieldTypeOf(attributes.get(i));
+        }
+        this.pool = new PointEventPool(schema.getEventLayout());
 
         // Initialize the data input stream for reading binary data
-        FileInputStream fileInputStream = new FileInputStream(binaryFilePath);
-        BufferedInputStream bufferedInputStream = new BufferedInputStream(fileInputStream);
+        BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream);
         this.dataInputStream = new DataInputStream(bufferedInputStream);
 
         // Initialize ObjectMapper for JSON conversion
@@ -55,53 +86,79 @@ public class BinaryDataSource implements DataSource {
     }
 
     /**
-     * Reads the next record from the binary file, processes it according to the schema,
-     * and converts it into a JSON string.
+     * Resolves the binary encoding of an attribute from its type.
+     *
+     * @param attribute the attribute
+     * @return the field encoding
+     * @throws IllegalArgumentException if the type has no binary encoding
+     */
+    private static int fieldTypeOf(Attribute attribute) {
+        switch (attribute.getType().toLowerCase()) {
+            case "byte":
+                return FIELD_BYTE;
+            case "short":
+                return FIELD_SHORT;
+            case "int":
+            case "integer":
+                return FIELD_INT;
+            case "long":
+                return FIELD_LONG;
+            case "float":
+                return FIELD_FLOAT;
+            case "double":
+                return FIELD_DOUBLE;
+            case "string":
+                return FIELD_STRING;
+            default:
+                throw new IllegalArgumentException("Unknown data type: " + attribute.getType());
+        }
+    }
+
+    /**
+     * Reads the next record from the binary file into the typed slots of a pooled event.
      * The record's fields are read based on their types defined in the schema.
      *
-     * @return the JSON representation of the next record, or null if the end of the file is reached
+     * @return the next record, or null if the end of the file is reached
      */
-    private String readNextRecord() {
+    private PointEvent readNextRecord() {
+        PointEvent event = pool.acquire();
         try {
-            Map<String, Object> recordMap = new LinkedHashMap<>();
             // Process each attribute and read the corresponding data from the stream
-            for (Attribute attribute : attributes) {
-                String type = attribute.getType().toLowerCase();
-                switch (type) {
-                    case "byte":
-                        recordMap.put(attribute.getName(), dataInputStream.readByte());
+            for (int i = 0; i < fieldTypes.length; i++) {
+                switch (fieldTypes[i]) {
+                    case FIELD_BYTE:
+                        event.setLong(i, dataInputStream.readByte());
                         break;
-                    case "short":
-                        recordMap.put(attribute.getName(), dataInputStream.readShort());
+                    case FIELD_SHORT:
+                        event.setLong(i, dataInputStream.readShort());
                         break;
-                    case "int":
-                    case "integer":
-                        recordMap.put(attribute.getName(), dataInputStream.readInt());
+                    case FIELD_INT:
+                        event.setLong(i, dataInputStream.readInt());
                         break;
-                    case "long":
-                        recordMap.put(attribute.getName(), dataInputStream.readLong());
+                    case FIELD_LONG:
+                        event.setLong(i, dataInputStream.readLong());
                         break;
-                    case "float":
-                        recordMap.put(attribute.getName(), dataInputStream.readFloat());
+                    case FIELD_FLOAT:
+                        event.setDouble(i, dataInputStream.readFloat());
                         break;
-                    case "double":
-                        recordMap.put(attribute.getName(), dataInputStream.readDouble());
-                        break;
-                    case "string":
-                        recordMap.put(attribute.getName(), dataInputStream.readUTF());
+                    case FIELD_DOUBLE:
+                        event.setDouble(i, dataInputStream.readDouble());
                         break;
                     default:
-                        throw new IllegalArgumentException("Unknown data type: " + attribute.getType());
+                        event.setValue(i, dataInputStream.readUTF());
+                        break;
                 }
             }
-            // Convert the record map to a JSON string using ObjectMapper
-            return objectMapper.writeValueAsString(recordMap);
+            event.setTimestamp(schema.hasNativeTimestamp() ? event.extractTimestamp() : ++sequence);
+            return event;
         } catch (EOFException e) {
             // End of file reached, return null
+            pool.release(event);
             return null;
         } catch (IOException e) {
             // Log and return null in case of error reading the record
             e.printStackTrace();
+            pool.release(event);
             return null;
         }
     }
@@ -110,12 +167,42 @@ public class BinaryDataSource implements DataSource {
      * Reads the next record from the data source.
      * This method updates the `hasNextRecord` flag based on whether there are more records to read.
      *
-     * @return the current record in JSON format
+     * @return the current record in JSON format, or null if there are no more records
      */
     @Override
     public String readNext() {
+        PointEvent event = readNextEvent();
+        if (event == null) {
+            return null;
+        }
+        try {
+            // Convert the record to a JSON string using ObjectMapper
+            Map<String, Object> recordMap = new LinkedHashMap<>();
+            for (int i = 0; i < attributes.size(); i++) {
+                recordMap.put(attributes.get(i).getName(), event.get(i));
+            }
+            return objectMapper.writeValueAsString(recordMap);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            pool.release(event);
+        }
+    }
+
+    /**
+     * Reads the next record as an event whose slots and timestamp are already filled.
+     * This method updates the `hasNextRecord` flag based on whether there are more records to read.
+     *
+     * @return the current record, or null if there are no more records
+     */
+    @Override
+    public PointEvent readNextEvent() {
         // Get the current record
-        String currentRecord = this.nextRecord;
+        PointEvent currentRecord = this.nextRecord;
+        if (currentRecord == null) {
+            return null;
+        }
 
         // Read the next record
         this.nextRecord = readNextRecord();
@@ -126,6 +213,16 @@ public class BinaryDataSource implements DataSource {
         return currentRecord;
     }
 
+    /**
+     * Hands an event back to the pool of this source. Events retained by the engine are ignored.
+     *
+     * @param event the event that is no longer used by the caller
+     */
+    @Override
+    public void recycle(PointEvent event) {
+        pool.release(event);
+    }
+
     /**
      * Checks if there are more records to read.
      *
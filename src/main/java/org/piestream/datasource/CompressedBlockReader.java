@@ -0,0 +1,30 @@
+package org.piestream.datasource;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+/**
+ * Interface for readers that split a framed compressed stream into independently decompressible blocks.
+ * The framing is parsed sequentially by {@link #nextBlock()}, which only copies the compressed bytes of a block;
+ * the returned task does the actual decompression and may run on any thread.
+ * The decompressed blocks are handed back to {@link #delivered(byte[])} in stream order, which allows checks that
+ * need the whole content, like content checksums.
+ */
+public interface CompressedBlockReader {
+
+    /**
+     * Reads the next block from the compressed stream.
+     *
+     * @return a task decompressing the block, or null at the end of the stream
+     * @throws IOException if the stream cannot be read or is malformed
+     */
+    Callable<byte[]> nextBlock() throws IOException;
+
+    /**
+     * Receives the decompressed blocks in stream order.
+     *
+     * @param block the result of a task returned by {@link #nextBlock()}
+     * @throws IOException if a check over the decompressed content fails
+     */
+    void delivered(byte[] block) throws IOException;
+}
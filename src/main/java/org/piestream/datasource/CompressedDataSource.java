@@ -0,0 +1,133 @@
+package org.piestream.datasource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link DataSource} implementation that reads the lines of an LZ4 or Snappy framed file without decompressing
+ * it to disk first. The codec is recognised from the magic bytes, and the blocks are decompressed ahead of the
+ * reader by a {@link ParallelDecompressingInputStream}. Lines are decoded as UTF-8, and the optional limit
+ * behaves like in {@link FileDataSource}.
+ */
+public class CompressedDataSource implements DataSource {
+    private static final int DEFAULT_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())); // Decompression threads
+
+    private final BufferedReader reader;
+    private long limit; // The maximum number of lines to read from the file
+    private long readCount; // The number of lines that have been read so far
+    private String nextLine; // The pre-read line
+
+    /**
+     * Constructs a CompressedDataSource that reads from the specified file.
+     * No limit is imposed on the number of lines to read by default.
+     *
+     * @param filePath the path to the compressed file to read from
+     * @throws IOException if an error occurs while opening the file or its format is not recognised
+     */
+    public CompressedDataSource(String filePath) throws IOException {
+        this(filePath, Long.MAX_VALUE, DEFAULT_THREADS);
+    }
+
+    /**
+     * Constructs a CompressedDataSource with a limit on the number of lines to read.
+     *
+     * @param filePath the path to the compressed file to read from
+     * @param limit the maximum number of lines to read
+     * @throws IOException if an error occurs while opening the file or its format is not recognised
+     */
+    public CompressedDataSource(String filePath, long limit) throws IOException {
+        this(filePath, limit, DEFAULT_THREADS);
+    }
+
+    /**
+     * Constructs a CompressedDataSource with a limit on the number of lines to read and an explicit number of
+     * decompression threads.
+     *
+     * @param filePath the path to the compressed file to read from
+     * @param limit the maximum number of lines to read
+     * @param threads the number of decompression threads
+     * @throws IOException if an error occurs while opening the file or its format is not recognised
+     */
+    public CompressedDataSource(String filePath, long limit, int threads) throws IOException {
+        ParallelDecompressingInputStream in = ParallelDecompressingInputStream.open(filePath, threads);
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.limit = limit;
+        this.readCount = 0; // Initialize the read count
+        this.nextLine = readLine();
+    }
+
+    /**
+     * Reads a line from the decompressed stream.
+     */
+    private String readLine() {
+        try {
+            return reader.readLine();
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading from compressed file", e);
+        }
+    }
+
+    /**
+     * Checks if there are more lines to read from the file.
+     * If the number of lines read exceeds the limit, returns false.
+     *
+     * @return true if there are more lines to read, false otherwise
+     */
+    @Override
+    public boolean hasNext() {
+        return readCount < limit && nextLine != null;
+    }
+
+    /**
+     * Reads the next line from the file.
+     *
+     * @return the next line of the file, or null if there are no more lines to read
+     */
+    @Override
+    public String readNext() {
+        if (!hasNext()) {
+            return null; // Stop reading if the limit or the end of the file is reached
+        }
+        String line = nextLine;
+        readCount++; // Increment the read count
+        nextLine = readCount < limit ? readLine() : null;
+        return line;
+    }
+
+    /**
+     * Reads a batch of lines from the file.
+     * Returns a list of lines, up to the specified batch size.
+     * Stops reading if the read limit is exceeded or if there are no more lines.
+     *
+     * @param batchSize the number of lines to read in the batch
+     * @return a list of lines read from the file
+     */
+    @Override
+    public List<String> readBatch(int batchSize) {
+        List<String> batch = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            String line = readNext();
+            if (line == null) {
+                break; // Stop if the limit is reached or there are no more lines
+            }
+            batch.add(line);
+        }
+        return batch;
+    }
+
+    /**
+     * Closes the reader and stops the decompression threads.
+     */
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Error closing file", e);
+        }
+    }
+}
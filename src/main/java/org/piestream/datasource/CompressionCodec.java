@@ -0,0 +1,65 @@
+package org.piestream.datasource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The CompressionCodec enum lists the framed compression formats that can be read block-parallel.
+ *
+ *     LZ4_FRAME: The LZ4 frame format with independent blocks.
+ *     SNAPPY_FRAMED: The Snappy framing format.
+ */
+public enum CompressionCodec {
+    LZ4_FRAME,  // LZ4 frame format
+    SNAPPY_FRAMED; // Snappy framing format
+
+    /**
+     * Creates the block reader of this codec.
+     *
+     * @param in the compressed stream, positioned at its first byte
+     * @return a block reader for the stream
+     */
+    public CompressedBlockReader newBlockReader(InputStream in) {
+        switch (this) {
+            case LZ4_FRAME: return new Lz4FrameBlockReader(in);
+            case SNAPPY_FRAMED: return new SnappyFrameBlockReader(in);
+            default: throw new IllegalStateException("Unknown codec: " + this);
+        }
+    }
+
+    /**
+     * Recognises the codec from the magic bytes at the current position of the stream.
+     * The stream must support mark and reset; its position is left unchanged.
+     *
+     * @param in the compressed stream
+     * @return the codec, or null if the stream does not start with a known magic number
+     * @throws IOException if the stream cannot be read
+     */
+    public static CompressionCodec detect(InputStream in) throws IOException {
+        byte[] head = new byte[SnappyFrameBlockReader.STREAM_IDENTIFIER.length];
+        in.mark(head.length);
+        int length = 0;
+        int read;
+        while (length < head.length && (read = in.read(head, length, head.length - length)) > 0) {
+            length += read;
+        }
+        in.reset();
+
+        if (length >= 4) {
+            int magic = (head[0] & 0xFF) | (head[1] & 0xFF) << 8 | (head[2] & 0xFF) << 16 | (head[3] & 0xFF) << 24;
+            if (magic == Lz4FrameBlockReader.MAGIC) {
+                return LZ4_FRAME;
+            }
+        }
+        if (length == head.length) {
+            boolean snappy = true;
+            for (int i = 0; i < head.length && snappy; i++) {
+                snappy = head[i] == SnappyFrameBlockReader.STREAM_IDENTIFIER[i];
+            }
+            if (snappy) {
+                return SNAPPY_FRAMED;
+            }
+        }
+        return null;
+    }
+}
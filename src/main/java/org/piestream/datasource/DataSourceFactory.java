@@ -1,5 +1,7 @@
 package org.piestream.datasource;
 
+import org.piestream.parser.Schema;
+
 import java.io.InputStream;
 
 /**
@@ -25,6 +27,53 @@ public class DataSourceFactory {
         }
     }
 
+    /**
+     * Creates a DataSource instance that reads a file through a memory mapping.
+     *
+     * @param filePath the path to the file from which data will be read
+     * @return a MappedFileDataSource instance for the given file
+     * @throws RuntimeException if there is an error mapping the file
+     */
+    public static MappedFileDataSource createMappedFileDataSource(String filePath) {
+        try {
+            return new MappedFileDataSource(filePath);
+        } catch (Exception e) {
+            throw new RuntimeException("Error creating mapped file data source", e);
+        }
+    }
+
+    /**
+     * Creates a DataSource instance for reading the lines of an LZ4 or Snappy framed file.
+     *
+     * @param filePath the path to the compressed file from which data will be read
+     * @return a CompressedDataSource instance for the given file
+     * @throws RuntimeException if the file cannot be opened or its format is not recognised
+     */
+    public static DataSource createCompressedDataSource(String filePath) {
+        try {
+            return new CompressedDataSource(filePath);
+        } catch (Exception e) {
+            throw new RuntimeException("Error creating compressed data source", e);
+        }
+    }
+
+    /**
+     * Creates a BinaryDataSource instance for reading the records of an LZ4 or Snappy framed binary file.
+     *
+     * @param filePath the path to the compressed file from which data will be read
+     * @param schema the schema describing the records
+     * @param threads the number of decompression threads
+     * @return a BinaryDataSource instance over the decompressed content
+     * @throws RuntimeException if the file cannot be opened or its format is not recognised
+     */
+    public static BinaryDataSource createCompressedBinaryDataSource(String filePath, Schema schema, int threads) {
+        try {
+            return new BinaryDataSource(ParallelDecompressingInputStream.open(filePath, threads), schema);
+        } catch (Exception e) {
+            throw new RuntimeException("Error creating compressed binary data source", e);
+        }
+    }
+
     /**
      * Creates a DataSource instance for reading data from an InputStream.
      *
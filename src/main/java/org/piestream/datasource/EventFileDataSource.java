@@ -0,0 +1,356 @@
+package org.piestream.datasource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.piestream.events.Attribute;
+import org.piestream.events.EventLayout;
+import org.piestream.events.PointEvent;
+import org.piestream.events.PointEventPool;
+import org.piestream.parser.Schema;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DataSource} and {@link EventSource} reading the native event files written by {@link EventFileWriter}.
+ * The header is checked against the schema fingerprint and timestamp unit, so a file is only read with the schema it
+ * was written with. Records are fixed-width and decoded straight into the typed slots of pooled events;
+ * {@link #seek(long)} uses the sparse timestamp index to start at the first record at or after a given time.
+ * As a {@link DataSource} the records are returned in the raw data type of the schema (CSV lines or JSON objects),
+ * so they can be fed to {@code Engine.apply} like the original input.
+ */
+public class EventFileDataSource implements DataSource, EventSource {
+    private static final int BUFFER_SIZE = 1 << 16; // Bytes read from the file at once
+
+    private final FileChannel channel;
+    private final Schema schema;
+    private final EventLayout layout; // Layout of the decoded events
+    private final PointEventPool pool; // Pool of reusable events
+    private final boolean csv; // Whether readNext returns CSV lines instead of JSON objects
+    private final ObjectMapper objectMapper = new ObjectMapper(); // ObjectMapper for converting records to JSON
+    private final int recordSize; // Bytes of a record
+    private final int[] fieldOffsets; // Offset of every field within a record
+    private final int indexStride; // Records per index entry
+    private final long dataOffset; // File offset of the first record
+    private final long recordCount; // Number of records in the file
+    private final long[] index; // Largest timestamp before each stride
+    private final String[] strings; // String dictionary
+    private final ByteBuffer buffer; // Buffered records, starting at record bufferStart
+    private long bufferStart; // Number of the first buffered record
+    private int bufferRecords; // Number of buffered records
+    private long next; // Number of the next record to read
+
+    /**
+     * Opens an event file at its first record.
+     *
+     * @param filePath the path to the event file
+     * @param schema the schema the file was written with
+     * @throws IOException if the file cannot be read or does not match the schema
+     */
+    public EventFileDataSource(String filePath, Schema schema) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        try {
+            this.schema = schema;
+            this.layout = schema.getEventLayout();
+            this.pool = new PointEventPool(layout);
+            this.csv = "CSV".equalsIgnoreCase(schema.getRawdataType());
+            this.fieldOffsets = new int[layout.size()];
+            int offset = (layout.size() + 7) / 8;  // Fields follow the null bitmap
+            for (int i = 0; i < fieldOffsets.length; i++) {
+                fieldOffsets[i] = offset;
+                offset += EventFileWriter.fieldWidth(layout.getKind(i));
+            }
+
+            // Header
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(readAt(0, (int) Math.min(channel.size(), BUFFER_SIZE))));
+            if (header.readInt() != EventFileWriter.MAGIC) {
+                throw new IOException("Not a PieStream event file: " + filePath);
+            }
+            short version = header.readShort();
+            if (version != EventFileWriter.VERSION) {
+                throw new IOException("Unsupported event file version: " + version);
+            }
+            if (header.readLong() != schema.getFingerprint()) {
+                throw new IOException("Event file was written with a different schema: " + filePath);
+            }
+            String unit = header.readUTF();
+            if (!unit.equals(schema.getTimestampUnit().name())) {
+                throw new IOException("Event file timestamp unit " + unit + " does not match the schema unit " + schema.getTimestampUnit().name());
+            }
+            int fieldCount = header.readInt();
+            for (int i = 0; i < fieldCount; i++) {
+                header.readUTF();  // Names and types are covered by the fingerprint
+                header.readUTF();
+            }
+            this.recordSize = header.readInt();
+            this.indexStride = header.readInt();
+            if (fieldCount != layout.size() || recordSize != EventFileWriter.recordSize(layout) || indexStride <= 0) {
+                throw new IOException("Corrupt event file header: " + filePath);
+            }
+            this.dataOffset = Math.min(channel.size(), BUFFER_SIZE) - header.available();
+
+            // Footer
+            long footerOffset = ByteBuffer.wrap(readAt(channel.size() - 8, 8)).getLong();
+            if (footerOffset < dataOffset || footerOffset > channel.size() - 8) {
+                throw new IOException("Missing event file footer, the file was not closed: " + filePath);
+            }
+            DataInputStream footer = new DataInputStream(new ByteArrayInputStream(readAt(footerOffset, (int) (channel.size() - footerOffset))));
+            this.strings = new String[footer.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = footer.readUTF();
+            }
+            this.index = new long[footer.readInt()];
+            for (int i = 0; i < index.length; i++) {
+                index[i] = footer.readLong();
+            }
+            this.recordCount = footer.readLong();
+            if (dataOffset + recordCount * recordSize != footerOffset) {
+                throw new IOException("Corrupt event file footer: " + filePath);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.buffer = ByteBuffer.allocate(Math.max(1, BUFFER_SIZE / recordSize) * recordSize);
+        this.next = 0;
+    }
+
+    /**
+     * Opens an event file at the first record whose timestamp is at or after the start time.
+     *
+     * @param filePath the path to the event file
+     * @param schema the schema the file was written with
+     * @param startTime the start time, in the timestamp unit of the schema
+     * @throws IOException if the file cannot be read or does not match the schema
+     */
+    public EventFileDataSource(String filePath, Schema schema, long startTime) throws IOException {
+        this(filePath, schema);
+        seek(startTime);
+    }
+
+    /**
+     * Reads exactly length bytes at the given file offset.
+     */
+    private byte[] readAt(long offset, int length) throws IOException {
+        ByteBuffer target = ByteBuffer.allocate(length);
+        while (target.hasRemaining()) {
+            if (channel.read(target, offset + target.position()) < 0) {
+                throw new EOFException("Truncated event file");
+            }
+        }
+        return target.array();
+    }
+
+    /**
+     * Moves to the first record whose timestamp is at or after the start time. Records before it are skipped;
+     * records after it are all returned, whatever their timestamp. Events of schemas without a native timestamp are
+     * numbered from 1, so the start time is a record number then.
+     *
+     * @param startTime the start time, in the timestamp unit of the schema
+     */
+    public void seek(long startTime) {
+        if (!schema.hasNativeTimestamp()) {
+            next = Math.max(0, Math.min(recordCount, startTime - 1));
+            return;
+        }
+
+        // The last stride whose preceding records are all before the start time
+        int low = 0;
+        int high = index.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (index[mid] < startTime) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        next = (long) low * indexStride;
+
+        // Scan the stride for the first record at or after the start time
+        PointEvent event = pool.acquire();
+        try {
+            while (next < recordCount) {
+                decode(next, event);
+                if (event.getTimestamp() >= startTime) {
+                    break;
+                }
+                event.reset();
+                next++;
+            }
+        } finally {
+            event.reset();
+            pool.release(event);
+        }
+    }
+
+    /**
+     * @return the number of records in the file
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return the timestamp unit the file was written with
+     */
+    public Schema.TimestampUnit getTimestampUnit() {
+        return schema.getTimestampUnit();
+    }
+
+    /**
+     * Decodes a record into the slots of an event and sets its timestamp.
+     */
+    private void decode(long recordNumber, PointEvent event) {
+        int position = bufferPosition(recordNumber);
+        for (int i = 0; i < layout.size(); i++) {
+            byte kind = layout.getKind(i);
+            if ((buffer.get(position + (i >>> 3)) & (1 << (i & 7))) != 0) {
+                continue;  // Null field
+            }
+            int offset = position + fieldOffsets[i];
+            switch (kind) {
+                case EventLayout.KIND_BYTE: event.setLong(i, buffer.get(offset)); break;
+                case EventLayout.KIND_SHORT: event.setLong(i, buffer.getShort(offset)); break;
+                case EventLayout.KIND_INT: event.setLong(i, buffer.getInt(offset)); break;
+                case EventLayout.KIND_LONG: event.setLong(i, buffer.getLong(offset)); break;
+                case EventLayout.KIND_FLOAT: event.setDouble(i, buffer.getFloat(offset)); break;
+                case EventLayout.KIND_DOUBLE: event.setDouble(i, buffer.getDouble(offset)); break;
+                default: event.setValue(i, strings[buffer.getInt(offset)]); break;
+            }
+        }
+        event.setTimestamp(schema.hasNativeTimestamp() ? event.extractTimestamp() : recordNumber + 1);
+    }
+
+    /**
+     * Makes sure the record is buffered and returns its position in the buffer.
+     */
+    private int bufferPosition(long recordNumber) {
+        if (recordNumber < bufferStart || recordNumber >= bufferStart + bufferRecords) {
+            int records = (int) Math.min(buffer.capacity() / recordSize, recordCount - recordNumber);
+            buffer.clear();
+            buffer.limit(records * recordSize);
+            long offset = dataOffset + recordNumber * recordSize;
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0) {
+                        throw new EOFException("Truncated event file");
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading from event file", e);
+            }
+            bufferStart = recordNumber;
+            bufferRecords = records;
+        }
+        return (int) (recordNumber - bufferStart) * recordSize;
+    }
+
+    /**
+     * Reads the next record as an event whose slots and timestamp are already filled.
+     *
+     * @return the next record, or null if there are no more records
+     */
+    @Override
+    public PointEvent readNextEvent() {
+        if (next >= recordCount) {
+            return null;
+        }
+        PointEvent event = pool.acquire();
+        decode(next++, event);
+        return event;
+    }
+
+    /**
+     * Hands an event back to the pool of this source. Events retained by the engine are ignored.
+     *
+     * @param event the event that is no longer used by the caller
+     */
+    @Override
+    public void recycle(PointEvent event) {
+        pool.release(event);
+    }
+
+    /**
+     * Reads the next record in the raw data type of the schema: a CSV line for CSV schemas, a JSON object otherwise.
+     *
+     * @return the next record, or null if there are no more records
+     */
+    @Override
+    public String readNext() {
+        PointEvent event = readNextEvent();
+        if (event == null) {
+            return null;
+        }
+        try {
+            List<Attribute> attributes = layout.getAttributes();
+            if (csv) {
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < attributes.size(); i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    if (!event.isNull(i)) {
+                        sb.append(event.get(i));
+                    }
+                }
+                return sb.toString();
+            }
+            Map<String, Object> recordMap = new LinkedHashMap<>();
+            for (int i = 0; i < attributes.size(); i++) {
+                recordMap.put(attributes.get(i).getName(), event.get(i));
+            }
+            return objectMapper.writeValueAsString(recordMap);
+        } catch (IOException e) {
+            throw new RuntimeException("Error converting record to JSON", e);
+        } finally {
+            pool.release(event);
+        }
+    }
+
+    /**
+     * Checks if there are more records to read.
+     *
+     * @return true if there are more records, false otherwise
+     */
+    @Override
+    public boolean hasNext() {
+        return next < recordCount;
+    }
+
+    /**
+     * Reads a batch of records from the data source.
+     *
+     * @param batchSize the number of records to read
+     * @return a list of records in the raw data type of the schema
+     */
+    @Override
+    public List<String> readBatch(int batchSize) {
+        List<String> batch = new ArrayList<>();
+        for (int i = 0; i < batchSize && hasNext(); i++) {
+            batch.add(readNext());
+        }
+        return batch;
+    }
+
+    /**
+     * Closes the file channel.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Error closing file", e);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package org.piestream.datasource;
+
+import org.piestream.engine.EventPreprocessor;
+import org.piestream.events.EventLayout;
+import org.piestream.events.PointEvent;
+import org.piestream.parser.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EventFileWriter writes events into the native PieStream event file format, which is read back by
+ * {@link EventFileDataSource}. The format is laid out as follows (all numbers big-endian):
+ *
+ *     Header:  magic "PSEV", version, schema fingerprint, timestamp unit, field names and types,
+ *              record size and index stride.
+ *     Records: one fixed-width record per event: a null bitmap followed by every field in schema order,
+ *              byte/short/int/long/float/double in their natural width and strings as 4-byte dictionary ids.
+ *     Footer:  the string dictionary, the sparse timestamp index, the record count and, as the last 8 bytes,
+ *              the offset of the footer.
+ *
+ * The sparse index keeps one entry per index stride: the largest timestamp of all records before the first record
+ * of the stride. It lets a reader find the first record at or after a start time without scanning the whole file,
+ * even if the timestamps are not strictly ordered. Events of schemas without a native timestamp are numbered from 1
+ * like in the engine, so their timestamps are not stored.
+ * The footer is written by {@link #close()}; a file that was not closed cannot be read.
+ */
+public class EventFileWriter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventFileWriter.class);
+
+    public static final int MAGIC = 0x50534556;  // "PSEV"
+    public static final short VERSION = 1;  // Version of the format
+    public static final int DEFAULT_INDEX_STRIDE = 4096;  // Records per index entry
+    private static final int[] KIND_WIDTHS = {1, 2, 4, 8, 4, 8, 4};  // Field width by slot kind
+
+    private final DataOutputStream out;
+    private final Schema schema;
+    private final EventLayout layout;  // Layout of the written events
+    private final int bitmapSize;  // Bytes of the null bitmap of a record
+    private final int indexStride;  // Records per index entry
+    private final ByteBuffer record;  // Reused buffer of a single record
+    private final Map<String, Integer> dictionary = new HashMap<>();  // String value to dictionary id
+    private final List<String> strings = new ArrayList<>();  // Dictionary id to string value
+    private long[] index = new long[16];  // Largest timestamp before each stride
+    private int indexSize;  // Number of index entries
+    private final long headerSize;  // Bytes of the header
+    private long recordCount;  // Number of records written
+    private long maxTimestamp = Long.MIN_VALUE;  // Largest timestamp written so far
+    private boolean closed;
+
+    /**
+     * Creates a writer with the default index stride.
+     *
+     * @param filePath the path of the event file, overwritten if it exists
+     * @param schema the schema of the written events
+     * @throws IOException if the file cannot be created
+     */
+    public EventFileWriter(String filePath, Schema schema) throws IOException {
+        this(filePath, schema, DEFAULT_INDEX_STRIDE);
+    }
+
+    /**
+     * Creates a writer.
+     *
+     * @param filePath the path of the event file, overwritten if it exists
+     * @param schema the schema of the written events
+     * @param indexStride the number of records per index entry
+     * @throws IOException if the file cannot be created
+     */
+    public EventFileWriter(String filePath, Schema schema, int indexStride) throws IOException {
+        if (indexStride <= 0) {
+            throw new IllegalArgumentException("Index stride must be positive: " + indexStride);
+        }
+        this.schema = schema;
+        this.layout = schema.getEventLayout();
+        this.indexStride = indexStride;
+        this.bitmapSize = (layout.size() + 7) / 8;
+        this.record = ByteBuffer.allocate(recordSize(layout));
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        header.writeLong(schema.getFingerprint());
+        header.writeUTF(schema.getTimestampUnit().name());
+        header.writeInt(layout.size());
+        for (int i = 0; i < layout.size(); i++) {
+            header.writeUTF(layout.getAttribute(i).getName());
+            header.writeUTF(layout.getAttribute(i).getType());
+        }
+        header.writeInt(record.capacity());
+        header.writeInt(indexStride);
+        header.flush();
+        this.headerSize = headerBytes.size();
+
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath), 1 << 16));
+        headerBytes.writeTo(out);
+    }
+
+    /**
+     * Returns the width of a field of the given slot kind.
+     *
+     * @param kind the slot kind of the field
+     * @return the number of bytes of the field in a record
+     */
+    public static int fieldWidth(byte kind) {
+        return KIND_WIDTHS[kind];
+    }
+
+    /**
+     * Computes the width of a record of the given layout.
+     *
+     * @param layout the event layout
+     * @return the number of bytes of a record
+     */
+    public static int recordSize(EventLayout layout) {
+        int size = (layout.size() + 7) / 8;
+        for (int i = 0; i < layout.size(); i++) {
+            size += KIND_WIDTHS[layout.getKind(i)];
+        }
+        return size;
+    }
+
+    /**
+     * Appends an event. Numeric fields must hold a value of their declared type and string fields a String.
+     *
+     * @param event a slot event of the writer's schema
+     * @throws IOException if the record cannot be written
+     * @throws IllegalArgumentException if the event does not fit the schema
+     */
+    public void write(PointEvent event) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+        if (!event.isSlotted() || event.getLayout() != layout) {
+            throw new IllegalArgumentException("Event does not match the schema of the event file");
+        }
+
+        long timestamp = schema.hasNativeTimestamp() ? event.getTimestamp() : recordCount + 1;
+        if (recordCount % indexStride == 0) {
+            if (indexSize == index.length) {
+                index = Arrays.copyOf(index, indexSize * 2);
+            }
+            index[indexSize++] = maxTimestamp;
+        }
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+
+        record.clear();
+        for (int i = 0; i < bitmapSize; i++) {
+            record.put((byte) 0);
+        }
+        for (int i = 0; i < layout.size(); i++) {
+            byte kind = layout.getKind(i);
+            if (event.isNull(i)) {
+                record.put(i >>> 3, (byte) (record.get(i >>> 3) | (1 << (i & 7))));
+                for (int j = 0; j < KIND_WIDTHS[kind]; j++) {
+                    record.put((byte) 0);
+                }
+                continue;
+            }
+            if (kind != EventLayout.KIND_REF && !event.isPrimitive(i)) {
+                throw new IllegalArgumentException("Field " + layout.getAttribute(i).getName() + " holds a value that is not a "
+                        + layout.getAttribute(i).getType() + ": " + event.get(i));
+            }
+            switch (kind) {
+                case EventLayout.KIND_BYTE: record.put((byte) event.getLong(i)); break;
+                case EventLayout.KIND_SHORT: record.putShort((short) event.getLong(i)); break;
+                case EventLayout.KIND_INT: record.putInt((int) event.getLong(i)); break;
+                case EventLayout.KIND_LONG: record.putLong(event.getLong(i)); break;
+                case EventLayout.KIND_FLOAT: record.putFloat((float) event.getDouble(i)); break;
+                case EventLayout.KIND_DOUBLE: record.putDouble(event.getDouble(i)); break;
+                default: record.putInt(stringId(i, event.get(i))); break;
+            }
+        }
+        out.write(record.array(), 0, record.capacity());
+        recordCount++;
+    }
+
+    /**
+     * Looks up or assigns the dictionary id of a string value.
+     */
+    private int stringId(int ordinal, Object value) {
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("Field " + layout.getAttribute(ordinal).getName() + " holds a value that is not a String: " + value);
+        }
+        Integer id = dictionary.get(value);
+        if (id == null) {
+            id = strings.size();
+            dictionary.put((String) value, id);
+            strings.add((String) value);
+        }
+        return id;
+    }
+
+    /**
+     * @return the number of records written so far
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Writes the footer and closes the file.
+     *
+     * @throws IOException if the footer cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            long footerOffset = headerSize + recordCount * record.capacity();
+            out.writeInt(strings.size());
+            for (String value : strings) {
+                out.writeUTF(value);
+            }
+            out.writeInt(indexSize);
+            for (int i = 0; i < indexSize; i++) {
+                out.writeLong(index[i]);
+            }
+            out.writeLong(recordCount);
+            out.writeLong(footerOffset);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Converts the lines of a data source into an event file. The lines are decoded like in the engine.
+     *
+     * @param dataSource the source of the lines, in the raw data type of the schema
+     * @param schema the schema of the lines
+     * @param filePath the path of the event file
+     * @return the number of events written
+     * @throws IOException if the event file cannot be written
+     */
+    public static long convertLines(DataSource dataSource, Schema schema, String filePath) throws IOException {
+        EventPreprocessor processor = new EventPreprocessor(schema);
+        try (EventFileWriter writer = new EventFileWriter(filePath, schema)) {
+            String line;
+            while ((line = dataSource.readNext()) != null) {
+                PointEvent event = processor.preprocess(line);
+                writer.write(event);
+                processor.recycle(event);
+            }
+            return writer.getRecordCount();
+        }
+    }
+
+    /**
+     * Converts the events of an event source into an event file.
+     *
+     * @param eventSource the source of the events
+     * @param schema the schema of the events
+     * @param filePath the path of the event file
+     * @return the number of events written
+     * @throws IOException if the event file cannot be written
+     */
+    public static long convertEvents(EventSource eventSource, Schema schema, String filePath) throws IOException {
+        try (EventFileWriter writer = new EventFileWriter(filePath, schema)) {
+            PointEvent event;
+            while ((event = eventSource.readNextEvent()) != null) {
+                writer.write(event);
+                eventSource.recycle(event);
+            }
+            return writer.getRecordCount();
+        }
+    }
+
+    /**
+     * Converts a CSV, JSON or BIN file into an event file.
+     * Usage: EventFileWriter &lt;schema.yaml&gt; &lt;input file&gt; &lt;output file&gt;
+     *
+     * @param args the schema file, the input file and the output file
+     * @throws Exception if the conversion fails
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            logger.error("Usage: EventFileWriter <schema.yaml> <input file> <output file>");
+            return;
+        }
+        Schema schema = new Schema(args[0]);
+        long count;
+        long startTime = System.currentTimeMillis();
+        if ("BIN".equalsIgnoreCase(schema.getRawdataType())) {
+            try (BinaryDataSource source = new BinaryDataSource(args[1], schema)) {
+                count = convertEvents(source, schema, args[2]);
+            }
+        } else {
+            try (DataSource source = new FileDataSource(args[1])) {
+                count = convertLines(source, schema, args[2]);
+            }
+        }
+        logger.info("Converted " + count + " events in " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+}
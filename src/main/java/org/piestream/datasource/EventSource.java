@@ -0,0 +1,38 @@
+package org.piestream.datasource;
+
+import org.piestream.events.PointEvent;
+
+/**
+ * Interface for sources that decode their input straight into {@link PointEvent} objects instead of text records.
+ * Events returned by a source are filled and timestamped, and can be handed to {@code Engine.apply(PointEvent)}
+ * without further preprocessing. Once the engine is done with an event it should be given back with
+ * {@link #recycle(PointEvent)} so the source can reuse it; events the engine retained are never reused.
+ */
+public interface EventSource extends AutoCloseable {
+
+    /**
+     * Reads the next event from the source.
+     *
+     * @return the next event, or null if there are no more events
+     */
+    PointEvent readNextEvent();
+
+    /**
+     * Checks if there are more events to read from the source.
+     *
+     * @return true if there are more events, false otherwise
+     */
+    boolean hasNext();
+
+    /**
+     * Hands an event returned by {@link #readNextEvent()} back to the source for reuse.
+     *
+     * @param event the event that is no longer used by the caller
+     */
+    void recycle(PointEvent event);
+
+    /**
+     * Closes the source and releases any resources associated with it.
+     */
+    void close();
+}
@@ -0,0 +1,203 @@
+package org.piestream.datasource;
+
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import net.jpountz.xxhash.StreamingXXHash32;
+import net.jpountz.xxhash.XXHash32;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+/**
+ * A {@link CompressedBlockReader} for the LZ4 frame format, as written by the lz4 command line tool or
+ * {@link net.jpountz.lz4.LZ4FrameOutputStream}. Concatenated frames and skippable frames are supported.
+ * Block checksums are verified by the decompression tasks, the header and content checksums while reading
+ * and delivering. Frames with linked blocks cannot be decompressed block by block and are rejected, as are
+ * frames that need a dictionary.
+ */
+public class Lz4FrameBlockReader implements CompressedBlockReader {
+
+    public static final int MAGIC = 0x184D2204;  // Magic number of an LZ4 frame
+    private static final int SKIPPABLE_MAGIC = 0x184D2A50;  // Magic number of a skippable frame, low 4 bits are free
+    private static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+    private static final int[] MAX_BLOCK_SIZES = {0, 0, 0, 0, 64 << 10, 256 << 10, 1 << 20, 4 << 20};  // By block size id
+    private static final byte[] FRAME_END = new byte[0];  // Result of the task marking the end of a frame
+
+    private final DataInputStream in;
+    private final LZ4SafeDecompressor decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+    private final XXHash32 hash = XXHashFactory.fastestInstance().hash32();
+    private final StreamingXXHash32 contentHash = XXHashFactory.fastestInstance().newStreamingHash32(0);
+    private final ArrayDeque<Frame> pendingFrames = new ArrayDeque<>();  // Frames read but not yet fully delivered
+    private Frame frame;  // The frame whose blocks are being read, null between frames
+
+    /**
+     * Per frame flags, shared between reading and delivering.
+     */
+    private static final class Frame {
+        boolean blockChecksum;  // Every block is followed by its checksum
+        boolean contentChecksum;  // The end mark is followed by the checksum of the whole content
+        int maxBlockSize;  // Maximum decompressed size of a block
+        long expectedContentChecksum;  // Read at the end mark
+    }
+
+    /**
+     * Creates a reader for the given stream, positioned at the start of a frame.
+     *
+     * @param in the compressed stream
+     */
+    public Lz4FrameBlockReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    @Override
+    public Callable<byte[]> nextBlock() throws IOException {
+        if (frame == null && !readFrameHeader()) {
+            return null;
+        }
+        int size = readIntLE();
+        if (size == 0) {
+            // End mark
+            if (frame.contentChecksum) {
+                frame.expectedContentChecksum = readIntLE() & 0xFFFFFFFFL;
+            }
+            frame = null;
+            return () -> FRAME_END;
+        }
+
+        boolean uncompressed = (size & 0x80000000) != 0;
+        int length = size & 0x7FFFFFFF;
+        int maxBlockSize = frame.maxBlockSize;
+        if (length > maxBlockSize) {
+            throw new IOException("LZ4 block size " + length + " exceeds the frame's maximum block size " + maxBlockSize);
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        boolean verify = frame.blockChecksum;
+        int checksum = verify ? readIntLE() : 0;
+        return () -> decompressBlock(data, uncompressed, verify, checksum, maxBlockSize);
+    }
+
+    /**
+     * Verifies and decompresses a single block.
+     */
+    private byte[] decompressBlock(byte[] data, boolean uncompressed, boolean verify, int checksum, int maxBlockSize) throws IOException {
+        if (verify && hash.hash(data, 0, data.length, 0) != checksum) {
+            throw new IOException("LZ4 block checksum mismatch");
+        }
+        if (uncompressed) {
+            return data;
+        }
+        byte[] block = new byte[maxBlockSize];
+        try {
+            int length = decompressor.decompress(data, 0, data.length, block, 0, maxBlockSize);
+            return length == maxBlockSize ? block : Arrays.copyOf(block, length);
+        } catch (LZ4Exception e) {
+            throw new IOException("Malformed LZ4 block", e);
+        }
+    }
+
+    @Override
+    public void delivered(byte[] block) throws IOException {
+        Frame current = pendingFrames.peek();
+        if (block == FRAME_END) {
+            pendingFrames.poll();
+            if (current.contentChecksum && (contentHash.getValue() & 0xFFFFFFFFL) != current.expectedContentChecksum) {
+                throw new IOException("LZ4 content checksum mismatch");
+            }
+            contentHash.reset();
+        } else if (current.contentChecksum) {
+            contentHash.update(block, 0, block.length);
+        }
+    }
+
+    /**
+     * Reads the header of the next frame, skipping skippable frames.
+     *
+     * @return false if the stream ended cleanly before the next frame
+     */
+    private boolean readFrameHeader() throws IOException {
+        while (true) {
+            int first = in.read();
+            if (first < 0) {
+                return false;
+            }
+            int magic = first | (in.readUnsignedByte() << 8) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 24);
+            if ((magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC) {
+                skipFully(readIntLE() & 0xFFFFFFFFL);
+                continue;
+            }
+            if (magic != MAGIC) {
+                throw new IOException("Not an LZ4 frame, magic number: 0x" + Integer.toHexString(magic));
+            }
+            break;
+        }
+
+        byte[] descriptor = new byte[14];  // FLG, BD, content size and dictionary id
+        int length = 0;
+        int flg = in.readUnsignedByte();
+        int bd = in.readUnsignedByte();
+        descriptor[length++] = (byte) flg;
+        descriptor[length++] = (byte) bd;
+        if ((flg >>> 6) != 1) {
+            throw new IOException("Unsupported LZ4 frame version: " + (flg >>> 6));
+        }
+        if ((flg & 0x02) != 0 || (bd & 0x8F) != 0) {
+            throw new IOException("Reserved LZ4 frame descriptor bits are set");
+        }
+        if ((flg & 0x20) == 0) {
+            throw new IOException("LZ4 frames with linked blocks are not supported");
+        }
+        int blockSizeId = (bd >>> 4) & 0x07;
+        if (MAX_BLOCK_SIZES[blockSizeId] == 0) {
+            throw new IOException("Invalid LZ4 block maximum size id: " + blockSizeId);
+        }
+        if ((flg & 0x08) != 0) {
+            in.readFully(descriptor, length, 8);  // Content size, not needed
+            length += 8;
+        }
+        if ((flg & 0x01) != 0) {
+            throw new IOException("LZ4 frames with a dictionary are not supported");
+        }
+        int headerChecksum = in.readUnsignedByte();
+        if (((hash.hash(descriptor, 0, length, 0) >>> 8) & 0xFF) != headerChecksum) {
+            throw new IOException("LZ4 frame header checksum mismatch");
+        }
+
+        frame = new Frame();
+        frame.blockChecksum = (flg & 0x10) != 0;
+        frame.contentChecksum = (flg & 0x04) != 0;
+        frame.maxBlockSize = MAX_BLOCK_SIZES[blockSizeId];
+        pendingFrames.add(frame);
+        return true;
+    }
+
+    /**
+     * Reads a little-endian int.
+     */
+    private int readIntLE() throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    /**
+     * Skips exactly the given number of bytes.
+     */
+    private void skipFully(long count) throws IOException {
+        while (count > 0) {
+            int skipped = in.skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated LZ4 skippable frame");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package org.piestream.datasource;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link DataSource} implementation that maps the input file into memory and walks the newline offsets in place.
+ * Every line is scanned exactly once: {@link #hasNext()} only compares offsets, and {@link #readNextLine()} copies
+ * the raw bytes of the next line into a reusable buffer that can be handed to a byte-level parser without creating
+ * a String. Files larger than a single mapping are mapped region by region.
+ * Line terminators are handled like {@link java.io.BufferedReader#readLine()} ("\n", "\r" or "\r\n"), and the
+ * optional limit and rate limiting behave like in {@link FileDataSource}.
+ */
+public class MappedFileDataSource implements DataSource {
+    private static final long DEFAULT_REGION_SIZE = 256L * 1024 * 1024; // Bytes mapped at once
+
+    private final FileChannel channel;
+    private final long fileSize; // Size of the mapped file in bytes
+    private final long regionSize; // Maximum number of bytes mapped at once
+    private MappedByteBuffer region; // The currently mapped region
+    private long regionStart; // File offset of the first byte of the current region
+    private long position; // File offset of the next unread line
+    private long limit; // The maximum number of lines to read from the file
+    private long readCount; // The number of lines that have been read so far
+    private RateLimiter rateLimiter; // Rate limiter for controlling the read speed
+    private byte[] lineBuffer = new byte[256]; // Bytes of the last line read with readNextLine
+
+    /**
+     * Constructs a MappedFileDataSource that reads from the specified file.
+     * No limit is imposed on the number of lines to read by default.
+     *
+     * @param filePath the path to the file to read from
+     * @throws IOException if an error occurs while opening the file
+     */
+    public MappedFileDataSource(String filePath) throws IOException {
+        this(filePath, Long.MAX_VALUE, 0);
+    }
+
+    /**
+     * Constructs a MappedFileDataSource with a limit on the number of lines to read.
+     *
+     * @param filePath the path to the file to read from
+     * @param limit the maximum number of lines to read
+     * @throws IOException if an error occurs while opening the file
+     */
+    public MappedFileDataSource(String filePath, long limit) throws IOException {
+        this(filePath, limit, 0);
+    }
+
+    /**
+     * Constructs a MappedFileDataSource with a limit on the number of lines to read and a rate limit on reading speed.
+     *
+     * @param filePath the path to the file to read from
+     * @param limit the maximum number of lines to read
+     * @param rates the rate limit (in number of reads per second), 0 or negative values disable rate limiting
+     * @throws IOException if an error occurs while opening the file
+     */
+    public MappedFileDataSource(String filePath, long limit, long rates) throws IOException {
+        this(filePath, limit, rates, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Constructs a MappedFileDataSource with an explicit mapping region size.
+     *
+     * @param filePath the path to the file to read from
+     * @param limit the maximum number of lines to read
+     * @param rates the rate limit (in number of reads per second), 0 or negative values disable rate limiting
+     * @param regionSize the maximum number of bytes mapped at once, must be larger than the longest line
+     * @throws IOException if an error occurs while opening the file
+     */
+    public MappedFileDataSource(String filePath, long limit, long rates, long regionSize) throws IOException {
+        if (regionSize <= 0 || regionSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Region size must be in (0, " + Integer.MAX_VALUE + "]: " + regionSize);
+        }
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.regionSize = regionSize;
+        this.limit = limit;
+        this.readCount = 0; // Initialize the read count
+        this.position = 0;
+        if (rates > 0) {
+            this.rateLimiter = RateLimiter.create(rates); // Initialize the rate limiter
+        } else {
+            this.rateLimiter = null; // No rate limiting if rates <= 0
+        }
+        map(0);
+    }
+
+    /**
+     * Maps the region starting at the given file offset.
+     */
+    private void map(long start) throws IOException {
+        long size = Math.min(regionSize, fileSize - start);
+        this.region = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        this.regionStart = start;
+    }
+
+    /**
+     * Checks if there are more lines to read. This only compares offsets and never reads ahead.
+     *
+     * @return true if there are more lines to read, false otherwise
+     */
+    @Override
+    public boolean hasNext() {
+        return readCount < limit && position < fileSize;
+    }
+
+    /**
+     * Reads the raw bytes of the next line into the line buffer, see {@link #getLineBuffer()}.
+     * Applies rate limiting if enabled, and stops if the read limit is exceeded.
+     *
+     * @return the length of the line without terminator, or -1 if there are no more lines to read
+     */
+    public int readNextLine() {
+        if (!hasNext()) {
+            return -1; // Stop reading if the limit or the end of the file is reached
+        }
+        if (rateLimiter != null) {
+            rateLimiter.acquire(); // Apply rate limiting if enabled
+        }
+        try {
+            int length = scanLine();
+            readCount++; // Increment the read count
+            return length;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading from file", e);
+        }
+    }
+
+    /**
+     * Finds the line starting at the current position, copies it into the line buffer and moves past its terminator.
+     * The region is remapped at the line start whenever the line (or a "\r\n" pair) crosses the region end.
+     */
+    private int scanLine() throws IOException {
+        while (true) {
+            int start = (int) (position - regionStart);
+            int end = region.limit();
+            boolean lastRegion = regionStart + end == fileSize;
+            int i = start;
+            while (i < end) {
+                byte b = region.get(i);
+                if (b == '\n' || b == '\r') {
+                    break;
+                }
+                i++;
+            }
+            if (!lastRegion && (i == end || (i == end - 1 && region.get(i) == '\r'))) {
+                if (start == 0) {
+                    throw new IllegalStateException("Line at offset " + position + " exceeds the mapping region size " + regionSize);
+                }
+                map(position); // The line crosses the region end, map again from the line start
+                continue;
+            }
+            int length = i - start;
+            copyLine(start, length);
+            if (i < end) {
+                i += (region.get(i) == '\r' && i + 1 < end && region.get(i + 1) == '\n') ? 2 : 1;
+            }
+            position = regionStart + i;
+            return length;
+        }
+    }
+
+    /**
+     * Copies [start, start + length) of the current region into the line buffer.
+     */
+    private void copyLine(int start, int length) {
+        if (lineBuffer.length < length) {
+            lineBuffer = new byte[Math.max(length, lineBuffer.length * 2)];
+        }
+        region.position(start);
+        region.get(lineBuffer, 0, length);
+    }
+
+    /**
+     * Returns the buffer holding the bytes of the last line read by {@link #readNextLine()}.
+     * The buffer is reused and overwritten by the next read.
+     *
+     * @return the line buffer, valid from index 0 to the length returned by readNextLine
+     */
+    public byte[] getLineBuffer() {
+        return lineBuffer;
+    }
+
+    /**
+     * Reads the next line from the file as a UTF-8 String.
+     * Applies rate limiting if enabled, and stops if the read limit is exceeded.
+     *
+     * @return the next line of the file, or null if there are no more lines to read
+     */
+    @Override
+    public String readNext() {
+        int length = readNextLine();
+        return length < 0 ? null : new String(lineBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a batch of lines from the file.
+     * Returns a list of lines, up to the specified batch size.
+     * Stops reading if the read limit is exceeded or if there are no more lines.
+     *
+     * @param batchSize the number of lines to read in the batch
+     * @return a list of lines read from the file
+     */
+    @Override
+    public List<String> readBatch(int batchSize) {
+        List<String> batch = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            String line = readNext();
+            if (line == null) {
+                break; // Stop if the limit is reached or there are no more lines
+            }
+            batch.add(line);
+        }
+        return batch;
+    }
+
+    /**
+     * Closes the file channel.
+     * Ensures that the resources are properly released when done reading.
+     */
+    @Override
+    public void close() {
+        try {
+            region = null;
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Error closing file", e);
+        }
+    }
+}
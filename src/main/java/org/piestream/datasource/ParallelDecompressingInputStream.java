@@ -0,0 +1,170 @@
+package org.piestream.datasource;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * An InputStream that decompresses a framed compressed stream block by block on a small worker pool.
+ * The framing is parsed on the reading thread, which keeps up to a fixed number of blocks in flight ahead of
+ * the current position; the decompressed blocks are returned strictly in stream order, so the stream can be
+ * handed to any line or record decoder.
+ */
+public class ParallelDecompressingInputStream extends InputStream {
+    private static final int BUFFER_SIZE = 1 << 16; // Buffer of the underlying file stream
+
+    private final InputStream raw; // The compressed stream
+    private final CompressedBlockReader blockReader; // Splits the compressed stream into blocks
+    private final ExecutorService executor; // Workers decompressing the blocks
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>(); // Blocks in flight, in stream order
+    private final int readAhead; // Maximum number of blocks in flight
+    private boolean exhausted; // Whether the block reader reached the end of the stream
+    private byte[] block; // The block being read
+    private int position; // Position of the next byte in the block
+
+    /**
+     * Opens a compressed file, recognising its codec from the magic bytes.
+     *
+     * @param filePath the path to the compressed file
+     * @param threads the number of decompression threads
+     * @return a stream of the decompressed content
+     * @throws IOException if the file cannot be opened or its format is not recognised
+     */
+    public static ParallelDecompressingInputStream open(String filePath, int threads) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(filePath), BUFFER_SIZE);
+        try {
+            CompressionCodec codec = CompressionCodec.detect(in);
+            if (codec == null) {
+                throw new IOException("Unrecognised compressed file format: " + filePath);
+            }
+            return new ParallelDecompressingInputStream(in, codec, threads);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a stream decompressing the given compressed stream with a pool of the given size.
+     * Two blocks per thread are kept in flight.
+     *
+     * @param raw the compressed stream, positioned at its first byte
+     * @param codec the compression codec of the stream
+     * @param threads the number of decompression threads
+     */
+    public ParallelDecompressingInputStream(InputStream raw, CompressionCodec codec, int threads) {
+        this(raw, codec.newBlockReader(raw), threads, 2 * threads);
+    }
+
+    /**
+     * Creates a stream decompressing the blocks of a block reader.
+     *
+     * @param raw the compressed stream read by the block reader, closed with this stream
+     * @param blockReader the block reader of the stream
+     * @param threads the number of decompression threads
+     * @param readAhead the maximum number of blocks in flight
+     */
+    public ParallelDecompressingInputStream(InputStream raw, CompressedBlockReader blockReader, int threads, int readAhead) {
+        if (threads <= 0 || readAhead <= 0) {
+            throw new IllegalArgumentException("Thread count and read-ahead must be positive");
+        }
+        this.raw = raw;
+        this.blockReader = blockReader;
+        this.readAhead = readAhead;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "piestream-decompress");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Makes sure the current block has unread bytes, taking the next decompressed block if necessary.
+     *
+     * @return false at the end of the stream
+     */
+    private boolean fill() throws IOException {
+        while (block == null || position >= block.length) {
+            while (!exhausted && pending.size() < readAhead) {
+                Callable<byte[]> task = blockReader.nextBlock();
+                if (task == null) {
+                    exhausted = true;
+                } else {
+                    pending.add(executor.submit(task));
+                }
+            }
+            Future<byte[]> next = pending.poll();
+            if (next == null) {
+                return false;
+            }
+            block = await(next);
+            position = 0;
+            blockReader.delivered(block);
+        }
+        return true;
+    }
+
+    /**
+     * Waits for a decompressed block, unwrapping the failure of its task.
+     */
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decompressing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to decompress block", cause);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(len, block.length - position);
+        System.arraycopy(block, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return block == null ? 0 : block.length - position;
+    }
+
+    /**
+     * Stops the workers and closes the compressed stream.
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        pending.clear();
+        block = null;
+        raw.close();
+    }
+}
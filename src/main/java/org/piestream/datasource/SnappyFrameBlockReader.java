@@ -0,0 +1,127 @@
+package org.piestream.datasource;
+
+import org.xerial.snappy.PureJavaCrc32C;
+import org.xerial.snappy.Snappy;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+/**
+ * A {@link CompressedBlockReader} for the Snappy framing format, as written by
+ * {@link org.xerial.snappy.SnappyFramedOutputStream} and other implementations of the format.
+ * Every compressed or uncompressed chunk becomes one block; the masked CRC-32C of a chunk is verified by its
+ * decompression task. Padding and other skippable chunks are skipped, reserved unskippable chunks are rejected.
+ */
+public class SnappyFrameBlockReader implements CompressedBlockReader {
+
+    public static final byte[] STREAM_IDENTIFIER = {(byte) 0xff, 0x06, 0x00, 0x00, 's', 'N', 'a', 'P', 'p', 'Y'};  // First chunk of a stream
+    private static final int CHUNK_COMPRESSED = 0x00;
+    private static final int CHUNK_UNCOMPRESSED = 0x01;
+    private static final int CHUNK_STREAM_IDENTIFIER = 0xff;
+    private static final int MAX_BLOCK_SIZE = 65536;  // Maximum uncompressed size of a chunk
+
+    private final DataInputStream in;
+    private boolean identified;  // Whether the stream identifier has been read
+
+    /**
+     * Creates a reader for the given stream, positioned at the stream identifier.
+     *
+     * @param in the compressed stream
+     */
+    public SnappyFrameBlockReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    @Override
+    public Callable<byte[]> nextBlock() throws IOException {
+        while (true) {
+            int type = in.read();
+            if (type < 0) {
+                if (!identified) {
+                    throw new IOException("Missing Snappy stream identifier");
+                }
+                return null;
+            }
+            int length = in.readUnsignedByte() | (in.readUnsignedByte() << 8) | (in.readUnsignedByte() << 16);
+            if (!identified && type != CHUNK_STREAM_IDENTIFIER) {
+                throw new IOException("Missing Snappy stream identifier");
+            }
+
+            if (type == CHUNK_STREAM_IDENTIFIER) {
+                byte[] identifier = new byte[length];
+                in.readFully(identifier);
+                if (!Arrays.equals(identifier, Arrays.copyOfRange(STREAM_IDENTIFIER, 4, STREAM_IDENTIFIER.length))) {
+                    throw new IOException("Invalid Snappy stream identifier");
+                }
+                identified = true;
+            } else if (type == CHUNK_COMPRESSED || type == CHUNK_UNCOMPRESSED) {
+                if (length < 4) {
+                    throw new IOException("Snappy chunk too short: " + length);
+                }
+                int checksum = Integer.reverseBytes(in.readInt());
+                byte[] data = new byte[length - 4];
+                in.readFully(data);
+                boolean compressed = type == CHUNK_COMPRESSED;
+                return () -> decompressChunk(data, compressed, checksum);
+            } else if (type < 0x80) {
+                throw new IOException("Unskippable Snappy chunk type: 0x" + Integer.toHexString(type));
+            } else {
+                skipFully(length);  // Padding or skippable chunk
+            }
+        }
+    }
+
+    /**
+     * Decompresses and verifies a single chunk.
+     */
+    private static byte[] decompressChunk(byte[] data, boolean compressed, int checksum) throws IOException {
+        byte[] block;
+        if (compressed) {
+            int length = Snappy.uncompressedLength(data, 0, data.length);
+            if (length > MAX_BLOCK_SIZE) {
+                throw new IOException("Snappy chunk size " + length + " exceeds " + MAX_BLOCK_SIZE);
+            }
+            block = new byte[length];
+            Snappy.uncompress(data, 0, data.length, block, 0);
+        } else {
+            if (data.length > MAX_BLOCK_SIZE) {
+                throw new IOException("Snappy chunk size " + data.length + " exceeds " + MAX_BLOCK_SIZE);
+            }
+            block = data;
+        }
+
+        PureJavaCrc32C crc = new PureJavaCrc32C();
+        crc.update(block, 0, block.length);
+        int value = (int) crc.getValue();
+        int masked = ((value >>> 15) | (value << 17)) + 0xa282ead8;
+        if (masked != checksum) {
+            throw new IOException("Snappy chunk checksum mismatch");
+        }
+        return block;
+    }
+
+    @Override
+    public void delivered(byte[] block) {
+        // Every chunk is checked on its own
+    }
+
+    /**
+     * Skips exactly the given number of bytes.
+     */
+    private void skipFully(int count) throws IOException {
+        while (count > 0) {
+            int skipped = in.skipBytes(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated Snappy chunk");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.piestream.engine;
+
+import org.piestream.events.EventLayout;
+import org.piestream.events.PointEvent;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CsvTokenizer decodes a CSV line straight into the typed slots of a {@link PointEvent}.
+ * The line is scanned once as bytes; integral fields and plain decimal fields are parsed in place without
+ * creating intermediate Strings. Fields the fast paths cannot handle exactly (exponents, whitespace, floats,
+ * text attributes, ...) fall back to {@link PointEvent#setValue(int, Object)}, so the slots end up with the
+ * same values as with the String.split based decoding.
+ * A tokenizer keeps a scratch buffer and is not thread-safe.
+ */
+public class CsvTokenizer {
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };  // Powers of ten that are exact doubles
+    private static final int MAX_EXACT_DOUBLE_DIGITS = 15;  // Significant digits that always fit a double mantissa
+    private static final int MAX_LONG_DIGITS = 18;  // Digits that always fit a long
+
+    private final EventLayout layout;  // Slot layout of the decoded events
+    private byte[] scratch = new byte[256];  // Reused buffer for String input
+
+    /**
+     * Creates a tokenizer for the given layout.
+     *
+     * @param layout The slot layout of the decoded events
+     */
+    public CsvTokenizer(EventLayout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Decodes a CSV line given as a String. ASCII lines are copied into a scratch buffer and tokenized as bytes,
+     * lines with other characters are split and converted field by field.
+     *
+     * @param line The CSV line without line terminator
+     * @param event The event whose slots are filled
+     * @throws IllegalArgumentException If the number of fields does not match the schema field count
+     */
+    public void decode(String line, PointEvent event) {
+        int length = line.length();
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (c >= 0x80) {
+                decodeSplit(line, event);
+                return;
+            }
+            scratch[i] = (byte) c;
+        }
+        decode(scratch, 0, length, event);
+    }
+
+    /**
+     * Decodes a UTF-8 encoded CSV line held in a byte array.
+     *
+     * @param buf The buffer holding the line
+     * @param offset The offset of the first byte of the line
+     * @param length The length of the line without line terminator
+     * @param event The event whose slots are filled
+     * @throws IllegalArgumentException If the number of fields does not match the schema field count
+     */
+    public void decode(byte[] buf, int offset, int length, PointEvent event) {
+        int end = offset + length;
+
+        // Count the fields first so a malformed line is rejected before any slot is written
+        int fields = 1;
+        for (int i = offset; i < end; i++) {
+            if (buf[i] == ',') {
+                fields++;
+            }
+        }
+        if (fields != layout.size()) {
+            throw new IllegalArgumentException("List size does not match schema field count");
+        }
+
+        int start = offset;
+        int ordinal = 0;
+        for (int i = offset; i <= end; i++) {
+            if (i == end || buf[i] == ',') {
+                decodeField(buf, start, i, ordinal++, event);
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Fallback for lines that are not plain ASCII.
+     */
+    private void decodeSplit(String line, PointEvent event) {
+        String[] rawArray = line.split(",", -1);
+        if (rawArray.length != layout.size()) {
+            throw new IllegalArgumentException("List size does not match schema field count");
+        }
+        for (int i = 0; i < rawArray.length; i++) {
+            event.setValue(i, rawArray[i]);
+        }
+    }
+
+    /**
+     * Decodes the field [from, to) into the slot of the given ordinal.
+     */
+    private void decodeField(byte[] buf, int from, int to, int ordinal, PointEvent event) {
+        if (layout.isIntegral(ordinal)) {
+            if (parseIntegral(buf, from, to, ordinal, event)) {
+                return;
+            }
+        } else if (layout.getKind(ordinal) == EventLayout.KIND_DOUBLE) {
+            if (parseDecimal(buf, from, to, ordinal, event)) {
+                return;
+            }
+        }
+        event.setValue(ordinal, new String(buf, from, to - from, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses [+-]digits into a long slot, honouring the range of the attribute type.
+     *
+     * @return false if the field needs the String fallback
+     */
+    private boolean parseIntegral(byte[] buf, int from, int to, int ordinal, PointEvent event) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        if (i == to || to - i > MAX_LONG_DIGITS) {
+            return false;
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            value = value * 10 + digit;
+        }
+        if (negative) {
+            value = -value;
+        }
+        switch (layout.getKind(ordinal)) {
+            case EventLayout.KIND_BYTE:
+                if (value != (byte) value) return false;
+                break;
+            case EventLayout.KIND_SHORT:
+                if (value != (short) value) return false;
+                break;
+            case EventLayout.KIND_INT:
+                if (value != (int) value) return false;
+                break;
+            default:
+                break;
+        }
+        event.setLong(ordinal, value);
+        return true;
+    }
+
+    /**
+     * Parses [+-]digits[.digits] into a double slot. Only values whose mantissa and power of ten are exact
+     * doubles are accepted, for those a single division is correctly rounded and matches Double.parseDouble.
+     *
+     * @return false if the field needs the String fallback
+     */
+    private boolean parseDecimal(byte[] buf, int from, int to, int ordinal, PointEvent event) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int fractionDigits = 0;
+        boolean seenDot = false;
+        boolean seenDigit = false;
+        for (; i < to; i++) {
+            byte c = buf[i];
+            if (c == '.') {
+                if (seenDot) {
+                    return false;
+                }
+                seenDot = true;
+                continue;
+            }
+            int digit = c - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            seenDigit = true;
+            if (mantissa != 0 || digit != 0) {
+                if (++significantDigits > MAX_EXACT_DOUBLE_DIGITS) {
+                    return false;
+                }
+            }
+            mantissa = mantissa * 10 + digit;
+            if (seenDot && ++fractionDigits >= POW10.length) {
+                return false;
+            }
+        }
+        if (!seenDigit) {
+            return false;
+        }
+        double value = (double) mantissa / POW10[fractionDigits];
+        event.setDouble(ordinal, negative ? -value : value);
+        return true;
+    }
+}
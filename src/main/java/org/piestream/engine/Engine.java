@@ -1,6 +1,10 @@
 package org.piestream.engine;
 
 import org.apache.kafka.streams.kstream.ForeachAction;
+import org.piestream.datasource.DataSource;
+import org.piestream.datasource.EventSource;
+import org.piestream.events.EventBlock;
+import org.piestream.events.EventRetention;
 import org.piestream.events.PointEvent;
 import org.piestream.merger.HashJoiner;
 import org.piestream.merger.MapMerger;
@@ -45,6 +49,13 @@ public class Engine implements ForeachAction<String, String> {
     private long mergeTime = 0;
     private long updateTime = 0;
 
+    // Scratch array holding the preprocessed events of the current batch
+    private PointEvent[] eventBatch = new PointEvent[0];
+    // Columnar view of the batch the predicates are evaluated on, block by block
+    private final EventBlock eventBlock;
+    // Whether batches evaluate their predicates over columnar blocks
+    private boolean columnarEvaluation = true;
+
     /**
      * Constructs the Engine with the specified schema, partition attribute, query, and window type.
      *
@@ -71,6 +82,9 @@ public class Engine implements ForeachAction<String, String> {
         Window window = new Window(winType, windowCapacityUnitNS, schema.getTimestampUnit().getNanosPerUnit());
         // Initialize the worker to handle event processing
         this.worker = new Worker(MPPSourceList, window, parser.getEBA2String());
+        // Keep only what the RETURN clause needs of the events referenced by the window
+        worker.getMpiEPairsManager().setEventRetention(parser.getEventRetention());
+        this.eventBlock = new EventBlock(schema.getEventLayout());
     }
 
     /**
@@ -107,17 +121,230 @@ public class Engine implements ForeachAction<String, String> {
 
         // Preprocessing: Parse the event value into a PointEvent object
         startTime = System.currentTimeMillis();
-        PointEvent pointEvent = processor.preprocess(value);
-        PointEvent pe = new PointEvent(pointEvent);
+        PointEvent pe = processor.preprocess(value);
+        endTime = System.currentTimeMillis();
+        preprocessTime += (endTime - startTime);
+
+        process(pe);
+        processor.recycle(pe);
+    }
+
+    /**
+     * Applies the event processing logic to a raw CSV line given as bytes, e.g. a line of a
+     * {@link org.piestream.datasource.MappedFileDataSource}. The line is decoded with the byte-level tokenizer.
+     *
+     * @param line The buffer holding the line
+     * @param offset The offset of the first byte of the line
+     * @param length The length of the line without line terminator
+     */
+    public void apply(byte[] line, int offset, int length) {
+        long startTime, endTime;
+
+        // Preprocessing: Decode the line bytes into a PointEvent object
+        startTime = System.currentTimeMillis();
+        PointEvent pe = processor.preprocess(line, offset, length);
         endTime = System.currentTimeMillis();
         preprocessTime += (endTime - startTime);
 
+        process(pe);
+        processor.recycle(pe);
+    }
+
+    /**
+     * Applies the event processing logic to an event that is already decoded and timestamped,
+     * e.g. an event read from an {@link org.piestream.datasource.EventSource}. No preprocessing takes place.
+     * The event stays owned by the caller; events that become a PIE boundary or trigger an IEP are marked
+     * retained and must not be reused.
+     *
+     * @param pe The decoded event
+     */
+    public void apply(PointEvent pe) {
+        if (pe == null) {
+            throw new IllegalArgumentException("PointEvent cannot be null");
+        }
+        process(pe);
+    }
+
+    /**
+     * Applies the event processing logic to a batch of events in string form.
+     * The batch is preprocessed first and then run in a tight loop: every event is handled one by one, but
+     * relationship derivation, merging and data updates only take place for events that produced new IEPs or
+     * started new interval events. Expired window data is removed before every event, as by
+     * {@link #apply(String, String)}, so the results are the same as applying every event on its own.
+     * Timing metrics are sampled per batch and per triggering event instead of per event.
+     *
+     * @param values The event data of the batch (in string form)
+     * @return The number of events processed
+     */
+    public long applyBatch(List<String> values) {
+        int count = values.size();
+        if (eventBatch.length < count) {
+            eventBatch = new PointEvent[count];
+        }
+
+        // Preprocessing: Parse the whole batch into PointEvent objects
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            eventBatch[i] = processor.preprocess(values.get(i));
+        }
+        long endTime = System.currentTimeMillis();
+        preprocessTime += (endTime - startTime);
+
+        processBatch(eventBatch, count);
+        for (int i = 0; i < count; i++) {
+            processor.recycle(eventBatch[i]);
+            eventBatch[i] = null;
+        }
+        return count;
+    }
+
+    /**
+     * Applies the batch processing logic of {@link #applyBatch(List)} to events that are already decoded and
+     * timestamped, e.g. events handed over by a {@link PipelinedRunner}. No preprocessing takes place.
+     * The events stay owned by the caller; events that become a PIE boundary or trigger an IEP are marked
+     * retained and must not be reused.
+     *
+     * @param events The decoded events, slots past count are ignored
+     * @param count The number of events to process
+     */
+    public void applyBatch(PointEvent[] events, int count) {
+        if (count < 0 || count > events.length) {
+            throw new IllegalArgumentException("Invalid event count: " + count);
+        }
+        processBatch(events, count);
+    }
+
+    /**
+     * Reads the data source batch by batch with {@link DataSource#readBatch(int)} and applies every batch
+     * with {@link #applyBatch(List)} until the source is exhausted.
+     *
+     * @param dataSource The source to read the events from
+     * @param batchSize The number of events read and processed at once
+     * @return The number of events processed
+     */
+    public long applyBatch(DataSource dataSource, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        long count = 0;
+        List<String> batch;
+        while (!(batch = dataSource.readBatch(batchSize)).isEmpty()) {
+            count += applyBatch(batch);
+        }
+        return count;
+    }
+
+    /**
+     * Reads up to batchSize events from an event source and applies them with the batch processing logic of
+     * {@link #applyBatch(List)}. The events are decoded by the source, so no preprocessing takes place;
+     * they are handed back to the source afterwards, which keeps the ones retained by the engine.
+     *
+     * @param eventSource The source to read the events from, e.g. an {@link org.piestream.datasource.EventFileDataSource}
+     * @param batchSize The maximum number of events to read and process
+     * @return The number of events processed, 0 once the source is exhausted
+     */
+    public long applyEvents(EventSource eventSource, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        if (eventBatch.length < batchSize) {
+            eventBatch = new PointEvent[batchSize];
+        }
+        int count = 0;
+        PointEvent pe;
+        while (count < batchSize && (pe = eventSource.readNextEvent()) != null) {
+            eventBatch[count++] = pe;
+        }
+
+        processBatch(eventBatch, count);
+        for (int i = 0; i < count; i++) {
+            eventSource.recycle(eventBatch[i]);
+            eventBatch[i] = null;
+        }
+        return count;
+    }
+
+    /**
+     * Runs a batch of preprocessed events. The tree is only touched for events that produced new IEPs or IEs.
+     * With columnar evaluation, the predicates are evaluated for a whole block of events before its events are run.
+     *
+     * @param events The preprocessed events, slots past count are ignored
+     * @param count The number of events in the batch
+     */
+    private void processBatch(PointEvent[] events, int count) {
+        long batchDeriveTime = 0;
+        long batchMergeTime = 0;
+        long batchUpdateTime = 0;
+        long startTime, endTime;
+
+        long batchStartTime = System.currentTimeMillis();
+        worker.clearAfterRun();  // Drop what is left over from a previous apply
+        int blockStart = 0;  // Start of the current block
+        int blockEnd = 0;  // End of the current block, exclusive
+        boolean columnar = false;  // Whether the current block was evaluated up front
+        for (int i = 0; i < count; i++) {
+            if (i == blockEnd) {
+                int blockSize = Math.min(eventBlock.capacity(), count - i);
+                columnar = columnarEvaluation && eventBlock.load(events, i, blockSize);
+                if (columnar) {
+                    worker.evaluateBlock(eventBlock);
+                }
+                blockStart = i;
+                blockEnd = i + blockSize;
+            }
+            PointEvent pe = events[i];
+            long timestamp = pe.getTimestamp();
+            worker.refreshBeforeRun(timestamp);
+            boolean relevant = columnar ? worker.runOneByOne(pe, i - blockStart) : worker.runOneByOne(pe);
+
+            if (relevant && worker.hasNewIEPOrIE()) {
+                // Derive before-after relationships
+                startTime = System.currentTimeMillis();
+                worker.deriveBeforeAfterRel();
+                endTime = System.currentTimeMillis();
+                batchDeriveTime += (endTime - startTime);
+
+                // Perform merging of processed data
+                startTime = endTime;
+                worker.mergeAfterRun();
+                endTime = System.currentTimeMillis();
+                batchMergeTime += (endTime - startTime);
+
+                // Update internal data structures with the new results
+                startTime = endTime;
+                worker.updateData();
+                worker.clearAfterRun();
+                endTime = System.currentTimeMillis();
+                batchUpdateTime += (endTime - startTime);
+            }
+        }
+        long batchTime = System.currentTimeMillis() - batchStartTime;
+
+        runOneByOneTime += (batchTime - batchDeriveTime - batchMergeTime - batchUpdateTime);
+        deriveRelTime += batchDeriveTime;
+        mergeTime += batchMergeTime;
+        updateTime += batchUpdateTime;
+    }
+
+    /**
+     * Runs a preprocessed event through event handling, relationship derivation, merging and data updates.
+     * An event that cannot change any pair state (see {@link MPIEPairsManager#runByPE(PointEvent)}) only expires
+     * old window data.
+     *
+     * @param pe The preprocessed event
+     */
+    private void process(PointEvent pe) {
+        long startTime, endTime;
+
         // Handle event one by one
         startTime = System.currentTimeMillis();
         worker.resetBeforeRun(pe.getTimestamp());
-        worker.runOneByOne(pe);
+        boolean relevant = worker.runOneByOne(pe);
         endTime = System.currentTimeMillis();
         runOneByOneTime += (endTime - startTime);
+        if (!relevant) {
+            return;
+        }
 
         // Derive before-after relationships
         startTime = System.currentTimeMillis();
@@ -137,6 +364,48 @@ public class Engine implements ForeachAction<String, String> {
         endTime = System.currentTimeMillis();
         updateTime += (endTime - startTime);
     }
+
+    /**
+     * Selects how the preprocessor decodes CSV lines.
+     *
+     * @param parserMode The parser mode to use
+     */
+    public void setParserMode(ParserMode parserMode) {
+        processor.setParserMode(parserMode);
+    }
+
+    /**
+     * Selects whether batches evaluate their predicates over columnar blocks of events ({@link EventBlock}) or
+     * event by event. Both give the same results; columnar evaluation is the default.
+     *
+     * @param columnarEvaluation Whether to evaluate the predicates block by block
+     */
+    public void setColumnarEvaluation(boolean columnarEvaluation) {
+        this.columnarEvaluation = columnarEvaluation;
+    }
+
+    /**
+     * Selects whether comparisons of the same attribute with different constants are resolved together by a
+     * threshold index, with one binary search per attribute instead of one comparison per predicate. Both give the
+     * same results; the index pays off for queries with many thresholds on the same fields and is off by default.
+     *
+     * @param thresholdIndex Whether to resolve comparisons through a threshold index
+     */
+    public void setThresholdIndex(boolean thresholdIndex) {
+        worker.getMpiEPairsManager().getRegistry().setThresholdIndex(thresholdIndex);
+    }
+
+    /**
+     * Selects what is kept of the events that bound a PIE or trigger an IEP. By default only their timestamps and
+     * the attributes projected by the RETURN clause are kept, see {@link QueryParser#getEventRetention()};
+     * {@link EventRetention#FULL} keeps the events themselves, which are then never recycled.
+     *
+     * @param retention The retention of the events
+     */
+    public void setEventRetention(EventRetention retention) {
+        worker.getMpiEPairsManager().setEventRetention(retention);
+    }
+
     public void showPercentage(long cnt, long limit){
         if(limit == 0){
             logger.warn("Limit is zero, cannot compute percentage.");
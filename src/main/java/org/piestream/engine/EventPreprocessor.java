@@ -2,26 +2,33 @@ package org.piestream.engine;
 
 
 import org.piestream.events.Attribute;
+import org.piestream.events.EventLayout;
 import org.piestream.events.PointEvent;
 import org.piestream.events.PointEventIterator;
+import org.piestream.events.PointEventPool;
 import org.piestream.parser.Schema;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.HashMap;
 import java.util.Arrays;
 
 /**
  * EventPreprocessor class handles the preprocessing of raw event data into standardized PointEvent objects.
  * It provides functionality to parse raw data in different formats (JSON, CSV, BIN) into a structured format
  * based on the provided schema and assigns timestamps to the events.
+ * The produced events store their values in the typed slots of the schema's {@link EventLayout} and are taken
+ * from a {@link PointEventPool}; callers that are done with an event can hand it back with {@link #recycle(PointEvent)}.
  */
 public class EventPreprocessor {
     private final Schema schema;  // Schema defining the structure and attributes of the events
     private static long timestampCounter = 1;  // Counter for generating unique timestamps for events
     private static final ObjectMapper objectMapper = new ObjectMapper();  // JSON parser for processing raw JSON data
     private final PointEventIterator pointEventIterator;  // Iterator for processing point events
-    private final Map<Attribute, Object> reusePayload = new HashMap<>();  // Reusable map for event payloads
+    private final EventLayout layout;  // Slot layout of the produced events
+    private final PointEventPool pool;  // Pool of reusable slot events
+    private final CsvTokenizer csvTokenizer;  // Byte-level CSV decoder used in TOKENIZER mode
+    private final JsonSlotDecoder jsonDecoder;  // Streaming decoder for JSON and BIN records
+    private ParserMode parserMode = ParserMode.SPLIT;  // How CSV lines are decoded
 
     /**
      * Constructor to initialize the EventPreprocessor with the provided schema.
@@ -29,8 +36,48 @@ public class EventPreprocessor {
      * @param schema The schema that defines the structure and attributes of the events
      */
     public EventPreprocessor(Schema schema) {
+        this(schema, new PointEventPool(schema.getEventLayout()));
+    }
+
+    /**
+     * Constructor to initialize the EventPreprocessor with an explicit capacity of its event pool,
+     * for callers that decode and recycle many events at once.
+     *
+     * @param schema The schema that defines the structure and attributes of the events
+     * @param poolCapacity The maximum number of free events kept for reuse
+     */
+    public EventPreprocessor(Schema schema, int poolCapacity) {
+        this(schema, new PointEventPool(schema.getEventLayout(), poolCapacity));
+    }
+
+    private EventPreprocessor(Schema schema, PointEventPool pool) {
         this.schema = schema;
         this.pointEventIterator = new PointEventIterator();  // Initialize the point event iterator
+        this.layout = schema.getEventLayout();
+        this.pool = pool;
+        this.csvTokenizer = new CsvTokenizer(layout);
+        this.jsonDecoder = new JsonSlotDecoder(layout, schema.getFieldIndexMap(), objectMapper);
+    }
+
+    /**
+     * Selects how CSV lines are decoded. Both modes produce the same events.
+     *
+     * @param parserMode The parser mode to use
+     */
+    public void setParserMode(ParserMode parserMode) {
+        if (parserMode == null) {
+            throw new IllegalArgumentException("Parser mode cannot be null");
+        }
+        this.parserMode = parserMode;
+    }
+
+    /**
+     * Gets the parser mode used for CSV lines.
+     *
+     * @return The current parser mode
+     */
+    public ParserMode getParserMode() {
+        return parserMode;
     }
 
     /**
@@ -52,13 +99,96 @@ public class EventPreprocessor {
      * @return A standardized PointEvent with a timestamp
      */
     public PointEvent preprocess(String rawPointEvent, boolean useNativeTimestamp) {
-        // Parse the raw event data into a structured payload
-        Map<Attribute, Object> payload = parseRawEventToPayload(rawPointEvent);
+        // Parse the raw event data into the slots of a pooled event
+        PointEvent event = pool.acquire();
+        try {
+            parseRawEventToSlots(rawPointEvent, event);
+        } catch (RuntimeException e) {
+            pool.release(event);
+            throw e;
+        }
+        return assignTimestamp(event, useNativeTimestamp);
+    }
+
+    /**
+     * Standardizes a UTF-8 encoded CSV line held in a byte array, without creating a String for the line.
+     * The bytes are always decoded with the {@link CsvTokenizer}, independent of the parser mode.
+     *
+     * @param buf The buffer holding the line
+     * @param offset The offset of the first byte of the line
+     * @param length The length of the line without line terminator
+     * @return A standardized PointEvent with a timestamp
+     * @throws IllegalArgumentException If the schema is not a CSV schema or the line does not match it
+     */
+    public PointEvent preprocess(byte[] buf, int offset, int length) {
+        if (!"CSV".equalsIgnoreCase(schema.getRawdataType())) {
+            throw new IllegalArgumentException("Byte input is only supported for CSV data, got: " + schema.getRawdataType());
+        }
+        PointEvent event = pool.acquire();
+        try {
+            csvTokenizer.decode(buf, offset, length, event);
+        } catch (RuntimeException e) {
+            pool.release(event);
+            throw e;
+        }
+        return assignTimestamp(event, true);
+    }
+
+    /**
+     * Standardizes a UTF-8 encoded line of any raw data type held in a byte array, for callers that decode lines
+     * out of order. Native timestamps are extracted as usual, but events of schemas without a native timestamp are
+     * not numbered: their timestamp is left at 0, and the caller numbers them in stream order with
+     * {@link #reserveTimestamps(int)}. CSV lines are always decoded with the {@link CsvTokenizer}.
+     *
+     * @param buf The buffer holding the line
+     * @param offset The offset of the first byte of the line
+     * @param length The length of the line without line terminator
+     * @return A standardized PointEvent, with a timestamp only if the schema has a native timestamp
+     */
+    PointEvent preprocessUnordered(byte[] buf, int offset, int length) {
+        PointEvent event = pool.acquire();
+        try {
+            if ("CSV".equalsIgnoreCase(schema.getRawdataType())) {
+                csvTokenizer.decode(buf, offset, length, event);
+            } else {
+                parseRawEventToSlots(new String(buf, offset, length, StandardCharsets.UTF_8), event);
+            }
+        } catch (RuntimeException e) {
+            pool.release(event);
+            throw e;
+        }
+        if (schema.hasNativeTimestamp()) {
+            event.setTimestamp(event.extractTimestamp());
+        }
+        return event;
+    }
 
+    /**
+     * Takes a block of consecutive timestamps from the counter used for events without a native timestamp.
+     *
+     * @param count The number of timestamps to take
+     * @return The first timestamp of the block
+     */
+    static long reserveTimestamps(int count) {
+        synchronized (EventPreprocessor.class) {
+            long first = timestampCounter;
+            timestampCounter += count;
+            return first;
+        }
+    }
+
+    /**
+     * Sets the native or an incrementing timestamp on a decoded event.
+     *
+     * @param event The decoded event
+     * @param useNativeTimestamp Flag indicating whether to use a native timestamp from the raw event
+     * @return The same event
+     */
+    private PointEvent assignTimestamp(PointEvent event, boolean useNativeTimestamp) {
         long timestamp;
         if (useNativeTimestamp && schema.hasNativeTimestamp()) {
             // Extract the timestamp if a native timestamp is provided in the raw event
-            timestamp = extractTimestampFromPayload(payload);
+            timestamp = event.extractTimestamp();
         } else {
             // If no native timestamp is available, assign an incrementing timestamp
             synchronized (EventPreprocessor.class) {
@@ -67,68 +197,36 @@ public class EventPreprocessor {
         }
 
         // Return the standardized PointEvent with the extracted/assigned timestamp
-        return new PointEvent(payload, timestamp);
+        event.setTimestamp(timestamp);
+        return event;
     }
 
     /**
-     * Extracts the timestamp from the event's payload.
-     * The timestamp is assumed to be in the field defined by the schema's timestamp attribute.
+     * Hands an event that is no longer needed back to the pool.
+     * Events retained by PIE boundaries or IEPs are ignored by the pool and stay untouched.
      *
-     * @param payload The event's payload (a map of attributes and their values)
-     * @return The extracted timestamp value
-     * @throws IllegalArgumentException If the timestamp field is missing or invalid
+     * @param event The event produced by this preprocessor
      */
-    private long extractTimestampFromPayload(Map<Attribute, Object> payload) {
-        // Find the timestamp attribute based on the schema
-        Attribute timestampAttribute = schema.getAttributes().stream()
-                .filter(attr -> attr.getName().equals(schema.getTimestampField()))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Timestamp field not found in schema"));
-
-        // Get the timestamp value from the payload
-        Object timestampObj = payload.get(timestampAttribute);
-        if (timestampObj == null) {
-            throw new IllegalArgumentException("Timestamp field not found in event payload");
-        }
-
-        // If the timestamp attribute is of type "long", convert it accordingly
-        if ("long".equalsIgnoreCase(timestampAttribute.getType())) {
-            if (timestampObj instanceof Long) {
-                return (Long) timestampObj;  // Direct conversion if the timestamp is already a Long
-            } else if (timestampObj instanceof String) {
-                try {
-                    return Long.parseLong((String) timestampObj);  // Parse if the timestamp is a string
-                } catch (NumberFormatException e) {
-                    throw new IllegalArgumentException("Invalid long value: " + timestampObj, e);
-                }
-            }
-        }
-
-        // If it's neither Long nor String, convert to Long after calling toString
-        return Long.parseLong(timestampObj.toString());
+    public void recycle(PointEvent event) {
+        pool.release(event);
     }
 
     /**
-     * Parses a raw event (in various formats like JSON, CSV, BIN) into a Map of attributes and their corresponding values.
+     * Parses a raw event (in various formats like JSON, CSV, BIN) into the slots of the given event.
      *
-     * @param rawEvent The raw event data, which can be a String, List, or Map
-     * @return A map containing the attributes and their corresponding values
+     * @param rawEvent The raw event data, which can be a String or List
+     * @param event The event whose slots are filled
      * @throws IllegalArgumentException If the raw event format is unsupported or invalid
      */
-    private Map<Attribute, Object> parseRawEventToPayload(Object rawEvent) {
-        Map<Attribute, Object> payload = new HashMap<>();
-
+    private void parseRawEventToSlots(Object rawEvent, PointEvent event) {
         String rawdataType = schema.getRawdataType();  // Get the raw data type (JSON, CSV, BIN)
 
         // Handle JSON data format
         if ("JSON".equalsIgnoreCase(rawdataType)) {
             if (rawEvent instanceof String) {
                 try {
-                    // Parse the JSON string into a Map of attributes
-                    Map<String, Object> rawMap = objectMapper.readValue((String) rawEvent, Map.class);
-                    for (Attribute attribute : schema.getAttributes()) {
-                        payload.put(attribute, rawMap.get(attribute.getName()));  // Populate the payload map
-                    }
+                    // Stream the JSON tokens straight into the slots, unknown fields are skipped
+                    jsonDecoder.decode((String) rawEvent, event);
                 } catch (Exception e) {
                     throw new IllegalArgumentException("Failed to parse JSON string", e);
                 }
@@ -138,13 +236,15 @@ public class EventPreprocessor {
         }
         // Handle CSV data format
         else if ("CSV".equalsIgnoreCase(rawdataType)) {
-            if (rawEvent instanceof String) {
+            if (rawEvent instanceof String && parserMode == ParserMode.TOKENIZER) {
+                csvTokenizer.decode((String) rawEvent, event);  // Scan the line once, numbers go straight into the slots
+            } else if (rawEvent instanceof String) {
                 String rawString = (String) rawEvent;
                 String[] rawArray = rawString.split(",", -1);  // Split CSV by commas, preserving empty strings
                 List<String> rawList = Arrays.asList(rawArray);
-                return convertListToPayload(rawList);  // Convert the CSV data into a structured payload
+                convertListToSlots(rawList, event);  // Convert the CSV data into the typed slots
             } else if (rawEvent instanceof List) {
-                return convertListToPayload((List<?>) rawEvent);  // Convert from List format
+                convertListToSlots((List<?>) rawEvent, event);  // Convert from List format
             } else {
                 throw new IllegalArgumentException("For CSV data, rawEvent should be of type String or List");
             }
@@ -153,10 +253,7 @@ public class EventPreprocessor {
         else if ("BIN".equalsIgnoreCase(rawdataType)) {
             if (rawEvent instanceof String) {
                 try {
-                    Map<String, Object> rawMap = objectMapper.readValue((String) rawEvent, Map.class);
-                    for (Attribute attribute : schema.getAttributes()) {
-                        payload.put(attribute, rawMap.get(attribute.getName()));
-                    }
+                    jsonDecoder.decode((String) rawEvent, event);
                 } catch (Exception e) {
                     throw new IllegalArgumentException("Failed to parse BIN data", e);
                 }
@@ -168,32 +265,25 @@ public class EventPreprocessor {
         else {
             throw new IllegalArgumentException("Unsupported rawdataType: " + rawdataType);
         }
-
-        return payload;
     }
 
     /**
-     * Converts a List representing an event's fields into a Map of attributes and values.
+     * Converts a List representing an event's fields into the typed slots of an event.
      * The size of the List must match the number of attributes in the schema.
      *
      * @param rawList The raw event data in List format
-     * @return A Map of attributes and their corresponding values
+     * @param event The event whose slots are filled
      * @throws IllegalArgumentException If the List size does not match the number of attributes in the schema
      */
-    private Map<Attribute, Object> convertListToPayload(List<?> rawList) {
-        reusePayload.clear();  // Clear the previous payload
-
+    private void convertListToSlots(List<?> rawList, PointEvent event) {
         List<Attribute> attributes = schema.getAttributes();
         if (rawList.size() != attributes.size()) {
             throw new IllegalArgumentException("List size does not match schema field count");
         }
 
-        // Populate the payload map with attribute-value pairs
+        // Populate the slots in attribute order
         for (int i = 0; i < rawList.size(); i++) {
-            Attribute attribute = attributes.get(i);
-            reusePayload.put(attribute, rawList.get(i));
+            event.setValue(i, rawList.get(i));
         }
-
-        return reusePayload;
     }
 }
@@ -0,0 +1,121 @@
+package org.piestream.engine;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.piestream.events.EventLayout;
+import org.piestream.events.PointEvent;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JsonSlotDecoder decodes a JSON object straight into the typed slots of a {@link PointEvent}.
+ * It walks the {@link JsonParser} tokens once, resolves every field name to its schema ordinal with a
+ * precomputed lookup and skips fields that are not part of the schema without materialising them.
+ * Numbers are written as primitives when the attribute type can hold them; all other values take the
+ * same boxed form {@code ObjectMapper.readValue(raw, Map.class)} would have produced, so the resulting
+ * events are the same as with the Map based decoding.
+ */
+public class JsonSlotDecoder {
+
+    private final EventLayout layout;  // Slot layout of the decoded events
+    private final Map<String, Integer> ordinals;  // Field name to schema ordinal
+    private final ObjectMapper objectMapper;  // Used for nested values of known fields only
+    private final JsonFactory jsonFactory;  // Factory for the streaming parsers
+
+    /**
+     * Creates a decoder for the given layout and field index map.
+     *
+     * @param layout The slot layout of the decoded events
+     * @param fieldIndexMap A map of field names to their index in the attribute list
+     * @param objectMapper The mapper whose factory creates the parsers
+     */
+    public JsonSlotDecoder(EventLayout layout, Map<String, Integer> fieldIndexMap, ObjectMapper objectMapper) {
+        this.layout = layout;
+        this.ordinals = new HashMap<>(fieldIndexMap);
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Decodes a JSON object into the slots of the event. Fields missing in the object leave their slots null.
+     *
+     * @param raw The JSON text
+     * @param event The event whose slots are filled
+     * @throws IOException If the text is not a valid JSON object
+     */
+    public void decode(String raw, PointEvent event) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(raw)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Integer ordinal = ordinals.get(parser.getCurrentName());
+                JsonToken token = parser.nextToken();
+                if (ordinal == null) {
+                    parser.skipChildren();  // Unknown field, nested values are skipped without being built
+                    continue;
+                }
+                decodeValue(parser, token, ordinal, event);
+            }
+        }
+    }
+
+    /**
+     * Writes the value at the current token into the slot of the given ordinal.
+     */
+    private void decodeValue(JsonParser parser, JsonToken token, int ordinal, PointEvent event) throws IOException {
+        switch (token) {
+            case VALUE_NUMBER_INT:
+                JsonParser.NumberType numberType = parser.getNumberType();
+                if (layout.isIntegral(ordinal) && numberType != JsonParser.NumberType.BIG_INTEGER) {
+                    long value = parser.getLongValue();
+                    if (fits(layout.getKind(ordinal), value)) {
+                        event.setLong(ordinal, value);
+                        return;
+                    }
+                }
+                event.setValue(ordinal, parser.getNumberValue());
+                return;
+            case VALUE_NUMBER_FLOAT:
+                double value = parser.getDoubleValue();
+                byte kind = layout.getKind(ordinal);
+                if (kind == EventLayout.KIND_DOUBLE || (kind == EventLayout.KIND_FLOAT && (double) (float) value == value)) {
+                    event.setDouble(ordinal, value);
+                    return;
+                }
+                event.setValue(ordinal, value);
+                return;
+            case VALUE_STRING:
+                event.setValue(ordinal, parser.getText());
+                return;
+            case VALUE_TRUE:
+                event.setValue(ordinal, Boolean.TRUE);
+                return;
+            case VALUE_FALSE:
+                event.setValue(ordinal, Boolean.FALSE);
+                return;
+            case VALUE_NULL:
+                event.setValue(ordinal, null);
+                return;
+            default:
+                // Nested object or array of a known field
+                event.setValue(ordinal, objectMapper.readValue(parser, Object.class));
+        }
+    }
+
+    /**
+     * Checks that an integral value is in the range of the attribute type.
+     */
+    private static boolean fits(byte kind, long value) {
+        switch (kind) {
+            case EventLayout.KIND_BYTE: return value == (byte) value;
+            case EventLayout.KIND_SHORT: return value == (short) value;
+            case EventLayout.KIND_INT: return value == (int) value;
+            default: return true;
+        }
+    }
+}
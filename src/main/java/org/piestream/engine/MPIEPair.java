@@ -1,14 +1,17 @@
 package org.piestream.engine;
 
+import org.piestream.events.EventRetention;
 import org.piestream.events.PointEvent;
-import org.piestream.merger.LinkList;
 import org.piestream.merger.TreeNode;
 import org.piestream.piepair.*;
 import org.piestream.piepair.dfa.Alphabet;
+import org.piestream.piepair.dfa.ProductDFA;
 import org.piestream.piepair.eba.EBA;
 import org.piestream.merger.IEPCol;
+import org.piestream.parser.MPIEPairSource;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
@@ -25,27 +28,37 @@ import java.util.Set;
  */
 public class MPIEPair {
     private final Set<TemporalRelations.PreciseRel> relations;  // List of precise temporal relations
-    private final EventClassifier classifier;                    // Classifier to classify incoming events
+    private final PredicateRegistry registry;                    // Registry holding the results of the predicates
+    private final boolean ownsRegistry;                          // Whether the predicates are evaluated by this pair
+    private final int formerIndex;                               // Bit index of the former EBA in the registry
+    private final int latterIndex;                               // Bit index of the latter EBA in the registry
     private final EBA formerPred;                                // Former EBA (Event Based Automaton)
     private final EBA latterPred;                                // Latter EBA
     private final int QCapacity;                                 // Queue capacity
     private final List<PIEPair> piePairs;                        // List of PIEPairs
+    private final ProductDFA fused;                              // DFAs of all relations fused, null if stepped one by one
+    private final int[] completingPairs;                         // PIEPairs completed by each alphabet transition, by code
+    private int triggeringPairs;                                 // PIEPairs triggered but not yet completed
     private Alphabet lastAlphabet;                               // Last alphabet state
     private Alphabet currentAlphabet;                            // Current alphabet state
+    private int transition;                                      // Code of the last alphabet transition, see transitionOf
     private PointEvent formerPieStart;                           // Start event for former PIE
     private PointEvent formerPieEnd;                             // End event for former PIE
     private PointEvent latterPieStart;                           // Start event for latter PIE
     private PointEvent latterPieEnd;                             // End event for latter PIE
-    private final LinkList<IE> formerIEList;                           // List of former interval events
-    private final LinkList<IE> latterIEList;                           // List of latter interval events
-    private final TreeNode node;                                  // Tree node representing the pattern
-    private final boolean hasBefore;                             // Flag indicating the presence of a "before" relationship
-    private final boolean hasAfter;                              // Flag indicating the presence of an "after" relationship
+    private TreeNode[] nodes = new TreeNode[0];                  // Tree nodes subscribed to the pair, one per query sharing it
+    private boolean hasBefore;                                   // Flag indicating the presence of a "before" relationship
+    private boolean hasAfter;                                    // Flag indicating the presence of an "after" relationship
     private boolean hasNewFormerIE;                              // Flag indicating new former interval event
     private boolean hasNewLatterIE;                              // Flag indicating new latter interval event
+    private boolean repeatable;                                  // Whether another event of the current alphabet cannot change the pair
+    private EventRetention retention = EventRetention.FULL;      // What is kept of the events bounding a PIE or triggering an IEP
+    private PointEvent keptFrom;                                 // Event of the current run kept by keep(), null if none
+    private PointEvent kept;                                     // What is kept of that event
 
     /**
      * Constructor to initialize the MPIEPair object and create PIEPairs for the given relations.
+     * The pair evaluates its two predicates itself for every event.
      *
      * @param relations Set of precise temporal relations
      * @param formerPred Former EBA  to classify the events
@@ -53,19 +66,52 @@ public class MPIEPair {
      * @param node TreeNode representing the state of the pattern
      */
     public MPIEPair(Set<TemporalRelations.PreciseRel> relations, EBA formerPred, EBA latterPred, TreeNode node) {
-        if (relations == null || formerPred == null || latterPred == null) {
+        this(relations, formerPred, latterPred, node, new PredicateRegistry(null), true);
+    }
+
+    /**
+     * Constructor to initialize the MPIEPair object with a registry shared by all pairs of a query.
+     * The registry must be evaluated for every event before {@link #run(PointEvent)} is called.
+     *
+     * @param relations Set of precise temporal relations
+     * @param formerPred Former EBA  to classify the events
+     * @param latterPred Latter EBA to classify the events
+     * @param node TreeNode representing the state of the pattern
+     * @param registry The registry evaluating the predicates of the query
+     */
+    public MPIEPair(Set<TemporalRelations.PreciseRel> relations, EBA formerPred, EBA latterPred, TreeNode node,
+                    PredicateRegistry registry) {
+        this(relations, formerPred, latterPred, node, registry, false);
+    }
+
+    /**
+     * Constructor to initialize an MPIEPair shared by the tree nodes of several queries, see
+     * {@link #subscribe(TreeNode, Set)}. The relations are the union of the relations of the subscribers.
+     *
+     * @param relations Set of precise temporal relations
+     * @param formerPred Former EBA  to classify the events
+     * @param latterPred Latter EBA to classify the events
+     * @param registry The registry evaluating the predicates of all queries
+     */
+    public MPIEPair(Set<TemporalRelations.PreciseRel> relations, EBA formerPred, EBA latterPred,
+                    PredicateRegistry registry) {
+        this(relations, formerPred, latterPred, null, registry, false);
+    }
+
+    private MPIEPair(Set<TemporalRelations.PreciseRel> relations, EBA formerPred, EBA latterPred, TreeNode node,
+                     PredicateRegistry registry, boolean ownsRegistry) {
+        if (relations == null || formerPred == null || latterPred == null || registry == null) {
             throw new IllegalArgumentException("Parameters cannot be null");
         }
         this.relations =  relations;
         this.formerPred = formerPred;
         this.latterPred = latterPred;
-        this.classifier = new EventClassifier(formerPred, latterPred);
+        this.registry = registry;
+        this.ownsRegistry = ownsRegistry;
+        this.formerIndex = registry.register(formerPred);
+        this.latterIndex = registry.register(latterPred);
         this.QCapacity = 0;
         this.piePairs = new ArrayList<>();
-        this.node = node;
-        this.node.setMPIEPair(this);
-        this.hasBefore = node.isHasBefore();
-        this.hasAfter = node.isHasAfter();
         this.hasNewFormerIE = false;
         this.hasNewLatterIE = false;
 
@@ -74,17 +120,62 @@ public class MPIEPair {
             this.piePairs.add(pp);
         }
 
-        if (node.isHasBefore()) {
-            this.formerIEList = node.getFormerIEList();
-        } else {
-            this.formerIEList = null;
+        // Fuse the DFAs of the relations, so an event takes one step instead of one per relation
+        List<TemporalRelations.PreciseRel> fusedRelations = new ArrayList<>();
+        for (PIEPair pp : piePairs) {
+            fusedRelations.add(pp.getRelation());
+        }
+        this.fused = piePairs.size() > 1 ? ProductDFA.ofRelations(fusedRelations) : null;
+        this.completingPairs = new int[transitionOf(Alphabet.E, Alphabet.E) + 1];
+        if (fused != null) {
+            for (int i = 0; i < piePairs.size(); i++) {
+                piePairs.get(i).fuse(fused, i);
+                for (int code = 0; code < completingPairs.length; code++) {
+                    completingPairs[code] |= piePairs.get(i).completesOn(code) ? 1 << i : 0;
+                }
+            }
+        }
+
+        if (node != null) {
+            subscribe(node, relations);
         }
+    }
+
+    /**
+     * Subscribes the leaf node of a query to the pair. The PIEPairs of the node's relations create and complete
+     * their IEPs in the node's column, and the interval events of the pair are recorded for the before and after
+     * relations of the node. The IEPs and IEs of the node refer to the EBAs of the node's source, so queries
+     * with equal PIEs share one pair even though their EBAs are other instances.
+     *
+     * @param node The leaf node detecting the relations
+     * @param relations The precise relations of the node, a subset of the relations of this pair
+     */
+    public void subscribe(TreeNode node, Set<TemporalRelations.PreciseRel> relations) {
+        if (node == null || node.getSource() == null) {
+            throw new IllegalArgumentException("Only leaf nodes can subscribe to an MPIEPair");
+        }
+        MPIEPairSource source = node.getSource();
+        for (TemporalRelations.PreciseRel relation : relations) {
+            PIEPair pp = getPiePair(relation);
+            if (pp == null) {
+                throw new IllegalArgumentException("Relation " + relation + " is not detected by " + this);
+            }
+            pp.subscribe(node.getCol(), source.getFormerPred(), source.getLatterPred());
+        }
+        node.setMPIEPair(this);
+        nodes = Arrays.copyOf(nodes, nodes.length + 1);
+        nodes[nodes.length - 1] = node;
+        hasBefore |= node.isHasBefore();
+        hasAfter |= node.isHasAfter();
+    }
 
-        if (node.isHasAfter()) {
-            this.latterIEList = node.getLatterIEList();
-        } else {
-            this.latterIEList = null;
+    private PIEPair getPiePair(TemporalRelations.PreciseRel relation) {
+        for (PIEPair pp : piePairs) {
+            if (pp.getRelation() == relation) {
+                return pp;
+            }
         }
+        return null;
     }
 
     public boolean isHasNewFormerIE() {
@@ -118,20 +209,79 @@ public class MPIEPair {
 
     /**
      * Processes an incoming PointEvent and updates the MPIEPair accordingly.
-     * It classifies the event and manages transitions between states.
+     * It classifies the event from the predicate results in the registry and manages transitions between states.
      *
      * @param event The incoming event to be processed
      */
     public void run(PointEvent event) {
+        if (event == null) {
+            throw new IllegalArgumentException("PointEvent cannot be null");
+        }
         resetNewIE();
-        Alphabet newAlphabet = classifier.classify(event);
+        if (ownsRegistry) {
+            registry.evaluate(event);
+        }
+        Alphabet newAlphabet = registry.classify(formerIndex, latterIndex);
+        if (repeatable && newAlphabet == currentAlphabet) {
+            return;  // The run of the alphabet goes on, every DFA loops without triggering or completing
+        }
         lastAlphabet = currentAlphabet;
         currentAlphabet = newAlphabet;
+        transition = transitionOf(lastAlphabet, currentAlphabet);
+        keptFrom = null;
         recordIntervalEvent(event);
 
+        if (fused != null) {
+            stepFused(event, newAlphabet);
+            return;
+        }
+        boolean repeatable = lastAlphabet == newAlphabet;
         for (PIEPair pp : piePairs) {
             pp.stepByPE(event, newAlphabet, formerPieStart, formerPieEnd, latterPieStart, latterPieEnd);
+            repeatable &= pp.isParked() && !pp.isCompleted();
+        }
+        this.repeatable = repeatable;
+    }
+
+    /**
+     * Steps the fused DFAs of all relations at once. Only the PIEPairs that trigger, or that complete a trigger
+     * on this alphabet transition, are notified, in the order of the relations. The PIE boundaries held by the
+     * other PIEPairs go stale meanwhile; they are only read when a PIEPair is notified, after being refreshed.
+     */
+    private void stepFused(PointEvent event, Alphabet newAlphabet) {
+        int triggered = fused.step(newAlphabet);
+        int notified = triggered | (triggeringPairs & completingPairs[transition]);
+        while (notified != 0) {
+            int i = Integer.numberOfTrailingZeros(notified);
+            PIEPair pp = piePairs.get(i);
+            pp.followStep(event, formerPieStart, formerPieEnd, latterPieStart, latterPieEnd);
+            triggeringPairs = pp.isOnTriggering() ? triggeringPairs | (1 << i) : triggeringPairs & ~(1 << i);
+            notified &= notified - 1;
         }
+        repeatable = lastAlphabet == newAlphabet && fused.isParked()
+                && (triggeringPairs & completingPairs[transition]) == 0;
+    }
+
+    /**
+     * Checks if running another event classified as O would leave the pair exactly as it is: the current run of
+     * alphabets is a run of O, see {@link #isRepeatable()}.
+     *
+     * @return true if an O event cannot change the pair
+     */
+    public boolean isParked() {
+        return repeatable && currentAlphabet == Alphabet.O;
+    }
+
+    /**
+     * Checks if another event of the current alphabet would leave the pair exactly as it is: the last event repeated
+     * the alphabet of the event before, so no PIE starts or ends, and every DFA is parked in a state that loops to
+     * itself on that alphabet without triggering. Such events are skipped by {@link #run(PointEvent)}, which keeps
+     * the flag valid for the whole run of the alphabet.
+     *
+     * @return true if an event of the current alphabet cannot change the pair
+     */
+    public boolean isRepeatable() {
+        return repeatable;
     }
 
     /**
@@ -171,12 +321,48 @@ public class MPIEPair {
     }
 
     /**
-     * Returns the IEPCol associated with the current TreeNode.
+     * Returns the IEPCol associated with the first subscribed TreeNode.
      *
-     * @return IEPCol of the TreeNode
+     * @return IEPCol of the TreeNode, null if no node subscribed
      */
     public IEPCol getCol() {
-        return node.getCol();
+        return nodes.length == 0 ? null : nodes[0].getCol();
+    }
+
+    /**
+     * Returns the tree nodes subscribed to this pair, one per query sharing it.
+     *
+     * @return The subscribed nodes
+     */
+    public List<TreeNode> getNodes() {
+        return Arrays.asList(nodes);
+    }
+
+    /**
+     * Selects what is kept of the events that bound a PIE or trigger an IEP of this pair.
+     *
+     * @param retention The retention of the events
+     */
+    public void setEventRetention(EventRetention retention) {
+        if (retention == null) {
+            throw new IllegalArgumentException("Event retention cannot be null");
+        }
+        this.retention = retention;
+    }
+
+    /**
+     * Keeps the event being run as it is referenced beyond its classification, as a PIE boundary or the trigger
+     * event of an IEP. The event is kept once per run, so its boundaries and IEPs share the kept event.
+     *
+     * @param event The event being run
+     * @return The kept event, see {@link EventRetention#keep(PointEvent)}
+     */
+    public PointEvent keep(PointEvent event) {
+        if (keptFrom != event) {
+            kept = retention.keep(event);
+            keptFrom = event;
+        }
+        return kept;
     }
 
     /**
@@ -188,31 +374,41 @@ public class MPIEPair {
      */
     private void recordIntervalEvent(PointEvent event) {
         if (isFormerPieStartTransition()) {
-            formerPieStart = event;
+            formerPieStart = keep(event);
             formerPieEnd = null;
             hasNewFormerIE = true;
         }
         if (isFormerPieEndTransition()) {
-            formerPieEnd = event;
-            if (hasBefore) {
-                formerIEList.safeAdd(new IE(formerPred, formerPieStart, formerPieEnd, event.getTimestamp()));
-            }
-            if (hasAfter) {
-                node.getAftCol().updateCompletedMSG("former", formerPred, formerPieStart.getTimestamp(), formerPieEnd);
+            formerPieEnd = keep(event);
+            if (hasBefore || hasAfter) {
+                for (TreeNode node : nodes) {
+                    EBA pred = node.getSource().getFormerPred();
+                    if (node.isHasBefore()) {
+                        node.getFormerIEList().safeAdd(new IE(pred, formerPieStart, formerPieEnd, event.getTimestamp()));
+                    }
+                    if (node.isHasAfter()) {
+                        node.getAftCol().updateCompletedMSG("former", pred, formerPieStart.getTimestamp(), formerPieEnd);
+                    }
+                }
             }
         }
         if (isLatterPieStartTransition()) {
-            latterPieStart = event;
+            latterPieStart = keep(event);
             latterPieEnd = null;
             hasNewLatterIE = true;
         }
         if (isLatterPieEndTransition()) {
-            latterPieEnd = event;
-            if (hasAfter) {
-                latterIEList.safeAdd(new IE(latterPred, latterPieStart, latterPieEnd, event.getTimestamp()));
-            }
-            if (hasBefore) {
-                node.getBefCol().updateCompletedMSG("latter", latterPred, latterPieStart.getTimestamp(), latterPieEnd);
+            latterPieEnd = keep(event);
+            if (hasBefore || hasAfter) {
+                for (TreeNode node : nodes) {
+                    EBA pred = node.getSource().getLatterPred();
+                    if (node.isHasAfter()) {
+                        node.getLatterIEList().safeAdd(new IE(pred, latterPieStart, latterPieEnd, event.getTimestamp()));
+                    }
+                    if (node.isHasBefore()) {
+                        node.getBefCol().updateCompletedMSG("latter", pred, latterPieStart.getTimestamp(), latterPieEnd);
+                    }
+                }
             }
         }
     }
@@ -233,8 +429,19 @@ public class MPIEPair {
      * @return true if it is the end of a former PIE, false otherwise
      */
     public boolean isFormerPieEndTransition() {
-        return (lastAlphabet == Alphabet.Z || lastAlphabet == Alphabet.E) &&
-                (currentAlphabet == Alphabet.O || currentAlphabet == Alphabet.I);
+        return isFormerPieEndTransition(lastAlphabet, currentAlphabet);
+    }
+
+    /**
+     * Checks if a transition between two alphabets is the end of a former PIE.
+     *
+     * @param last The last alphabet, may be null
+     * @param current The current alphabet
+     * @return true if it is the end of a former PIE, false otherwise
+     */
+    public static boolean isFormerPieEndTransition(Alphabet last, Alphabet current) {
+        return (last == Alphabet.Z || last == Alphabet.E) &&
+                (current == Alphabet.O || current == Alphabet.I);
     }
 
     /**
@@ -253,8 +460,41 @@ public class MPIEPair {
      * @return true if it is the end of a latter PIE, false otherwise
      */
     public boolean isLatterPieEndTransition() {
-        return (lastAlphabet == Alphabet.I || lastAlphabet == Alphabet.E) &&
-                (currentAlphabet == Alphabet.O || currentAlphabet == Alphabet.Z);
+        return isLatterPieEndTransition(lastAlphabet, currentAlphabet);
+    }
+
+    /**
+     * Checks if a transition between two alphabets is the end of a latter PIE.
+     *
+     * @param last The last alphabet, may be null
+     * @param current The current alphabet
+     * @return true if it is the end of a latter PIE, false otherwise
+     */
+    public static boolean isLatterPieEndTransition(Alphabet last, Alphabet current) {
+        return (last == Alphabet.I || last == Alphabet.E) &&
+                (current == Alphabet.O || current == Alphabet.Z);
+    }
+
+    /**
+     * Numbers a transition between two alphabets as (last + 1) * 4 + current, a missing last alphabet counting
+     * as -1, so the codes range from 0 to 19 and sets of transitions fit into the bits of an int.
+     *
+     * @param last The last alphabet, may be null
+     * @param current The current alphabet
+     * @return The code of the transition
+     */
+    public static int transitionOf(Alphabet last, Alphabet current) {
+        return (last == null ? 0 : last.ordinal() + 1) * 4 + current.ordinal();
+    }
+
+    /**
+     * Returns the code of the last alphabet transition, see {@link #transitionOf(Alphabet, Alphabet)}.
+     * Before the first event it is the code of a transition from no alphabet to O.
+     *
+     * @return The code of the last transition
+     */
+    public int getTransition() {
+        return transition;
     }
 
     /**
@@ -3,12 +3,22 @@ package org.piestream.engine;
 import org.piestream.merger.TreeNode;
 import org.piestream.parser.MPIEPairSource;
 import org.piestream.piepair.PIEPair;
+import org.piestream.piepair.PredicateRegistry;
+import org.piestream.piepair.TemporalRelations;
+import org.piestream.piepair.eba.CompiledEBA;
+import org.piestream.piepair.eba.EBA;
+import org.piestream.events.EventBlock;
+import org.piestream.events.EventRetention;
 import org.piestream.events.PointEvent;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * The MPIEPairsManager class is responsible for managing multiple MPIEPairs within the event stream processing system.
@@ -28,6 +38,8 @@ public class MPIEPairsManager {
     private final Map<MPIEPairSource, MPIEPair> MPPSourceToPairMap;  // Mapping from MPIEPairSource to MPIEPair
     private final List<PIEPair> AllPiePairs;         // List of all PIEPairs from all MPIEPairs
     private Map<MPIEPairSource, TreeNode> source2Node = new HashMap<>();  // Mapping from MPIEPairSource to TreeNode
+    private final PredicateRegistry registry;  // Evaluates every distinct predicate once per event
+    private boolean parked;  // Whether every MPIEPair is parked on O, see MPIEPair#isParked()
 
     /**
      * Constructor to initialize the MPIEPairsManager with a list of MPIEPairSource objects and a mapping
@@ -37,23 +49,95 @@ public class MPIEPairsManager {
      * @param source2Node Mapping from MPIEPairSource to TreeNode that corresponds to each source
      */
     public MPIEPairsManager(List<MPIEPairSource> MPPSourceList, Map<MPIEPairSource, TreeNode> source2Node) {
-        this.MPPSourceList = MPPSourceList;
-        this.MPIEPairList = new ArrayList<>();
-        this.MPPSourceToPairMap = new HashMap<>();
-        this.source2Node = source2Node;
-        this.AllPiePairs = new ArrayList<>();
+        this(MPPSourceList, source2Node, (Map<EBA, String>) null);
+    }
+
+    /**
+     * Constructor that additionally identifies the predicates of the MPIEPairs by their PIE alias, so a PIE shared
+     * by several MPIEPairs is evaluated only once per event.
+     *
+     * @param MPPSourceList List of MPIEPairSource objects that define the sources of the MPIEPairs
+     * @param source2Node Mapping from MPIEPairSource to TreeNode that corresponds to each source
+     * @param EBA2String Map from the EBAs of the query to their aliases, may be null
+     */
+    public MPIEPairsManager(List<MPIEPairSource> MPPSourceList, Map<MPIEPairSource, TreeNode> source2Node,
+                            Map<EBA, String> EBA2String) {
+        this(MPPSourceList, source2Node, new PredicateRegistry(EBA2String));
 
         // Initialize each MPIEPairSource and its corresponding MPIEPair,
         // adding them to the lists and mappings.
         for (MPIEPairSource MPPSource : MPPSourceList) {
             MPIEPair mpiePair = new MPIEPair(MPPSource.getOriginRelations(), MPPSource.getFormerPred(),
-                    MPPSource.getLatterPred(), source2Node.get(MPPSource));
+                    MPPSource.getLatterPred(), source2Node.get(MPPSource), registry);
             this.MPIEPairList.add(mpiePair);
             this.MPPSourceToPairMap.put(MPPSource, mpiePair);  // Mapping MPPSource to its corresponding MPIEPair
             this.AllPiePairs.addAll(mpiePair.getPiePairs());  // Add all PIEPairs from the current MPIEPair to the list
         }
     }
 
+    private MPIEPairsManager(List<MPIEPairSource> MPPSourceList, Map<MPIEPairSource, TreeNode> source2Node,
+                             PredicateRegistry registry) {
+        this.registry = registry;
+        this.MPPSourceList = MPPSourceList;
+        this.MPIEPairList = new ArrayList<>();
+        this.MPPSourceToPairMap = new HashMap<>();
+        this.source2Node = source2Node;
+        this.AllPiePairs = new ArrayList<>();
+    }
+
+    /**
+     * Creates a manager whose MPIEPairs are shared by the pattern sources of several queries over the same stream.
+     * Sources whose former and latter EBAs are structurally equal (see {@link CompiledEBA#getSource()}) are
+     * detected by a single MPIEPair for the union of their relations, and every distinct EBA is evaluated once per
+     * event. The leaf node of every source subscribes to the shared MPIEPair, which fans the IEPs and IEs of the
+     * source's relations out to it, see {@link MPIEPair#subscribe(TreeNode, Set)}.
+     *
+     * @param MPPSourceList The pattern sources of all queries
+     * @param source2Node Mapping from every source to the leaf node of its query's tree
+     * @return The manager of the shared MPIEPairs
+     */
+    public static MPIEPairsManager shared(List<MPIEPairSource> MPPSourceList, Map<MPIEPairSource, TreeNode> source2Node) {
+        MPIEPairsManager manager = new MPIEPairsManager(MPPSourceList, source2Node, new PredicateRegistry(null));
+        Map<EBA, EBA> canonical = new HashMap<>();  // First EBA of every structure, evaluated for all its equals
+        Map<List<EBA>, Set<TemporalRelations.PreciseRel>> relationsByPair = new LinkedHashMap<>();
+        List<List<EBA>> keys = new ArrayList<>();
+        for (MPIEPairSource MPPSource : MPPSourceList) {
+            List<EBA> key = Arrays.asList(canonical(MPPSource.getFormerPred(), canonical),
+                    canonical(MPPSource.getLatterPred(), canonical));
+            relationsByPair.computeIfAbsent(key, k -> new HashSet<>()).addAll(MPPSource.getOriginRelations());
+            keys.add(key);
+        }
+
+        Map<List<EBA>, MPIEPair> pairs = new HashMap<>();
+        for (Map.Entry<List<EBA>, Set<TemporalRelations.PreciseRel>> entry : relationsByPair.entrySet()) {
+            MPIEPair mpiePair = new MPIEPair(entry.getValue(), entry.getKey().get(0), entry.getKey().get(1),
+                    manager.registry);
+            pairs.put(entry.getKey(), mpiePair);
+            manager.MPIEPairList.add(mpiePair);
+            manager.AllPiePairs.addAll(mpiePair.getPiePairs());
+        }
+        for (int i = 0; i < MPPSourceList.size(); i++) {
+            MPIEPairSource MPPSource = MPPSourceList.get(i);
+            MPIEPair mpiePair = pairs.get(keys.get(i));
+            mpiePair.subscribe(source2Node.get(MPPSource), MPPSource.getOriginRelations());
+            manager.MPPSourceToPairMap.put(MPPSource, mpiePair);
+        }
+        return manager;
+    }
+
+    /**
+     * Looks up the first registered EBA with the structure of an EBA, registering the EBA if it is the first.
+     */
+    private static EBA canonical(EBA eba, Map<EBA, EBA> canonical) {
+        EBA structure = eba instanceof CompiledEBA ? ((CompiledEBA) eba).getSource() : eba;
+        EBA first = canonical.get(structure);
+        if (first == null) {
+            canonical.put(structure, eba);
+            first = eba;
+        }
+        return first;
+    }
+
     /**
      * Returns the list of MPIEPairSource objects managed by this manager.
      *
@@ -100,15 +184,76 @@ public class MPIEPairsManager {
         return MPPSourceToPairMap.get(source);
     }
 
+    /**
+     * Returns the registry evaluating the predicates of all MPIEPairs.
+     *
+     * @return The predicate registry
+     */
+    public PredicateRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Selects what the MPIEPairs keep of the events that bound a PIE or trigger an IEP.
+     *
+     * @param retention The retention of the events
+     */
+    public void setEventRetention(EventRetention retention) {
+        for (MPIEPair mpp : MPIEPairList) {
+            mpp.setEventRetention(retention);
+        }
+    }
+
     /**
      * Executes the stepByPE method of each MPIEPair for a given PointEvent.
-     * This method processes the incoming event across all PIEPairs.
+     * The predicates of all MPIEPairs are evaluated once up front, then the event is processed across all PIEPairs.
+     * An event for which every predicate is false while every MPIEPair is parked on O cannot change any state and
+     * is not run.
      *
      * @param event The PointEvent to be processed by each MPIEPair
+     * @return false if the event was skipped as irrelevant, true if it was run
      */
-    public void runByPE(PointEvent event) {
+    public boolean runByPE(PointEvent event) {
+        registry.evaluate(event);
+        return runRegistered(event);
+    }
+
+    /**
+     * Evaluates the predicates of all MPIEPairs on a whole block of events up front.
+     * The events of the block are then processed with {@link #runByPE(PointEvent, int)}, in row order.
+     *
+     * @param block The block of events about to be processed
+     */
+    public void evaluateBlock(EventBlock block) {
+        registry.evaluate(block);
+    }
+
+    /**
+     * Executes the stepByPE method of each MPIEPair for an event of the last evaluated block,
+     * using the predicate results of its row.
+     *
+     * @param event The PointEvent to be processed by each MPIEPair
+     * @param row The row of the event in the block
+     * @return false if the event was skipped as irrelevant, true if it was run
+     */
+    public boolean runByPE(PointEvent event, int row) {
+        registry.select(row);
+        return runRegistered(event);
+    }
+
+    /**
+     * Runs every MPIEPair with the predicate results held by the registry, unless the event is irrelevant.
+     */
+    private boolean runRegistered(PointEvent event) {
+        if (parked && registry.isAllFalse()) {
+            return false;
+        }
+        boolean parked = true;
         for (MPIEPair mpp : MPIEPairList) {
             mpp.run(event);  // Sequentially executes stepByPE for each MPIEPair
+            parked &= mpp.isParked();
         }
+        this.parked = parked;
+        return true;
     }
 }
@@ -0,0 +1,286 @@
+package org.piestream.engine;
+
+import org.piestream.events.PointEvent;
+import org.piestream.parser.Schema;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * ParallelChunkRunner replays a file through an {@link Engine} with the parsing spread over a {@link ForkJoinPool}.
+ * It is meant for offline runs, where parsing dominates the wall-clock time.
+ *
+ * The file is cut into chunks of roughly equal size whose boundaries are moved to the start of the next line, so
+ * every line belongs to exactly one chunk. The chunks are read and decoded by the pool, a fixed number of them ahead
+ * of the detection, and the calling thread hands the decoded chunks to {@link Engine#applyBatch(PointEvent[], int)}
+ * strictly in file order, so the engine sees the same events in the same order as with a single reader.
+ * Every chunk in flight owns its own {@link EventPreprocessor} and event array; a chunk slot is reused for the next
+ * chunk only after the engine has processed its events, which recycles the events like in the single-threaded path.
+ *
+ * Events of schemas without a native timestamp are numbered by the calling thread right before they are processed,
+ * so their timestamps follow the file order as well. Lines are split like {@link java.io.BufferedReader#readLine()}
+ * ("\n", "\r" or "\r\n"). Preprocessing time is not part of the engine's timing metrics in this mode.
+ */
+public class ParallelChunkRunner {
+
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 20;  // Default number of bytes per chunk
+    private static final int BOUNDARY_SCAN_SIZE = 8192;  // Bytes read at once while looking for a line start
+
+    private final Engine engine;  // Engine running the detection
+    private final Schema schema;  // Schema of the input lines
+    private final int parserThreads;  // Parallelism of the parser pool
+    private final int chunkSize;  // Nominal number of bytes per chunk
+
+    /**
+     * Creates a runner with the default chunk size.
+     *
+     * @param engine The engine running the detection
+     * @param schema The schema of the input lines
+     * @param parserThreads The number of parser threads
+     */
+    public ParallelChunkRunner(Engine engine, Schema schema, int parserThreads) {
+        this(engine, schema, parserThreads, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a runner.
+     *
+     * @param engine The engine running the detection
+     * @param schema The schema of the input lines
+     * @param parserThreads The number of parser threads
+     * @param chunkSize The nominal number of bytes per chunk
+     */
+    public ParallelChunkRunner(Engine engine, Schema schema, int parserThreads, int chunkSize) {
+        if (engine == null || schema == null) {
+            throw new IllegalArgumentException("Engine and schema cannot be null");
+        }
+        if (parserThreads <= 0) {
+            throw new IllegalArgumentException("Parser thread count must be positive: " + parserThreads);
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.engine = engine;
+        this.schema = schema;
+        this.parserThreads = parserThreads;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reads the whole file and processes all events.
+     *
+     * @param filePath The path to the file to read from
+     * @return The number of events processed
+     * @throws IOException If the file cannot be read
+     */
+    public long run(String filePath) throws IOException {
+        return run(filePath, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the file and processes at most limit events. Detection runs on the calling thread; the method returns
+     * once all events are processed.
+     *
+     * @param filePath The path to the file to read from
+     * @param limit The maximum number of events to process
+     * @return The number of events processed
+     * @throws IOException If the file cannot be read
+     * @throws RuntimeException If a line cannot be decoded; the first failure in file order is rethrown
+     */
+    public long run(String filePath, long limit) throws IOException {
+        schema.getEventLayout();  // Built lazily, make sure all parsers share the same layout
+        int slotCount = 2 * parserThreads;
+        ForkJoinPool pool = new ForkJoinPool(parserThreads);
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            Chunk[] slots = new Chunk[slotCount];
+            List<ForkJoinTask<Chunk>> tasks = new ArrayList<>(Collections.nCopies(slotCount, (ForkJoinTask<Chunk>) null));
+
+            // Submit the first chunks, then one more for every chunk processed
+            long start = 0;
+            int submitted = 0;
+            while (submitted < slotCount && start < fileSize) {
+                slots[submitted] = new Chunk(new EventPreprocessor(schema, Integer.MAX_VALUE));
+                long end = nextLineStart(channel, start + chunkSize, fileSize);
+                tasks.set(submitted, pool.submit(slots[submitted].parseTask(channel, start, end)));
+                start = end;
+                submitted++;
+            }
+
+            long count = 0;
+            for (int next = 0; count < limit; next++) {
+                int slot = next % slotCount;
+                if (tasks.get(slot) == null) {
+                    break;  // End of the file
+                }
+                Chunk chunk = await(tasks.get(slot));
+                tasks.set(slot, null);
+                if (chunk.failure instanceof IOException) {
+                    throw (IOException) chunk.failure;
+                } else if (chunk.failure != null) {
+                    throw (RuntimeException) chunk.failure;
+                }
+
+                int size = (int) Math.min(chunk.size, limit - count);
+                if (!schema.hasNativeTimestamp()) {
+                    long timestamp = EventPreprocessor.reserveTimestamps(size);
+                    for (int i = 0; i < size; i++) {
+                        chunk.events[i].setTimestamp(timestamp + i);
+                    }
+                }
+                engine.applyBatch(chunk.events, size);
+                count += size;
+                chunk.recycle();
+
+                if (start < fileSize && count < limit) {
+                    long end = nextLineStart(channel, start + chunkSize, fileSize);
+                    tasks.set(slot, pool.submit(chunk.parseTask(channel, start, end)));
+                    start = end;
+                }
+            }
+            return count;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Finds the first line start at or after the given offset.
+     *
+     * @return the offset of the line start, or the file size if no line starts after the offset
+     */
+    private static long nextLineStart(FileChannel channel, long offset, long fileSize) throws IOException {
+        if (offset >= fileSize) {
+            return fileSize;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+        long position = offset - 1;  // The byte before a line start is its terminator
+        boolean carriageReturn = false;  // Whether the previous byte was a "\r"
+        while (position < fileSize) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("File was truncated while reading");
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (carriageReturn && b != '\n') {
+                    return position + i;  // Line terminated by a single "\r"
+                }
+                carriageReturn = b == '\r';
+                if (b == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Waits for a decoded chunk. Decoding failures are recorded in the chunk itself.
+     */
+    private static Chunk await(ForkJoinTask<Chunk> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while parsing", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to parse chunk", e.getCause());
+        }
+    }
+
+    /**
+     * A chunk slot: the bytes and decoded events of one chunk, and the preprocessor that owns the events.
+     * A slot is only touched by one task at a time.
+     */
+    private static class Chunk {
+        private final EventPreprocessor processor;  // Decodes the lines of the chunk
+        private byte[] bytes = new byte[0];  // Raw bytes of the chunk
+        private PointEvent[] events = new PointEvent[0];  // Decoded events, in file order
+        private int size;  // Number of decoded events
+        private Exception failure;  // Why the chunk could not be decoded, if it could not
+
+        Chunk(EventPreprocessor processor) {
+            this.processor = processor;
+        }
+
+        /**
+         * Creates the task reading and decoding the lines in [start, end) of the file into this slot.
+         */
+        Callable<Chunk> parseTask(FileChannel channel, long start, long end) {
+            return () -> {
+                failure = null;
+                try {
+                    int length = (int) (end - start);
+                    read(channel, start, length);
+                    decode(start, length);
+                } catch (IOException | RuntimeException e) {
+                    failure = e;  // Rethrown by the detection thread as it is
+                }
+                return this;
+            };
+        }
+
+        private void read(FileChannel channel, long start, int length) throws IOException {
+            if (bytes.length < length) {
+                bytes = new byte[length];
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new EOFException("File was truncated while reading");
+                }
+            }
+        }
+
+        private void decode(long start, int length) {
+            size = 0;
+            int lineStart = 0;
+            while (lineStart < length) {
+                int lineEnd = lineStart;
+                while (lineEnd < length && bytes[lineEnd] != '\n' && bytes[lineEnd] != '\r') {
+                    lineEnd++;
+                }
+                if (size == events.length) {
+                    events = Arrays.copyOf(events, Math.max(64, 2 * size));
+                }
+                try {
+                    events[size++] = processor.preprocessUnordered(bytes, lineStart, lineEnd - lineStart);
+                } catch (RuntimeException e) {
+                    size--;
+                    throw new IllegalArgumentException("Failed to parse the line at byte offset " + (start + lineStart), e);
+                }
+
+                lineStart = lineEnd + 1;
+                if (lineEnd + 1 < length && bytes[lineEnd] == '\r' && bytes[lineEnd + 1] == '\n') {
+                    lineStart++;  // "\r\n" terminator
+                }
+            }
+        }
+
+        /**
+         * Hands the events that were not retained by the engine back to the preprocessor.
+         */
+        void recycle() {
+            for (int i = 0; i < size; i++) {
+                processor.recycle(events[i]);
+                events[i] = null;
+            }
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.piestream.engine;
+
+/**
+ * The ParserMode enum selects how the EventPreprocessor decodes CSV lines.
+ *
+ *     SPLIT: Splits the line with String.split and converts every field from its String (default).
+ *     TOKENIZER: Scans the line bytes once with a {@link CsvTokenizer} and parses numbers directly into the typed slots.
+ *
+ * Both modes produce the same slot values and raise the same validation errors.
+ */
+public enum ParserMode {
+    SPLIT,  // String.split based decoding
+    TOKENIZER; // Byte-level decoding without intermediate Strings for numeric fields
+
+    /**
+     * Converts a string representation of a parser mode to its corresponding ParserMode enum.
+     *
+     * @param mode the mode name, case-insensitive (e.g., "split", "tokenizer").
+     * @return the corresponding ParserMode enum.
+     * @throws IllegalArgumentException if the mode string is unknown.
+     */
+    public static ParserMode fromString(String mode) {
+        switch (mode.trim().toLowerCase()) {
+            case "split": return SPLIT;
+            case "tokenizer": return TOKENIZER;
+            default: throw new IllegalArgumentException("Unknown parser mode: " + mode);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package org.piestream.engine;
+
+import org.piestream.datasource.DataSource;
+import org.piestream.events.PointEvent;
+import org.piestream.parser.Schema;
+import org.piestream.utils.SpscRingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * PipelinedRunner feeds an {@link Engine} from a {@link DataSource} with reading, parsing and detection on
+ * separate threads, so I/O and parsing overlap with the processing of the Worker.
+ *
+ * A reader thread deals the lines round-robin to one or more parser threads, each parser decodes its lines with
+ * its own {@link EventPreprocessor}, and the calling thread collects the events round-robin again and runs them
+ * through {@link Engine#applyBatch(PointEvent[], int)}. Dealing and collecting in the same order keeps the event
+ * order of the source. All stages are connected by preallocated {@link SpscRingBuffer}s; processed events travel
+ * back to the parser that decoded them through a return ring, so the event objects are reused like in the
+ * single-threaded path.
+ *
+ * Events of schemas without a native timestamp are numbered while they are parsed, so such schemas are always
+ * parsed by a single parser thread. Preprocessing time is not part of the engine's timing metrics in this mode.
+ */
+public class PipelinedRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelinedRunner.class);
+
+    private static final int DEFAULT_RING_CAPACITY = 1024;  // Default number of slots per ring
+    private static final int DETECT_BATCH_SIZE = 256;  // Maximum number of events handed to the engine at once
+    private static final int SPIN_TRIES = 100;  // Yields before an idle stage starts parking
+    private static final long PARK_NANOS = 50_000L;  // Park time of an idle stage
+
+    private final Engine engine;  // Engine running the detection
+    private final Schema schema;  // Schema of the input lines
+    private final int parserThreads;  // Number of parser threads
+    private final int ringCapacity;  // Number of slots per ring
+    private ParserMode parserMode = ParserMode.SPLIT;  // Parser mode of the parser threads
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();  // First error of any stage
+
+    /**
+     * Creates a runner with the default ring capacity.
+     *
+     * @param engine The engine running the detection
+     * @param schema The schema of the input lines
+     * @param parserThreads The number of parser threads
+     */
+    public PipelinedRunner(Engine engine, Schema schema, int parserThreads) {
+        this(engine, schema, parserThreads, DEFAULT_RING_CAPACITY);
+    }
+
+    /**
+     * Creates a runner.
+     *
+     * @param engine The engine running the detection
+     * @param schema The schema of the input lines
+     * @param parserThreads The number of parser threads
+     * @param ringCapacity The number of slots of every ring buffer
+     */
+    public PipelinedRunner(Engine engine, Schema schema, int parserThreads, int ringCapacity) {
+        if (engine == null || schema == null) {
+            throw new IllegalArgumentException("Engine and schema cannot be null");
+        }
+        if (parserThreads <= 0) {
+            throw new IllegalArgumentException("Parser thread count must be positive: " + parserThreads);
+        }
+        if (ringCapacity <= 0) {
+            throw new IllegalArgumentException("Ring capacity must be positive: " + ringCapacity);
+        }
+        if (parserThreads > 1 && !schema.hasNativeTimestamp()) {
+            logger.warn("Schema has no native timestamp, events are parsed by a single parser thread");
+            parserThreads = 1;
+        }
+        this.engine = engine;
+        this.schema = schema;
+        this.parserThreads = parserThreads;
+        this.ringCapacity = ringCapacity;
+    }
+
+    /**
+     * Selects how the parser threads decode CSV lines.
+     *
+     * @param parserMode The parser mode to use
+     */
+    public void setParserMode(ParserMode parserMode) {
+        this.parserMode = parserMode;
+    }
+
+    /**
+     * Reads the data source until it is exhausted and processes all events. Detection runs on the calling thread;
+     * the method returns once all stages have finished. The data source is not closed.
+     *
+     * @param dataSource The source to read the lines from
+     * @return The number of events processed
+     * @throws RuntimeException If any stage failed; the first failure is rethrown
+     */
+    public long run(DataSource dataSource) {
+        failure.set(null);
+        schema.getEventLayout();  // Built lazily, make sure all parsers share the same layout
+        List<SpscRingBuffer<String>> lineRings = new ArrayList<>();
+        List<SpscRingBuffer<PointEvent>> eventRings = new ArrayList<>();
+        List<SpscRingBuffer<PointEvent>> returnRings = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < parserThreads; i++) {
+            SpscRingBuffer<String> lines = new SpscRingBuffer<>(ringCapacity);
+            SpscRingBuffer<PointEvent> events = new SpscRingBuffer<>(ringCapacity);
+            SpscRingBuffer<PointEvent> returns = new SpscRingBuffer<>(ringCapacity + DETECT_BATCH_SIZE);
+            lineRings.add(lines);
+            eventRings.add(events);
+            returnRings.add(returns);
+            threads.add(newStage("piestream-parser-" + i, () -> parse(lines, events, returns)));
+        }
+        threads.add(newStage("piestream-reader", () -> read(dataSource, lineRings)));
+        threads.forEach(Thread::start);
+
+        long count = 0;
+        try {
+            count = detect(eventRings, returnRings);
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw new RuntimeException("Pipelined run failed", t);
+        }
+        return count;
+    }
+
+    /**
+     * Creates a daemon thread for a stage that records its failure and stops the other stages.
+     */
+    private Thread newStage(String name, Runnable stage) {
+        Thread thread = new Thread(() -> {
+            try {
+                stage.run();
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        }, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Reader stage: deals the lines of the source round-robin to the parser rings.
+     */
+    private void read(DataSource dataSource, List<SpscRingBuffer<String>> lineRings) {
+        try {
+            int next = 0;
+            String line;
+            while ((line = dataSource.readNext()) != null) {
+                if (!put(lineRings.get(next), line)) {
+                    return;  // Another stage failed
+                }
+                next = (next + 1 == lineRings.size()) ? 0 : next + 1;
+            }
+        } finally {
+            lineRings.forEach(SpscRingBuffer::close);
+        }
+    }
+
+    /**
+     * Parser stage: decodes the lines of its ring into events, reusing the events handed back by the detection.
+     */
+    private void parse(SpscRingBuffer<String> lines, SpscRingBuffer<PointEvent> events, SpscRingBuffer<PointEvent> returns) {
+        EventPreprocessor processor = new EventPreprocessor(schema);
+        processor.setParserMode(parserMode);
+        try {
+            String line;
+            while ((line = take(lines)) != null) {
+                PointEvent processed;
+                while ((processed = returns.poll()) != null) {
+                    processor.recycle(processed);
+                }
+                if (!put(events, processor.preprocess(line))) {
+                    return;  // Another stage failed
+                }
+            }
+        } finally {
+            events.close();
+        }
+    }
+
+    /**
+     * Detection stage: collects the events round-robin and runs them through the engine in batches.
+     */
+    private long detect(List<SpscRingBuffer<PointEvent>> eventRings, List<SpscRingBuffer<PointEvent>> returnRings) {
+        PointEvent[] batch = new PointEvent[DETECT_BATCH_SIZE];
+        int[] owners = new int[DETECT_BATCH_SIZE];  // Parser index of every event in the batch
+        long count = 0;
+        int next = 0;
+        while (true) {
+            int size = 0;
+            while (size < batch.length) {
+                // Block for the first event of a batch only, then take what is ready
+                PointEvent pe = (size == 0) ? take(eventRings.get(next)) : eventRings.get(next).poll();
+                if (pe == null) {
+                    break;
+                }
+                batch[size] = pe;
+                owners[size] = next;
+                size++;
+                next = (next + 1 == eventRings.size()) ? 0 : next + 1;
+            }
+            if (size == 0) {
+                return count;  // End of the stream, or another stage failed
+            }
+
+            engine.applyBatch(batch, size);
+            for (int i = 0; i < size; i++) {
+                if (!batch[i].isRetained()) {
+                    returnRings.get(owners[i]).offer(batch[i]);  // Dropped if the parser is behind
+                }
+                batch[i] = null;
+            }
+            count += size;
+        }
+    }
+
+    /**
+     * Offers an element, waiting while the ring is full.
+     *
+     * @return false if another stage failed
+     */
+    private <E> boolean put(SpscRingBuffer<E> ring, E element) {
+        int idle = 0;
+        while (!ring.offer(element)) {
+            if (failure.get() != null) {
+                return false;
+            }
+            idle = idle(idle);
+        }
+        return true;
+    }
+
+    /**
+     * Polls an element, waiting while the ring is empty and open.
+     *
+     * @return the element, or null if the ring is closed and drained or another stage failed
+     */
+    private <E> E take(SpscRingBuffer<E> ring) {
+        int idle = 0;
+        while (true) {
+            E element = ring.poll();
+            if (element != null) {
+                return element;
+            }
+            if (ring.isClosed()) {
+                return ring.poll();  // Elements offered right before closing
+            }
+            if (failure.get() != null) {
+                return null;
+            }
+            idle = idle(idle);
+        }
+    }
+
+    /**
+     * Backs off an idle stage: yields first, then parks briefly.
+     */
+    private static int idle(int idle) {
+        if (idle < SPIN_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return idle + 1;
+    }
+}
@@ -0,0 +1,237 @@
+package org.piestream.engine;
+
+import org.apache.kafka.streams.kstream.ForeachAction;
+import org.piestream.events.EventBlock;
+import org.piestream.events.EventRetention;
+import org.piestream.events.PointEvent;
+import org.piestream.merger.BinTree;
+import org.piestream.merger.TreeNode;
+import org.piestream.parser.MPIEPairSource;
+import org.piestream.parser.QueryParser;
+import org.piestream.parser.Schema;
+import org.piestream.piepair.eba.EBA;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * QueryGroup runs several queries over the same stream with a shared detection layer.
+ *
+ * Every query keeps its own tree and window, but the MPIEPairs detecting the relations of the queries are shared:
+ * pattern sources of different queries with structurally equal former and latter EBAs are detected by one MPIEPair,
+ * whose PIEPairs fan their IEPs out to the column of every query subscribing to their relation (see
+ * {@link MPIEPairsManager#shared(List, Map)}). An event is preprocessed and classified once for all queries; the
+ * derive, merge and update stages of a query only run if its MPIEPairs produced new IEPs or IEs. Each query gets
+ * the same results as an {@link Engine} of its own.
+ */
+public class QueryGroup implements ForeachAction<String, String> {
+
+    // Logger for this class
+    private static final Logger logger = LoggerFactory.getLogger(QueryGroup.class);
+
+    // Event preprocessing instance, shared by all queries
+    private final EventPreprocessor processor;
+    // Manager of the MPIEPairs shared by all queries
+    private final MPIEPairsManager manager;
+    // Worker of every query, touching only the tree of its query
+    private final List<Worker> workers;
+    // Columnar view of the batch the predicates are evaluated on, block by block
+    private final EventBlock eventBlock;
+    // Scratch array holding the preprocessed events of the current batch
+    private PointEvent[] eventBatch = new PointEvent[0];
+
+    /**
+     * Constructs a group of queries over the same schema.
+     *
+     * @param schema Schema describing the data structure of the stream
+     * @param queries Query strings, each defining its own processing logic
+     * @param winType Type of window used by every query
+     */
+    public QueryGroup(Schema schema, List<String> queries, WindowType winType) {
+        if (queries == null || queries.isEmpty()) {
+            throw new IllegalArgumentException("Queries cannot be empty");
+        }
+        List<MPIEPairSource> allSources = new ArrayList<>();
+        Map<MPIEPairSource, TreeNode> source2Node = new HashMap<>();
+        List<BinTree> trees = new ArrayList<>();
+        List<Window> windows = new ArrayList<>();
+        EventRetention retention = null;
+        for (String query : queries) {
+            QueryParser parser = new QueryParser(query, schema);
+            try {
+                // Parse the query to extract pattern clauses
+                parser.parse();
+            } catch (QueryParser.ParseException | EBA.ParseException e) {
+                logger.error("Failed to parse query: " + e.getMessage());
+            }
+            List<MPIEPairSource> MPPSourceList = parser.getPatternClause();
+            Window window = new Window(winType, parser.getwindowClause(), schema.getTimestampUnit().getNanosPerUnit());
+            BinTree tree = Worker.constructTree(MPPSourceList, window, parser.getEBA2String());
+            allSources.addAll(MPPSourceList);
+            source2Node.putAll(tree.getSourceToNode());
+            trees.add(tree);
+            windows.add(window);
+            retention = retention == null ? parser.getEventRetention() : retention.union(parser.getEventRetention());
+        }
+
+        this.manager = MPIEPairsManager.shared(allSources, source2Node);
+        // Keep what the RETURN clauses of all queries need of the events referenced by the windows
+        manager.setEventRetention(retention);
+        this.workers = new ArrayList<>();
+        for (int i = 0; i < trees.size(); i++) {
+            workers.add(new Worker(trees.get(i), windows.get(i), manager));
+        }
+        this.processor = new EventPreprocessor(schema);
+        this.eventBlock = new EventBlock(schema.getEventLayout());
+    }
+
+    /**
+     * Applies the event processing logic of all queries to a key-value pair.
+     *
+     * @param key The key associated with the event
+     * @param value The event data (in string form)
+     */
+    public void apply(String key, String value) {
+        PointEvent pe = processor.preprocess(value);
+        process(pe);
+        processor.recycle(pe);
+    }
+
+    /**
+     * Applies the event processing logic of all queries to an event that is already decoded and timestamped.
+     * The event stays owned by the caller; events that become a PIE boundary or trigger an IEP are marked
+     * retained and must not be reused.
+     *
+     * @param pe The decoded event
+     */
+    public void apply(PointEvent pe) {
+        if (pe == null) {
+            throw new IllegalArgumentException("PointEvent cannot be null");
+        }
+        process(pe);
+    }
+
+    /**
+     * Applies the event processing logic of all queries to a batch of events in string form, like
+     * {@link Engine#applyBatch(List)}: the predicates are evaluated block by block for all queries at once, and
+     * the tree of a query is only touched for events that produced new IEPs or IEs for it.
+     *
+     * @param values The event data of the batch (in string form)
+     * @return The number of events processed
+     */
+    public long applyBatch(List<String> values) {
+        int count = values.size();
+        if (eventBatch.length < count) {
+            eventBatch = new PointEvent[count];
+        }
+        for (int i = 0; i < count; i++) {
+            eventBatch[i] = processor.preprocess(values.get(i));
+        }
+        processBatch(eventBatch, count);
+        for (int i = 0; i < count; i++) {
+            processor.recycle(eventBatch[i]);
+            eventBatch[i] = null;
+        }
+        return count;
+    }
+
+    /**
+     * Runs a batch of preprocessed events, see {@link #applyBatch(List)}.
+     */
+    private void processBatch(PointEvent[] events, int count) {
+        for (Worker worker : workers) {
+            worker.clearAfterRun();  // Drop what is left over from a previous apply
+        }
+        int blockStart = 0;  // Start of the current block
+        int blockEnd = 0;  // End of the current block, exclusive
+        boolean columnar = false;  // Whether the current block was evaluated up front
+        for (int i = 0; i < count; i++) {
+            if (i == blockEnd) {
+                int blockSize = Math.min(eventBlock.capacity(), count - i);
+                columnar = eventBlock.load(events, i, blockSize);
+                if (columnar) {
+                    manager.evaluateBlock(eventBlock);
+                }
+                blockStart = i;
+                blockEnd = i + blockSize;
+            }
+            PointEvent pe = events[i];
+            long timestamp = pe.getTimestamp();
+            for (Worker worker : workers) {
+                worker.refreshBeforeRun(timestamp);
+            }
+            boolean relevant = columnar ? manager.runByPE(pe, i - blockStart) : manager.runByPE(pe);
+            if (!relevant) {
+                continue;
+            }
+            for (Worker worker : workers) {
+                if (worker.hasNewIEPOrIE()) {
+                    worker.deriveBeforeAfterRel();
+                    worker.mergeAfterRun();
+                    worker.updateData();
+                    worker.clearAfterRun();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a preprocessed event through the shared detection and the derive, merge and update stages of every query.
+     *
+     * @param pe The preprocessed event
+     */
+    private void process(PointEvent pe) {
+        for (Worker worker : workers) {
+            worker.resetBeforeRun(pe.getTimestamp());
+        }
+        if (!manager.runByPE(pe)) {
+            return;
+        }
+        for (Worker worker : workers) {
+            worker.deriveBeforeAfterRel();
+            worker.mergeAfterRun();
+            worker.updateData();
+        }
+    }
+
+    /**
+     * Returns the manager of the MPIEPairs shared by all queries.
+     *
+     * @return The shared MPIEPairsManager
+     */
+    public MPIEPairsManager getMpiEPairsManager() {
+        return manager;
+    }
+
+    /**
+     * Returns the number of queries of the group.
+     *
+     * @return The number of queries
+     */
+    public int getQueryCount() {
+        return workers.size();
+    }
+
+    /**
+     * Get the current count of the results of a query.
+     *
+     * @param query The index of the query, in the order the queries were given
+     * @return The result count of the query
+     */
+    public long getResultCNT(int query) {
+        return workers.get(query).getResultCNT();
+    }
+
+    /**
+     * Prints the current count of the results of every query.
+     */
+    public void printResultCNT() {
+        for (int i = 0; i < workers.size(); i++) {
+            logger.info("RESULT[" + i + "]: " + workers.get(i).getResultCNT());
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package org.piestream.engine;
 
+import org.piestream.events.EventBlock;
 import org.piestream.events.PointEvent;
 import org.piestream.merger.TreeNode;
 import org.piestream.parser.MPIEPairSource;
 import org.piestream.piepair.eba.EBA;
 import org.piestream.merger.BinTree;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -28,20 +30,56 @@ public class Worker {
 
         this.window = window;
 
-        this.tree = new BinTree(MPPSourceList, window, EBA2String);
+        this.tree = constructTree(MPPSourceList, window, EBA2String);
 
+        // Initialize MPIEPairsManager and retrieve all PIEPair objects
+//        this.source2Col = tree.getSource2Col();
+        this.source2Node = tree.getSourceToNode();
+        this.mpiEPairsManager = new MPIEPairsManager(MPPSourceList, source2Node, EBA2String);
+        this.MPPS = mpiEPairsManager.getMPIEPairList();
+    }
+
+    /**
+     * Constructor for a query whose MPIEPairs are shared with other queries, see {@link QueryGroup}.
+     * The tree must have been built by {@link #constructTree(List, Window, Map)} and its leaf nodes subscribed to
+     * the MPIEPairs of the shared manager. The worker does not run the manager; it only touches its own tree.
+     *
+     * @param tree          The tree of the query
+     * @param window        The window used for processing
+     * @param sharedManager The manager of the MPIEPairs shared by all queries
+     */
+    Worker(BinTree tree, Window window, MPIEPairsManager sharedManager) {
+        this.window = window;
+        this.tree = tree;
+        this.source2Node = tree.getSourceToNode();
+        this.mpiEPairsManager = sharedManager;
+        List<MPIEPair> pairs = new ArrayList<>();
+        for (MPIEPairSource source : tree.getSourceList()) {
+            MPIEPair pair = sharedManager.getMPIEPairBySource(source);
+            if (!pairs.contains(pair)) {
+                pairs.add(pair);
+            }
+        }
+        this.MPPS = pairs;
+    }
+
+    /**
+     * Builds the tree of a query.
+     *
+     * @param MPPSourceList List of MPIEPairSource objects
+     * @param window        The window used for processing
+     * @param EBA2String    Map from EBA objects to strings for representation
+     * @return The constructed tree
+     */
+    static BinTree constructTree(List<MPIEPairSource> MPPSourceList, Window window, Map<EBA, String> EBA2String) {
+        BinTree tree = new BinTree(MPPSourceList, window, EBA2String);
         try {
             tree.constructTree();
 //            System.err.println("Tree constructed successfully.");
         } catch (Exception e) {
             throw new IllegalArgumentException("Failed to construct tree");
         }
-
-        // Initialize MPIEPairsManager and retrieve all PIEPair objects
-//        this.source2Col = tree.getSource2Col();
-        this.source2Node = tree.getSourceToNode();
-        this.mpiEPairsManager = new MPIEPairsManager(MPPSourceList, source2Node);
-        this.MPPS = mpiEPairsManager.getMPIEPairList();
+        return tree;
     }
 
     /**
@@ -90,6 +128,46 @@ public class Worker {
         }
     }
 
+    /**
+     * Refreshes the window state before an event is run in batch mode, with the same deadline as
+     * {@link #resetBeforeRun(long)}, but without clearing the new data of the tree, which is cleared by
+     * {@link #clearAfterRun()} once an event touched the tree. A refresh only walks the lists whose oldest entry
+     * has expired, so it is cheap for the events where nothing leaves the window.
+     *
+     * @param currentTime Current timestamp used to calculate old data
+     */
+    public void refreshBeforeRun(long currentTime) {
+        if (window.getWindowType() == WindowType.TIME_WINDOW) {
+            long deadLine = currentTime - window.getWindowCapacity();
+            tree.refreshMergedNodeData_OldT(deadLine);
+            tree.refreshLeafNodeData_OldT(deadLine);
+        }
+    }
+
+    /**
+     * Checks whether the last run produced new IEPs or started new interval events, i.e. whether the
+     * derive, merge and update stages have any work to do.
+     *
+     * @return true if the tree has to be touched for the last event
+     */
+    public boolean hasNewIEPOrIE() {
+        for (MPIEPair pair : MPPS) {
+            if (pair.isHasNewFormerIE() || pair.isHasNewLatterIE()) {
+                return true;
+            }
+        }
+        return tree.hasTriggeredLeafCol();
+    }
+
+    /**
+     * Clears the new data of the tree once derive, merge and update are done, so the next run starts
+     * from a clean trigger state.
+     */
+    public void clearAfterRun() {
+        tree.clearMergedNodeData_NewT();
+        tree.clearLeafNodeData_NewT();
+    }
+
     /**
      * Merges the tree data after the run.
      */
@@ -116,11 +194,33 @@ public class Worker {
 
     /**
      * Processes a PointEvent by executing the stepByPE method for each PIEPair.
+     * The predicates of all pairs are evaluated once by the MPIEPairsManager.
+     *
+     * @param pe The PointEvent to process
+     * @return false if the event could not change any state and was skipped, see {@link MPIEPairsManager#runByPE(PointEvent)}
+     */
+    public boolean runOneByOne(PointEvent pe) {
+        return mpiEPairsManager.runByPE(pe);
+    }
+
+    /**
+     * Evaluates the predicates of all pairs on a block of events before its events are processed.
+     *
+     * @param block The block of events
+     */
+    public void evaluateBlock(EventBlock block) {
+        mpiEPairsManager.evaluateBlock(block);
+    }
+
+    /**
+     * Processes an event of the last evaluated block with the predicate results of its row.
      *
      * @param pe The PointEvent to process
+     * @param row The row of the event in the block
+     * @return false if the event could not change any state and was skipped
      */
-    public void runOneByOne(PointEvent pe) {
-        MPPS.forEach(pair -> pair.run(pe));
+    public boolean runOneByOne(PointEvent pe, int row) {
+        return mpiEPairsManager.runByPE(pe, row);
     }
 
 }
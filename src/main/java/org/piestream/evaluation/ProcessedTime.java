@@ -3,6 +3,7 @@ package org.piestream.evaluation;
 import org.piestream.datasource.DataSource;
 import org.piestream.datasource.FileDataSource;
 import org.piestream.engine.Engine;
+import org.piestream.engine.ParallelChunkRunner;
 import org.piestream.engine.RuntimeSet;
 import org.piestream.engine.WindowType;
 import org.piestream.events.Attribute;
@@ -18,6 +19,7 @@ import java.util.*;
 public class ProcessedTime {
 
     private static final Logger logger = LoggerFactory.getLogger(ProcessedTime.class);
+    private static final int BATCH_SIZE = 1024; // Number of lines read and processed at once
 
     /**
      * Builds a simple join query string based on the number of columns and window size.
@@ -87,18 +89,37 @@ public class ProcessedTime {
      * @return The total processing time in milliseconds
      */
     public static long buildRunner(int col, long limit, long windSize, String dataPath, WindowType windowType) {
+        return buildRunner(col, limit, windSize, dataPath, windowType, 1);
+    }
+
+    /**
+     * Initializes the engine, processes the data, and returns the total processing time.
+     * With more than one parser thread the file is parsed chunk by chunk by a {@link ParallelChunkRunner}.
+     *
+     * @param col The number of columns in the data
+     * @param limit The maximum number of data lines to process
+     * @param windSize The window size for processing
+     * @param dataPath The dataPath to the data files
+     * @param windowType The type of window (e.g., TIME_WINDOW)
+     * @param parserThreads The number of threads parsing the data
+     * @return The total processing time in milliseconds
+     */
+    public static long buildRunner(int col, long limit, long windSize, String dataPath, WindowType windowType, int parserThreads) {
         Schema schema = buildSchema(col);
         String query = buildSimpleJoinQuery(col, windSize); // Assuming buildQuery is used here
 
         RuntimeSet.initialize(false,false);
         Engine engine = new Engine(schema, query, windowType);
 
-        // Initialize FileDataSource and process data with the Engine
-        try (DataSource dataSource = new FileDataSource(dataPath , limit)) {
-            String line;
+        // Process the data with the Engine, reading it through a FileDataSource on the single-threaded path
+        try {
             long startTime = System.currentTimeMillis(); // Start timing
-            while ((line = dataSource.readNext()) != null) {
-                engine.apply("", line); // Process each line of data
+            if (parserThreads > 1) {
+                new ParallelChunkRunner(engine, schema, parserThreads).run(dataPath, limit); // Parse the chunks in parallel
+            } else {
+                try (DataSource dataSource = new FileDataSource(dataPath, limit)) {
+                    engine.applyBatch(dataSource, BATCH_SIZE); // Process the data batch by batch
+                }
             }
             long endTime = System.currentTimeMillis();
             long processedTime=endTime - startTime;
@@ -135,11 +156,12 @@ public class ProcessedTime {
             String dataPath = Paths.get(resource.toURI()).toAbsolutePath().toString();
             logger.info("method,PIEs,MPPs,events,wind_size,result,processed_time");
 
-            execute(col, limit, windSize, dataPath);
+            execute(col, limit, windSize, dataPath, 1);
 
 
         } else {
-            execute(Integer.valueOf(args[0]), Integer.valueOf(args[1]), Long.valueOf(args[2]), args[3]);
+            int parserThreads = args.length > 4 ? Integer.valueOf(args[4]) : 1;
+            execute(Integer.valueOf(args[0]), Integer.valueOf(args[1]), Long.valueOf(args[2]), args[3], parserThreads);
         }
     }
 
@@ -150,10 +172,11 @@ public class ProcessedTime {
      * @param limit The maximum number of data lines to process
      * @param windSize The window size for processing
      * @param dataPath The base path to the data files
+     * @param parserThreads The number of threads parsing the data
      * @throws Exception If any error occurs during execution
      */
-    private static void execute(int col, long limit, long windSize, String dataPath) throws Exception {
+    private static void execute(int col, long limit, long windSize, String dataPath, int parserThreads) throws Exception {
         WindowType windowType = WindowType.TIME_WINDOW;
-        Long processedTime = buildRunner(col, limit, windSize, dataPath, windowType);
+        Long processedTime = buildRunner(col, limit, windSize, dataPath, windowType, parserThreads);
     }
 }
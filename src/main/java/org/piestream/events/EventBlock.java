@@ -0,0 +1,197 @@
+package org.piestream.events;
+
+import java.util.Arrays;
+
+/**
+ * EventBlock is a columnar view of a run of slot events of a single {@link EventLayout}, so predicates can be
+ * evaluated over a whole attribute column in one tight loop instead of event by event.
+ *
+ * A block is loaded with up to {@link #capacity()} events and gathers the column of an attribute on first access:
+ * integral attributes into a long array, and any numeric attribute into a double array. Rows whose slot does not
+ * hold a primitive value (null values and values that did not parse into the attribute type) are reported by
+ * {@link #nonPrimitiveRows(int)}; their column entries are 0. Row bitmasks use one bit per row, row r being bit
+ * (r &amp; 63) of word (r &gt;&gt;&gt; 6). A block is reused for the next run of events and is not thread-safe.
+ */
+public class EventBlock {
+
+    public static final int DEFAULT_CAPACITY = 1024;  // Default number of events per block
+
+    private final EventLayout layout;  // Layout of the events of the block
+    private final PointEvent[] events;  // Events of the block, in stream order
+    private final long[][] longColumns;  // Gathered long column by ordinal, null until first used
+    private final double[][] doubleColumns;  // Gathered double column by ordinal, null until first used
+    private final long[][] nonPrimitive;  // Rows whose slot is not primitive, by ordinal
+    private final int[] longLoads;  // Load number the long column of an ordinal was gathered for
+    private final int[] doubleLoads;  // Load number the double column of an ordinal was gathered for
+    private int loads;  // Number of loads so far
+    private int size;  // Number of events in the block
+
+    /**
+     * Creates a block with the default capacity.
+     *
+     * @param layout The layout of the events of the block
+     */
+    public EventBlock(EventLayout layout) {
+        this(layout, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a block.
+     *
+     * @param layout The layout of the events of the block
+     * @param capacity The maximum number of events of the block
+     */
+    public EventBlock(EventLayout layout, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Block capacity must be positive: " + capacity);
+        }
+        this.layout = layout;
+        this.events = new PointEvent[capacity];
+        this.longColumns = new long[layout.size()][];
+        this.doubleColumns = new double[layout.size()][];
+        this.nonPrimitive = new long[layout.size()][];
+        this.longLoads = new int[layout.size()];
+        this.doubleLoads = new int[layout.size()];
+    }
+
+    /**
+     * Loads a run of events into the block, replacing its previous content. Columns are gathered on first access.
+     *
+     * @param source The events
+     * @param offset The index of the first event to load
+     * @param count The number of events to load, at most the capacity of the block
+     * @return false if an event is not a slot event of the block's layout; the block is empty then
+     */
+    public boolean load(PointEvent[] source, int offset, int count) {
+        if (count < 0 || count > events.length) {
+            throw new IllegalArgumentException("Invalid event count: " + count);
+        }
+        Arrays.fill(events, 0, size, null);
+        size = 0;
+        loads++;
+        for (int i = 0; i < count; i++) {
+            PointEvent event = source[offset + i];
+            if (event.getLayout() != layout) {
+                Arrays.fill(events, 0, i, null);
+                return false;
+            }
+            events[i] = event;
+        }
+        size = count;
+        return true;
+    }
+
+    /**
+     * @return The layout of the events of the block
+     */
+    public EventLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return The number of events in the block
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The maximum number of events of the block
+     */
+    public int capacity() {
+        return events.length;
+    }
+
+    /**
+     * @param row The row of the event
+     * @return The event at the given row
+     */
+    public PointEvent getEvent(int row) {
+        return events[row];
+    }
+
+    /**
+     * Returns the column of an integral attribute.
+     *
+     * @param ordinal The ordinal of an integral attribute
+     * @return The values by row, valid for the first {@link #size()} rows
+     */
+    public long[] longColumn(int ordinal) {
+        if (!layout.isIntegral(ordinal)) {
+            throw new IllegalArgumentException("Attribute is not integral: " + layout.getAttribute(ordinal).getName());
+        }
+        if (longLoads[ordinal] != loads) {
+            long[] column = longColumns[ordinal];
+            if (column == null) {
+                column = longColumns[ordinal] = new long[events.length];
+            }
+            long[] rows = nonPrimitiveMask(ordinal);
+            for (int r = 0; r < size; r++) {
+                PointEvent event = events[r];
+                if (event.isPrimitive(ordinal)) {
+                    column[r] = event.getLong(ordinal);
+                } else {
+                    column[r] = 0L;
+                    rows[r >>> 6] |= 1L << r;
+                }
+            }
+            longLoads[ordinal] = loads;
+        }
+        return longColumns[ordinal];
+    }
+
+    /**
+     * Returns the column of a numeric attribute as doubles; integral values are widened.
+     *
+     * @param ordinal The ordinal of a numeric attribute
+     * @return The values by row, valid for the first {@link #size()} rows
+     */
+    public double[] doubleColumn(int ordinal) {
+        if (!layout.isIntegral(ordinal) && !layout.isFloating(ordinal)) {
+            throw new IllegalArgumentException("Attribute is not numeric: " + layout.getAttribute(ordinal).getName());
+        }
+        if (doubleLoads[ordinal] != loads) {
+            double[] column = doubleColumns[ordinal];
+            if (column == null) {
+                column = doubleColumns[ordinal] = new double[events.length];
+            }
+            long[] rows = nonPrimitiveMask(ordinal);
+            boolean integral = layout.isIntegral(ordinal);
+            for (int r = 0; r < size; r++) {
+                PointEvent event = events[r];
+                if (event.isPrimitive(ordinal)) {
+                    column[r] = integral ? event.getLong(ordinal) : event.getDouble(ordinal);
+                } else {
+                    column[r] = 0.0;
+                    rows[r >>> 6] |= 1L << r;
+                }
+            }
+            doubleLoads[ordinal] = loads;
+        }
+        return doubleColumns[ordinal];
+    }
+
+    /**
+     * Returns the rows whose slot of the attribute does not hold a primitive value.
+     * Only valid after the long or double column of the attribute was gathered for the current load.
+     *
+     * @param ordinal The ordinal of the attribute
+     * @return The row bitmask
+     */
+    public long[] nonPrimitiveRows(int ordinal) {
+        return nonPrimitive[ordinal];
+    }
+
+    /**
+     * Returns the mask of the current load, clearing it if neither column of the attribute was gathered yet.
+     */
+    private long[] nonPrimitiveMask(int ordinal) {
+        long[] rows = nonPrimitive[ordinal];
+        if (rows == null) {
+            rows = nonPrimitive[ordinal] = new long[(events.length + 63) >>> 6];
+        } else if (longLoads[ordinal] != loads && doubleLoads[ordinal] != loads) {
+            Arrays.fill(rows, 0L);
+        }
+        return rows;
+    }
+}
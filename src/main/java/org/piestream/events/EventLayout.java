@@ -0,0 +1,140 @@
+package org.piestream.events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EventLayout describes how the attributes of a schema are mapped onto the typed slots of a {@link PointEvent}.
+ * Every attribute keeps the ordinal it has in the schema's field index map, and its declared type decides
+ * whether the value lives in the long slots (byte, short, int, long), the double slots (float, double)
+ * or the reference slots (every other type).
+ */
+public class EventLayout {
+
+    // Slot kinds, one per attribute ordinal
+    public static final byte KIND_BYTE = 0;
+    public static final byte KIND_SHORT = 1;
+    public static final byte KIND_INT = 2;
+    public static final byte KIND_LONG = 3;
+    public static final byte KIND_FLOAT = 4;
+    public static final byte KIND_DOUBLE = 5;
+    public static final byte KIND_REF = 6;
+
+    private final List<Attribute> attributes;  // Attributes in ordinal order
+    private final byte[] kinds;  // Slot kind of every ordinal
+    private final Map<Attribute, Integer> ordinals;  // Attribute to ordinal lookup
+    private final int timestampOrdinal;  // Ordinal of the timestamp field, -1 if the schema has none
+
+    /**
+     * Builds the layout from the schema attributes and their field index map.
+     *
+     * @param attributes The schema attributes
+     * @param fieldIndexMap A map of field names to their index in the attribute list
+     * @param timestampField The name of the timestamp field, may be null
+     */
+    public EventLayout(List<Attribute> attributes, Map<String, Integer> fieldIndexMap, String timestampField) {
+        int size = attributes.size();
+        this.attributes = Collections.unmodifiableList(new ArrayList<>(attributes));
+        this.kinds = new byte[size];
+        this.ordinals = new HashMap<>();
+        for (Attribute attribute : attributes) {
+            Integer ordinal = fieldIndexMap.get(attribute.getName());
+            if (ordinal == null || ordinal < 0 || ordinal >= size) {
+                throw new IllegalArgumentException("Field index not found for attribute: " + attribute.getName());
+            }
+            kinds[ordinal] = kindOf(attribute.getType());
+            ordinals.put(attribute, ordinal);
+        }
+        Integer tsOrdinal = timestampField == null ? null : fieldIndexMap.get(timestampField);
+        this.timestampOrdinal = tsOrdinal == null ? -1 : tsOrdinal;
+    }
+
+    /**
+     * Maps a declared attribute type onto its slot kind.
+     *
+     * @param type The declared type of the attribute
+     * @return The slot kind
+     */
+    public static byte kindOf(String type) {
+        if (type == null) {
+            return KIND_REF;
+        }
+        switch (type.trim().toLowerCase()) {
+            case "byte": return KIND_BYTE;
+            case "short": return KIND_SHORT;
+            case "int":
+            case "integer": return KIND_INT;
+            case "long": return KIND_LONG;
+            case "float": return KIND_FLOAT;
+            case "double": return KIND_DOUBLE;
+            default: return KIND_REF;
+        }
+    }
+
+    /**
+     * @return The number of slots (attributes) of the layout
+     */
+    public int size() {
+        return kinds.length;
+    }
+
+    /**
+     * @param ordinal The attribute ordinal
+     * @return The attribute stored at the given ordinal
+     */
+    public Attribute getAttribute(int ordinal) {
+        return attributes.get(ordinal);
+    }
+
+    /**
+     * @return The attributes in ordinal order
+     */
+    public List<Attribute> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @param ordinal The attribute ordinal
+     * @return The slot kind of the given ordinal
+     */
+    public byte getKind(int ordinal) {
+        return kinds[ordinal];
+    }
+
+    /**
+     * @param ordinal The attribute ordinal
+     * @return true if the attribute is stored in the long slots
+     */
+    public boolean isIntegral(int ordinal) {
+        return kinds[ordinal] <= KIND_LONG;
+    }
+
+    /**
+     * @param ordinal The attribute ordinal
+     * @return true if the attribute is stored in the double slots
+     */
+    public boolean isFloating(int ordinal) {
+        return kinds[ordinal] == KIND_FLOAT || kinds[ordinal] == KIND_DOUBLE;
+    }
+
+    /**
+     * Looks up the ordinal of an attribute.
+     *
+     * @param attribute The attribute to look up
+     * @return The ordinal, or -1 if the attribute is not part of the layout
+     */
+    public int ordinalOf(Attribute attribute) {
+        Integer ordinal = ordinals.get(attribute);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * @return The ordinal of the timestamp field, or -1 if the schema has no native timestamp
+     */
+    public int getTimestampOrdinal() {
+        return timestampOrdinal;
+    }
+}
@@ -0,0 +1,87 @@
+package org.piestream.events;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * EventRetention decides what is kept of an event that bounds a PIE or triggers an IEP, and so stays referenced
+ * by the IEPs and IEs of the window.
+ *
+ * The full retention keeps the event itself and marks it retained, so it is never recycled. The lean retention keeps
+ * a copy holding the timestamp and the values of the projected attributes only; the event itself is left unretained
+ * and goes back to its pool once it was classified, so the window does not keep the payloads of its events alive.
+ * The projected attributes are those of the RETURN clause of the query, see
+ * {@link org.piestream.parser.QueryParser#getEventRetention()}.
+ */
+public class EventRetention {
+
+    public static final EventRetention FULL = new EventRetention(null);  // Keeps the events themselves
+
+    private final Attribute[] projected;  // Attributes kept by the lean retention, null for the full retention
+
+    private EventRetention(Attribute[] projected) {
+        this.projected = projected;
+    }
+
+    /**
+     * Creates a lean retention.
+     *
+     * @param projected The attributes whose values are kept besides the timestamp
+     * @return The lean retention
+     */
+    public static EventRetention lean(Collection<Attribute> projected) {
+        if (projected == null) {
+            throw new IllegalArgumentException("Projected attributes cannot be null");
+        }
+        return new EventRetention(projected.toArray(new Attribute[0]));
+    }
+
+    /**
+     * Combines two retentions, e.g. of queries sharing the events they keep: the result keeps what either keeps.
+     *
+     * @param other The other retention
+     * @return The full retention if either is full, otherwise the lean retention of the attributes of both
+     */
+    public EventRetention union(EventRetention other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Event retention cannot be null");
+        }
+        if (!isLean() || !other.isLean()) {
+            return FULL;
+        }
+        Set<Attribute> both = new LinkedHashSet<>(Arrays.asList(projected));
+        both.addAll(Arrays.asList(other.projected));
+        return new EventRetention(both.toArray(new Attribute[0]));
+    }
+
+    /**
+     * @return true if only the timestamps and projected attributes of the events are kept
+     */
+    public boolean isLean() {
+        return projected != null;
+    }
+
+    /**
+     * Keeps an event that is referenced beyond its classification.
+     *
+     * @param event The event bounding a PIE or triggering an IEP
+     * @return The event itself, retained, or its lean copy
+     */
+    public PointEvent keep(PointEvent event) {
+        if (projected == null) {
+            event.retain();
+            return event;
+        }
+        Map<Attribute, Object> values = projected.length == 0
+                ? Collections.<Attribute, Object>emptyMap() : new HashMap<>(projected.length * 2);
+        for (Attribute attribute : projected) {
+            values.put(attribute, event.getValue(attribute));
+        }
+        return new PointEvent(values, event.getTimestamp());
+    }
+}
@@ -1,15 +1,40 @@
 package org.piestream.events;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * PointEvent is a single event of the stream together with its timestamp.
+ *
+ * An event either wraps a Map of attribute values, or it stores its values in typed slots indexed by the
+ * attribute ordinals of an {@link EventLayout}: integral attributes in a long array, floating point attributes
+ * in a double array and everything else in a reference array. Slot events are created by the preprocessor,
+ * can be recycled through a {@link PointEventPool} and only build a Map when {@link #getPayload()} is called.
+ */
 public class PointEvent {
 
+    // Slot states
+    private static final byte SLOT_NULL = 0;
+    private static final byte SLOT_PRIMITIVE = 1;
+    private static final byte SLOT_REF = 2;
+
     // Map to store the event's data as key-value pairs, where the key is an Attribute and the value can be any Object
-    private final Map<Attribute, Object> payload;
+    // For slot events it is built lazily from the slots
+    private Map<Attribute, Object> payload;
 
     // Timestamp of the event indicating when it occurred
-    private final long timestamp;
+    private long timestamp;
+
+    // Typed slots, null for map events
+    private final EventLayout layout;
+    private final long[] longSlots;
+    private final double[] doubleSlots;
+    private final Object[] refSlots;
+    private final byte[] slotStates;
+
+    // Set once the event is referenced by a PIE boundary or an IEP, a retained event must not be recycled
+    private boolean retained;
 
     /**
      * Constructs a PointEvent with a given payload and timestamp.
@@ -20,16 +45,48 @@ public class PointEvent {
     public PointEvent(Map<Attribute, Object> payload, long timestamp) {
         this.payload = payload;
         this.timestamp = timestamp;
+        this.layout = null;
+        this.longSlots = null;
+        this.doubleSlots = null;
+        this.refSlots = null;
+        this.slotStates = null;
+    }
+
+    /**
+     * Constructs an empty slot event for the given layout. All slots start as null.
+     *
+     * @param layout The layout describing the slots of the event
+     */
+    public PointEvent(EventLayout layout) {
+        int size = layout.size();
+        this.layout = layout;
+        this.longSlots = new long[size];
+        this.doubleSlots = new double[size];
+        this.refSlots = new Object[size];
+        this.slotStates = new byte[size];
     }
 
     /**
      * Copy constructor to create a new PointEvent by copying data from another PointEvent.
-     * This ensures a deep copy of the payload map.
+     * This ensures a deep copy of the payload map, slot events copy their slot arrays instead.
      *
      * @param other The PointEvent instance to copy from
      */
     public PointEvent(PointEvent other) {
         this.timestamp = other.timestamp;
+        this.layout = other.layout;
+
+        if (other.isSlotted()) {
+            this.longSlots = other.longSlots.clone();
+            this.doubleSlots = other.doubleSlots.clone();
+            this.refSlots = other.refSlots.clone();
+            this.slotStates = other.slotStates.clone();
+            return;
+        }
+        this.longSlots = null;
+        this.doubleSlots = null;
+        this.refSlots = null;
+        this.slotStates = null;
 
         // Deep copy of the payload map
         this.payload = new HashMap<>();
@@ -43,13 +100,35 @@ public class PointEvent {
     /**
      * Retrieves the payload of the event.
      * The payload is a map of attributes and their corresponding values.
+     * For slot events the map is built on first access and boxes the values according to the attribute types.
      *
      * @return The payload of the event as a Map of Attribute-Object pairs
      */
     public Map<Attribute, Object> getPayload() {
+        if (payload == null && isSlotted()) {
+            Map<Attribute, Object> map = new HashMap<>();
+            for (int i = 0; i < slotStates.length; i++) {
+                map.put(layout.getAttribute(i), get(i));
+            }
+            payload = map;
+        }
         return payload;
     }
 
+    /**
+     * Retrieves the value of an attribute without building the payload map of slot events.
+     *
+     * @param attribute The attribute to look up
+     * @return The value of the attribute, or null if it is absent
+     */
+    public Object getValue(Attribute attribute) {
+        if (!isSlotted()) {
+            return payload.get(attribute);
+        }
+        int ordinal = layout.ordinalOf(attribute);
+        return ordinal < 0 ? null : get(ordinal);
+    }
+
     /**
      * Retrieves the timestamp of the event.
      *
@@ -59,6 +138,262 @@ public class PointEvent {
         return timestamp;
     }
 
+    /**
+     * Sets the timestamp of a slot event.
+     *
+     * @param timestamp The timestamp of the event
+     */
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Extracts the native timestamp from the timestamp slot of a slot event.
+     * Integral timestamps are read directly, other values are parsed as long like the Map based payload did.
+     *
+     * @return The extracted timestamp value
+     * @throws IllegalArgumentException If the timestamp field is missing or invalid
+     */
+    public long extractTimestamp() {
+        int ordinal = layout == null ? -1 : layout.getTimestampOrdinal();
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Timestamp field not found in schema");
+        }
+        if (slotStates[ordinal] == SLOT_NULL) {
+            throw new IllegalArgumentException("Timestamp field not found in event payload");
+        }
+        if (slotStates[ordinal] == SLOT_PRIMITIVE && layout.isIntegral(ordinal)) {
+            return longSlots[ordinal];
+        }
+        Object timestampObj = get(ordinal);
+        try {
+            return Long.parseLong(timestampObj.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid long value: " + timestampObj, e);
+        }
+    }
+
+    /**
+     * @return true if the event stores its values in typed slots
+     */
+    public boolean isSlotted() {
+        return layout != null;
+    }
+
+    /**
+     * @return The layout of a slot event, or null for map events
+     */
+    public EventLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Returns the boxed value of a slot, using the box type that matches the attribute type.
+     *
+     * @param ordinal The attribute ordinal
+     * @return The boxed value, or null if the slot is null
+     */
+    public Object get(int ordinal) {
+        switch (slotStates[ordinal]) {
+            case SLOT_NULL:
+                return null;
+            case SLOT_REF:
+                return refSlots[ordinal];
+            default:
+                break;
+        }
+        switch (layout.getKind(ordinal)) {
+            case EventLayout.KIND_BYTE: return (byte) longSlots[ordinal];
+            case EventLayout.KIND_SHORT: return (short) longSlots[ordinal];
+            case EventLayout.KIND_INT: return (int) longSlots[ordinal];
+            case EventLayout.KIND_LONG: return longSlots[ordinal];
+            case EventLayout.KIND_FLOAT: return (float) doubleSlots[ordinal];
+            default: return doubleSlots[ordinal];
+        }
+    }
+
+    /**
+     * @param ordinal The attribute ordinal
+     * @return The value of an integral slot
+     */
+    public long getLong(int ordinal) {
+        return longSlots[ordinal];
+    }
+
+    /**
+     * @param ordinal The attribute ordinal
+     * @return The value of an integral slot narrowed to int
+     */
+    public int getInt(int ordinal) {
+        return (int) longSlots[ordinal];
+    }
+
+    /**
+     * @param ordinal The attribute ordinal
+     * @return The value of a floating point slot
+     */
+    public double getDouble(int ordinal) {
+        return doubleSlots[ordinal];
+    }
+
+    /**
+     * @param ordinal The attribute ordinal
+     * @return true if the slot holds a primitive value that can be read with getLong/getDouble
+     */
+    public boolean isPrimitive(int ordinal) {
+        return slotStates[ordinal] == SLOT_PRIMITIVE;
+    }
+
+    /**
+     * @param ordinal The attribute ordinal
+     * @return true if the slot is null
+     */
+    public boolean isNull(int ordinal) {
+        return slotStates[ordinal] == SLOT_NULL;
+    }
+
+    /**
+     * Stores an integral value in a long slot.
+     *
+     * @param ordinal The attribute ordinal
+     * @param value The value
+     */
+    public void setLong(int ordinal, long value) {
+        longSlots[ordinal] = value;
+        refSlots[ordinal] = null;
+        slotStates[ordinal] = SLOT_PRIMITIVE;
+        payload = null;
+    }
+
+    /**
+     * Stores a floating point value in a double slot.
+     *
+     * @param ordinal The attribute ordinal
+     * @param value The value
+     */
+    public void setDouble(int ordinal, double value) {
+        doubleSlots[ordinal] = value;
+        refSlots[ordinal] = null;
+        slotStates[ordinal] = SLOT_PRIMITIVE;
+        payload = null;
+    }
+
+    /**
+     * Stores a raw value in a slot. Strings and numbers are converted to the attribute type when they can be
+     * represented exactly, anything else (including text that does not parse) is kept as it is so predicates
+     * see the same value they would see in a Map payload.
+     *
+     * @param ordinal The attribute ordinal
+     * @param value The raw value, may be null
+     */
+    public void setValue(int ordinal, Object value) {
+        payload = null;
+        if (value == null) {
+            refSlots[ordinal] = null;
+            slotStates[ordinal] = SLOT_NULL;
+            return;
+        }
+        byte kind = layout.getKind(ordinal);
+        if (kind != EventLayout.KIND_REF) {
+            if (value instanceof String) {
+                if (setParsed(ordinal, kind, (String) value)) {
+                    return;
+                }
+            } else if (value instanceof Number) {
+                if (setNumber(ordinal, kind, (Number) value)) {
+                    return;
+                }
+            }
+        }
+        refSlots[ordinal] = value;
+        slotStates[ordinal] = SLOT_REF;
+    }
+
+    /**
+     * Parses a text value into the slot, using the parser of the attribute type.
+     *
+     * @return false if the text is not a valid value of the attribute type
+     */
+    private boolean setParsed(int ordinal, byte kind, String text) {
+        try {
+            switch (kind) {
+                case EventLayout.KIND_BYTE: setLong(ordinal, Byte.parseByte(text)); return true;
+                case EventLayout.KIND_SHORT: setLong(ordinal, Short.parseShort(text)); return true;
+                case EventLayout.KIND_INT: setLong(ordinal, Integer.parseInt(text)); return true;
+                case EventLayout.KIND_LONG: setLong(ordinal, Long.parseLong(text)); return true;
+                case EventLayout.KIND_FLOAT: setDouble(ordinal, Float.parseFloat(text)); return true;
+                case EventLayout.KIND_DOUBLE: setDouble(ordinal, Double.parseDouble(text)); return true;
+                default: return false;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stores a boxed number into the slot if the attribute type can hold it without losing information.
+     *
+     * @return false if the number does not fit the attribute type
+     */
+    private boolean setNumber(int ordinal, byte kind, Number number) {
+        if (layout.isIntegral(ordinal)) {
+            if (!(number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte)) {
+                return false;
+            }
+            long value = number.longValue();
+            boolean fits;
+            switch (kind) {
+                case EventLayout.KIND_BYTE: fits = value == (byte) value; break;
+                case EventLayout.KIND_SHORT: fits = value == (short) value; break;
+                case EventLayout.KIND_INT: fits = value == (int) value; break;
+                default: fits = true; break;
+            }
+            if (fits) {
+                setLong(ordinal, value);
+            }
+            return fits;
+        }
+        if (kind == EventLayout.KIND_FLOAT) {
+            if (number instanceof Float || (number instanceof Double && (double) number.floatValue() == number.doubleValue())) {
+                setDouble(ordinal, number.floatValue());
+                return true;
+            }
+            return false;
+        }
+        if (number instanceof Double) {
+            setDouble(ordinal, number.doubleValue());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Clears all slots so a pooled event can be filled again.
+     */
+    public void reset() {
+        if (isSlotted()) {
+            Arrays.fill(refSlots, null);
+            Arrays.fill(slotStates, SLOT_NULL);
+        }
+        payload = null;
+        timestamp = 0;
+        retained = false;
+    }
+
+    /**
+     * Marks the event as referenced by long-lived state (PIE boundaries, IEPs), which keeps it out of the pool.
+     */
+    public void retain() {
+        this.retained = true;
+    }
+
+    /**
+     * @return true if the event is referenced by long-lived state
+     */
+    public boolean isRetained() {
+        return retained;
+    }
+
     /**
      * Returns a string representation of the PointEvent, including the timestamp and the payload.
      * The string is formatted as "PointEvent { timestamp=..., payload={...} }".
@@ -73,6 +408,7 @@ public class PointEvent {
         sb.append("payload={");
 
         // Iterate over the payload map to append each attribute and its value
+        Map<Attribute, Object> payload = getPayload();
         for (Map.Entry<Attribute, Object> entry : payload.entrySet()) {
             sb.append(entry.getKey().getName()).append(": ").append(entry.getValue()).append(", ");
         }
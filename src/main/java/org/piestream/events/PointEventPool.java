@@ -0,0 +1,73 @@
+package org.piestream.events;
+
+import java.util.ArrayDeque;
+
+/**
+ * PointEventPool recycles slot events of a single layout so the preprocessor does not allocate a new event
+ * (and its slot arrays) for every input line.
+ * Events that were retained by a PIE boundary or an IEP are never returned to the pool.
+ * The pool is not thread-safe, each engine owns its own pool.
+ */
+public class PointEventPool {
+
+    private static final int DEFAULT_CAPACITY = 1024;  // Default number of free events kept by the pool
+
+    private final EventLayout layout;  // Layout of the pooled events
+    private final ArrayDeque<PointEvent> freeList;  // Events ready for reuse
+    private final int capacity;  // Maximum number of free events kept
+
+    /**
+     * Creates a pool with the default capacity.
+     *
+     * @param layout The layout of the pooled events
+     */
+    public PointEventPool(EventLayout layout) {
+        this(layout, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a pool keeping at most {@code capacity} free events.
+     *
+     * @param layout The layout of the pooled events
+     * @param capacity The maximum number of free events kept by the pool
+     */
+    public PointEventPool(EventLayout layout, int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Pool capacity must not be negative");
+        }
+        this.layout = layout;
+        this.capacity = capacity;
+        this.freeList = new ArrayDeque<>(Math.min(capacity, DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Takes a cleared event from the pool, or creates a new one if the pool is empty.
+     *
+     * @return An event with all slots set to null
+     */
+    public PointEvent acquire() {
+        PointEvent event = freeList.pollFirst();
+        return event != null ? event : new PointEvent(layout);
+    }
+
+    /**
+     * Returns an event to the pool. Retained events, events of another layout and events exceeding the
+     * pool capacity are left to the garbage collector.
+     *
+     * @param event The event that is no longer used by the caller
+     */
+    public void release(PointEvent event) {
+        if (event == null || event.isRetained() || event.getLayout() != layout || freeList.size() >= capacity) {
+            return;
+        }
+        event.reset();
+        freeList.addFirst(event);
+    }
+
+    /**
+     * @return The layout of the pooled events
+     */
+    public EventLayout getLayout() {
+        return layout;
+    }
+}
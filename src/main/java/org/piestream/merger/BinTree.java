@@ -362,18 +362,35 @@ public class BinTree {
     public void refreshLeafNodeData_OldT(long deadLine) {
         for (Map.Entry<IEPCol, TreeNode> entry : Col2Node.entrySet()) {
             TreeNode leafNode = entry.getValue();
-            List<IEP> toDelIeps = leafNode.getCol().refresh(deadLine); // Refresh the column data
+            leafNode.getCol().refresh(deadLine); // Refresh the column data
             if (leafNode.isHasBefore()) {
                 leafNode.formerIEList.refresh(deadLine); // Refresh the "before" IEP list
-                toDelIeps = leafNode.getBefCol().refresh(deadLine); // Refresh the "before" column
+                leafNode.getBefCol().refresh(deadLine); // Refresh the "before" column
             }
             if (leafNode.isHasAfter()) {
                 leafNode.latterIEList.refresh(deadLine); // Refresh the "after" IEP list
-                toDelIeps = leafNode.getAftCol().refresh(deadLine); // Refresh the "after" column
+                leafNode.getAftCol().refresh(deadLine); // Refresh the "after" column
             }
         }
     }
 
+    /**
+     * Checks whether any leaf column received a new IEP since its trigger state was last reset.
+     *
+     * @return true if at least one column, "before" column or "after" column is triggered
+     */
+    public boolean hasTriggeredLeafCol() {
+        for (Map.Entry<IEPCol, TreeNode> entry : Col2Node.entrySet()) {
+            TreeNode leafNode = entry.getValue();
+            if (leafNode.getCol().getIsTrigger()
+                    || (leafNode.isHasBefore() && leafNode.getBefCol().getIsTrigger())
+                    || (leafNode.isHasAfter() && leafNode.getAftCol().getIsTrigger())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Updates the root table with the provided list of deleted IEPs by adjusting their event times.
      *
@@ -6,22 +6,34 @@ import org.piestream.engine.Window;
 import org.piestream.engine.WindowType;
 import org.piestream.events.PointEvent;
 import org.piestream.piepair.IEP;
+import org.piestream.piepair.RangeIEP;
+import org.piestream.piepair.TemporalRelations;
 import org.piestream.piepair.eba.EBA;
 
 /**
  * A class representing a collection of IEPs (Point Events) with various methods
  * for adding, updating, retrieving, and managing IEPs within a window.
  * Supports functionality for triggering, managing IEP lists, and handling table updates.
+ *
+ * IEPs that leave the column, by expiring or by being pushed out of a capacity window, are kept on a free list and
+ * reused by {@link #newIEP}. The rows built from an IEP copy its times, and their source sets hold it by identity
+ * only, so an IEP is no longer read once it left the column.
+ *
+ * Ranges of IEPs, see {@link RangeIEP}, only go into the tables of the column as range rows, see {@link RangeRow};
+ * they are not kept in the IEP list or its index.
  */
 public class IEPCol {
+    private static final int FREE_LIST_CAPACITY = 1024; // Maximum number of free IEPs kept for reuse
     public final Map<EBA, Map<Long, List<IEP>>> colMap; // Index based on the IEP List
     private final Table iepTable; // The Table corresponding to the IEP List
     private boolean isTrigger; // Indicates whether the column is triggered
     private final LinkList<IEP> newIEPList; // List of newly discovered IEPs
+    private final List<RangeIEP> newRanges; // Newly discovered ranges of IEPs
     private final Map<EBA, Map<Long, List<IEP>>> newIEPMap; // Map of new IEPs by EBA and start time
     private final Table newIEPTable; // Table corresponding to the new IEP List
     private final Window window; // The window associated with this IEP collection
     private final LinkList<IEP> iepList; // Linked list containing IEPs
+    private final ArrayDeque<IEP> freeIEPs; // IEPs that left the column, ready for reuse
 
     /**
      * Constructor to initialize the IEP collection with the provided window and EBA to string mapping.
@@ -38,6 +50,48 @@ public class IEPCol {
         this.iepList = new LinkList<>(window);
         this.iepTable = new Table(window);
         this.newIEPList = new LinkList<>(window);
+        this.newRanges = new ArrayList<>();
+        this.freeIEPs = new ArrayDeque<>();
+    }
+
+    /**
+     * Creates an IEP for this column, reusing an IEP that left the column if there is one.
+     *
+     * @param relation The temporal relation of the IEP.
+     * @param formerPie The former EBA.
+     * @param latterPie The latter EBA.
+     * @param formerPieStart The start event of the former PIE.
+     * @param latterPieStart The start event of the latter PIE.
+     * @param formerPieEnd The end event of the former PIE, may be null.
+     * @param latterPieEnd The end event of the latter PIE, may be null.
+     * @param formerStartTime The start time of the former PIE.
+     * @param latterStartTime The start time of the latter PIE.
+     * @param triggerEvent The event that triggers the IEP.
+     * @param triggerTime The time of the trigger event.
+     * @return The IEP.
+     */
+    public IEP newIEP(TemporalRelations.AllRel relation, EBA formerPie, EBA latterPie,
+                      PointEvent formerPieStart, PointEvent latterPieStart, PointEvent formerPieEnd, PointEvent latterPieEnd,
+                      long formerStartTime, long latterStartTime, PointEvent triggerEvent, long triggerTime) {
+        IEP iep = freeIEPs.pollFirst();
+        if (iep == null) {
+            return new IEP(relation, formerPie, latterPie, formerPieStart, latterPieStart, formerPieEnd, latterPieEnd,
+                    formerStartTime, latterStartTime, triggerEvent, triggerTime);
+        }
+        iep.init(relation, formerPie, latterPie, formerPieStart, latterPieStart, formerPieEnd, latterPieEnd,
+                formerStartTime, latterStartTime, triggerEvent, triggerTime);
+        return iep;
+    }
+
+    /**
+     * Keeps an IEP that left the column for reuse, unless the free list is full.
+     *
+     * @param iep The IEP that is no longer in the column.
+     */
+    private void recycle(IEP iep) {
+        if (freeIEPs.size() < FREE_LIST_CAPACITY) {
+            freeIEPs.addFirst(iep);
+        }
     }
 
     /**
@@ -83,6 +137,7 @@ public class IEPCol {
         if (isTrigger == true) {
             isTrigger = false;
             newIEPList.clear();
+            newRanges.clear();
             newIEPMap.clear();
             newIEPTable.clear();
         }
@@ -112,7 +167,17 @@ public class IEPCol {
     }
 
     /**
-     * Updates the new IEP list into the corresponding table, using the provided EBA-to-string mapping
+     * Sets the trigger message with a range of IEPs.
+     *
+     * @param range The range of IEPs that triggers the update.
+     */
+    public void setTriggerRange(RangeIEP range) {
+        this.newRanges.add(range);
+        this.isTrigger = true;
+    }
+
+    /**
+     * Updates the new IEP list and ranges into the corresponding table, using the provided EBA-to-string mapping
      * and join columns for row creation.
      *
      * @param EBA2String The mapping of EBA to string used for row creation.
@@ -126,6 +191,9 @@ public class IEPCol {
                 this.newIEPTable.addRow(newRow);
                 current = current.next;
             }
+            for (RangeIEP range : newRanges) {
+                this.newIEPTable.addRow(new RangeRow(range, EBA2String, joinColumns));
+            }
         }
     }
 
@@ -168,6 +236,7 @@ public class IEPCol {
         List<IEP> toDelIepList = this.iepList.deleteFromHead(excessNum);
         for (IEP iep : toDelIepList) {
             deleteHashindexByIEP(iep); // Remove the index for each deleted IEP
+            recycle(iep);
         }
     }
 
@@ -294,22 +363,23 @@ public class IEPCol {
     }
 
     /**
-     * Refreshes the IEP collection by removing expired IEPs and returning them.
+     * Refreshes the IEP collection by removing expired IEPs, which are kept for reuse.
      *
      * @param deadLine The deadline (timestamp) to refresh the IEPs.
-     * @return A list of IEPs that were removed during the refresh process.
+     * @return The number of IEPs that were removed during the refresh process.
      */
-    public List<IEP> refresh(long deadLine) {
+    public int refresh(long deadLine) {
         List<IEP> toDelIeps = iepList.refresh(deadLine);
         // Delete corresponding entries in the column map for the removed IEPs
         for (IEP iep : toDelIeps) {
             deleteHashindexByIEP(iep);
+            recycle(iep);
         }
         // Refresh the IEP table
         if (iepTable.getSize() != 0) {
             iepTable.refresh(deadLine);
         }
-        return toDelIeps;
+        return toDelIeps.size();
     }
 
     /**
@@ -7,6 +7,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class LinkList<T extends Expirable> {
@@ -66,6 +67,18 @@ public class LinkList<T extends Expirable> {
         this.sortedInsert(newNode);
     }
 
+    // Adds a new element at the tail of the list, keeping the order in which the elements are added
+    public void append(T data) {
+        Node newNode = new Node(data, null, tail);
+        if (isEmpty()) {
+            head = newNode;
+        } else {
+            tail.next = newNode;
+        }
+        tail = newNode;
+        size++;
+    }
+
     // Inserts a node into the list in a sorted manner based on the data's sort key
     private void sortedInsert(Node node) {
         if (isEmpty()) {
@@ -219,6 +232,9 @@ public class LinkList<T extends Expirable> {
 
     // TIME WINDOW: Removes expired data based on the provided deadline and returns the expired items
     public List<T> refresh(long deadLine) {
+        if (head == null || !head.data.isExpired(deadLine)) {
+            return Collections.emptyList();  // Nothing expired, the common case of a refresh before every event
+        }
         List<T> dataList = new ArrayList<T>();
         Node current = head;
         long cnt = 0;
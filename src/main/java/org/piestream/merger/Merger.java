@@ -122,6 +122,12 @@ public class Merger {
 
         startTime = System.currentTimeMillis();  // Start a new time measurement for deriving join results
 
+        // The derivations read the columns of the intermediate rows, so range rows are expanded first
+        if (leafNode.hasAfter || leafNode.hasBefore) {
+            intermNewTab.expandRanges();
+            intermOldTab.expandRanges();
+        }
+
         // Set of key predicates for the current leaf node's parent
         Set<EBA> keyPredSet = leafNode.parent.keyPredSet;
         EBA earlyPie;
@@ -129,15 +135,15 @@ public class Merger {
 
         // If the leaf node has an "after" column, handle merging for the "after" result
         if (leafNode.hasAfter) {
-            earlyPie = leafNode.mpp.getLatterPred();  // Get the later predicate for "after" processing
-            laterPie = leafNode.mpp.getFormerPred();  // Get the former predicate for "after" processing
+            earlyPie = leafNode.source.getLatterPred();  // Get the later predicate for "after" processing
+            laterPie = leafNode.source.getFormerPred();  // Get the former predicate for "after" processing
             mergeIntermedNodeDerivingAfter(ParentNode, leafNode, keyPredSet, earlyPie, laterPie, intermNewTab, intermOldTab);
         }
 
         // If the leaf node has a "before" column, handle merging for the "before" result
         if (leafNode.hasBefore) {
-            earlyPie = leafNode.mpp.getFormerPred();  // Get the former predicate for "before" processing
-            laterPie = leafNode.mpp.getLatterPred();  // Get the later predicate for "before" processing
+            earlyPie = leafNode.source.getFormerPred();  // Get the former predicate for "before" processing
+            laterPie = leafNode.source.getLatterPred();  // Get the later predicate for "before" processing
             mergeIntermedNodeDerivingBefore(ParentNode, leafNode, keyPredSet, earlyPie, laterPie, intermNewTab, intermOldTab);
         }
 
@@ -0,0 +1,121 @@
+package org.piestream.merger;
+
+import org.piestream.engine.RuntimeSet;
+import org.piestream.events.Expirable;
+import org.piestream.piepair.RangeIEP;
+import org.piestream.piepair.eba.EBA;
+
+import java.util.*;
+
+/**
+ * A RangeRow stands for the rows of a {@link RangeIEP}, and for the rows joined from them: the rows only differ in
+ * the value of one column, the range column, so the shared columns are kept once and the values of the range column
+ * in an array. A range row counts as one row per value in the size of a table and is joined as a whole, as the join
+ * key of a range row never contains the range column. It is expanded into plain rows only where the value of the
+ * range column is read: by an index over the range column, see {@link Table#getHashIndex()}, and by the derivations
+ * of before and after relations of the merger, see {@link Table#expandRanges()}.
+ */
+public class RangeRow extends Row {
+    private final String rangeCol;            // Column whose value differs between the rows of the range
+    private final long[] values;              // Values of the range column, in row order
+    private final List<String> joinColumns;   // Columns of the index key of the rows, null if they need no index
+    private final boolean indexable;          // Whether all rows share the index key, i.e. it excludes the range column
+
+    // Constructor to create the rows of a range of IEPs of a leaf node
+    public RangeRow(RangeIEP range, Map<EBA, String> EBA2String, List<String> joinColumns) {
+        this(fixedData(range, EBA2String), EBA2String.get(range.getRangePie()) + ".ST", range.getRangeStartTimes(),
+                new HashSet<>(), range.getTriggerTime(), joinColumns, true);
+    }
+
+    private RangeRow(Map<String, Long> timeData, String rangeCol, long[] values, Set<Expirable> source,
+                     long triggerTime, List<String> joinColumns, boolean needNewIndex) {
+        super(timeData, source, triggerTime,
+                needNewIndex && !keyContains(joinColumns, rangeCol) ? generateKey(timeData, joinColumns) : null);
+        this.rangeCol = rangeCol;
+        this.values = values;
+        this.joinColumns = needNewIndex ? joinColumns : null;
+        this.indexable = !needNewIndex || !keyContains(joinColumns, rangeCol);
+    }
+
+    // The columns shared by the rows of a range of IEPs
+    private static Map<String, Long> fixedData(RangeIEP range, Map<EBA, String> EBA2String) {
+        Map<String, Long> timeData = new HashMap<>();
+        timeData.put(EBA2String.get(range.getFixedPie()) + ".ST", range.getFixedStartTime());
+        if (RuntimeSet.getInstance().isRecordAVGProceTime()) {
+            String triggerName = EBA2String.get(range.getFormerPie()) + "-" + EBA2String.get(range.getLatterPie()) + "_triggerTime";
+            timeData.put(triggerName, range.getSystemTriggerTime());  // Store the trigger time
+        }
+        return timeData;
+    }
+
+    // Whether the index key over the join columns contains a column
+    private static boolean keyContains(List<String> joinColumns, String colName) {
+        if (joinColumns == null) {
+            throw new IllegalArgumentException("String parameter cannot be null");
+        }
+        for (String column : joinColumns) {
+            if ((column + ".ST").equals(colName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int getCount() {
+        return values.length;
+    }
+
+    @Override
+    public boolean isIndexable() {
+        return indexable;
+    }
+
+    public String getRangeCol() {
+        return rangeCol;
+    }
+
+    // Expand the range into the plain rows it stands for, in row order
+    public List<Row> expand() {
+        List<Row> rows = new ArrayList<>(values.length);
+        for (long value : values) {
+            Map<String, Long> timeData = new HashMap<>(getTimeData());
+            timeData.put(rangeCol, value);
+            rows.add(new Row(timeData, joinColumns, getSource(), getTriggerTime(), joinColumns != null));
+        }
+        return rows;
+    }
+
+    // Create the same range with an index key over other join columns
+    public RangeRow rekey(List<String> newJoinColumns) {
+        return new RangeRow(getTimeData(), rangeCol, values, getSource(), getTriggerTime(), newJoinColumns, true);
+    }
+
+    // Join every row of the range with a plain row, producing a range row
+    @Override
+    public Row join(Row other, List<String> parentJoinColumns, boolean needNewIndex) {
+        if (other instanceof RangeRow || other.getTimeData().containsKey(rangeCol)) {
+            throw new IllegalStateException("The range column " + rangeCol + " cannot be joined on");
+        }
+        long earlyTime = Math.min(getTriggerTime(), other.getTriggerTime());  // Use the earliest trigger time
+        Map<String, Long> joinedData = new HashMap<>(getTimeData());
+        joinedData.putAll(other.getTimeData());
+        Set<Expirable> mergedIEPSource = new HashSet<>(getSource());
+        mergedIEPSource.addAll(other.getSource());
+        return new RangeRow(joinedData, rangeCol, values, mergedIEPSource, earlyTime, parentJoinColumns, needNewIndex);
+    }
+
+    @Override
+    public String toString() {
+        return getTimeData().toString() + " " + rangeCol + "=" + Arrays.toString(values);
+    }
+
+    @Override
+    public String getSTstring() {
+        StringBuilder sb = new StringBuilder();
+        for (Row row : expand()) {
+            sb.append(row.getSTstring());
+        }
+        return sb.toString();
+    }
+}
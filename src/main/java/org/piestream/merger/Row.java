@@ -20,7 +20,7 @@ public class Row implements Expirable {
         this.timeData = timeData;
         this.source = source;
         if (needNewIndex) {  // Non-root nodes need an index
-            this.indexKey = generateKey(joinColumns);
+            this.indexKey = generateKey(timeData, joinColumns);
         } else {  // Root node does not need an index
             this.indexKey = null;
         }
@@ -44,7 +44,15 @@ public class Row implements Expirable {
         this.source = new HashSet<>();
         this.source.add(iep);  // Add the IEP to the source set
         this.triggerTime = iep.getTriggerTime();  // Set the trigger time from the IEP
-        this.indexKey = generateKey(joinColumns);  // Generate the index key for this row
+        this.indexKey = generateKey(timeData, joinColumns);  // Generate the index key for this row
+    }
+
+    // Constructor for subclasses that compute the index key themselves
+    protected Row(Map<String, Long> timeData, Set<Expirable> source, long triggerTime, String indexKey) {
+        this.timeData = timeData;
+        this.source = source;
+        this.triggerTime = triggerTime;
+        this.indexKey = indexKey;
     }
 
     public Set<Expirable> getSource() {
@@ -69,8 +77,18 @@ public class Row implements Expirable {
         return timeData.keySet();  // Return the set of column names from the timeData map
     }
 
-    // Generate a unique key for this row based on the specified join columns
-    private String generateKey(List<String> joinColumns) {
+    // Number of rows this row stands for, see RangeRow
+    public int getCount() {
+        return 1;
+    }
+
+    // Whether this row can be put into a hash index under its index key, see RangeRow
+    public boolean isIndexable() {
+        return true;
+    }
+
+    // Generate a unique key for a row based on the specified join columns
+    static String generateKey(Map<String, Long> timeData, List<String> joinColumns) {
         if (joinColumns == null) {  // Root nodes don't need an index key
             throw new IllegalArgumentException("String parameter cannot be null");
         }
@@ -86,6 +104,9 @@ public class Row implements Expirable {
 
     // Perform a natural join between this row and another row, producing a new row
     public Row join(Row other, List<String> parentJoinColumns, boolean needNewIndex) {
+        if (other instanceof RangeRow) {
+            return other.join(this, parentJoinColumns, needNewIndex);  // The join of a range row is a range row
+        }
         long earlyTime = this.triggerTime <= other.triggerTime ? this.triggerTime : other.triggerTime;  // Use the earliest trigger time
         Map<String, Long> joinedData = new HashMap<>(this.timeData);  // Create a new map for the joined data
         joinedData.putAll(other.timeData);  // Add the other row's time data to the joined data
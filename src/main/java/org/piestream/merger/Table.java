@@ -7,11 +7,20 @@ import org.piestream.piepair.eba.EBA;
 
 import java.util.*;
 
+/**
+ * A table of rows with a hash index over their index keys.
+ *
+ * A table may hold range rows, see {@link RangeRow}, which count as the number of rows they stand for. Range rows
+ * whose rows have different index keys are not in the hash index; they are expanded into plain rows the first time
+ * the hash index is read, see {@link #getHashIndex()}.
+ */
 public class Table {
     private final LinkList<Row> rows;
-    private long size; // Current number of rows
+    private long size; // Current number of rows, counting the rows a range row stands for
     private final Window window;
     private final Map<String, List<Row>> hashIndex;
+    private long ranges; // Number of range rows in the rows
+    private long unindexed; // Number of range rows not in the hash index
 
     // Performance tracking variables
     public static long removeRowsAndIndexTime;
@@ -54,14 +63,56 @@ public class Table {
     }
 
     /**
-     * Returns the hash index of the table.
+     * Returns the hash index of the table, expanding the range rows that are not in the index first.
      *
      * @return A map representing the hash index of rows
      */
     public Map<String, List<Row>> getHashIndex(){
+        if (unindexed != 0) {
+            expand(false);
+        }
         return hashIndex;
     }
 
+    /**
+     * Expands all range rows of the table into the plain rows they stand for, keeping the order of the rows.
+     */
+    public void expandRanges() {
+        if (ranges != 0) {
+            expand(true);
+        }
+    }
+
+    /**
+     * Replaces range rows by the plain rows they stand for and rebuilds the hash index in the order of the rows.
+     * The rows are relinked into new nodes, as the nodes of a table may be shared with the table it was concatenated to.
+     *
+     * @param all Whether all range rows are expanded, otherwise only the ones not in the hash index
+     */
+    private void expand(boolean all) {
+        LinkList<Row>.Node node = rows.getHead();
+        rows.clear();
+        hashIndex.clear();
+        ranges = 0;
+        unindexed = 0;
+        while (node != null) {
+            Row row = node.getData();
+            if (row instanceof RangeRow && (all || !row.isIndexable())) {
+                for (Row expanded : ((RangeRow) row).expand()) {
+                    rows.append(expanded);
+                    hashIndex.computeIfAbsent(expanded.getIndexKey(), k -> new ArrayList<>()).add(expanded);
+                }
+            } else {
+                rows.append(row);
+                hashIndex.computeIfAbsent(row.getIndexKey(), k -> new ArrayList<>()).add(row);
+                if (row instanceof RangeRow) {
+                    ranges++;
+                }
+            }
+            node = node.next;
+        }
+    }
+
     /**
      * Deletes rows and updates the index by removing the oldest rows.
      *
@@ -105,7 +156,17 @@ public class Table {
      * @param rowsToAdd The rows to add to the table
      */
     public void addRowsWithoutGenIndex(LinkList<Row> rowsToAdd) {
-        long excess = size + rowsToAdd.getSize() - this.getCapacity();
+        addRowsWithoutGenIndex(rowsToAdd, rowsToAdd.getSize());
+    }
+
+    /**
+     * Adds multiple rows to the table without generating an index.
+     *
+     * @param rowsToAdd The rows to add to the table
+     * @param count The number of rows the added rows stand for
+     */
+    private void addRowsWithoutGenIndex(LinkList<Row> rowsToAdd, long count) {
+        long excess = size + count - this.getCapacity();
 
         if (window.getWindowType() == WindowType.CAPACITY_WINDOW && excess > 0) {
             startTime = System.currentTimeMillis();
@@ -117,7 +178,7 @@ public class Table {
         startTime = System.currentTimeMillis();
         // Batch add new rows
         rows.concat(rowsToAdd);
-        size += rowsToAdd.getSize();
+        size += count;
         endTime = System.currentTimeMillis();
         addRowsTime += (endTime - startTime);
     }
@@ -135,7 +196,14 @@ public class Table {
 
         // Add new row
         rows.safeAdd(row);
-        size++;
+        size += row.getCount();
+        if (row instanceof RangeRow) {
+            ranges++;
+            if (!row.isIndexable()) {
+                unindexed++;  // Not in the hash index until expanded
+                return;
+            }
+        }
 
         // Update hash index
         String newIndexKey = row.getIndexKey();
@@ -207,8 +275,10 @@ public class Table {
 
             // Add all rows from otherTable
             long addRowMergeST = System.currentTimeMillis();
-            addRowsWithoutGenIndex(otherRows);
-            MapMerger.mergeSimpleMaps(hashIndex, otherTable.getHashIndex());
+            addRowsWithoutGenIndex(otherRows, otherTable.getSize());
+            MapMerger.mergeSimpleMaps(hashIndex, otherTable.hashIndex);
+            ranges += otherTable.ranges;
+            unindexed += otherTable.unindexed;
             long addRowMergeET = System.currentTimeMillis();
             addRowMergeTime += (addRowMergeET - addRowMergeST);
         }
@@ -251,7 +321,11 @@ public class Table {
             LinkList<Row>.Node node = otherRows.getHead();
             while (node != null) {
                 Row row = node.getData();
-                addRow(new Row(row.getTimeData(), newJoinColumns, row.getSource(), row.getTriggerTime(), true));
+                if (row instanceof RangeRow) {
+                    addRow(((RangeRow) row).rekey(newJoinColumns));
+                } else {
+                    addRow(new Row(row.getTimeData(), newJoinColumns, row.getSource(), row.getTriggerTime(), true));
+                }
                 node = node.next;
             }
         }
@@ -272,7 +346,7 @@ public class Table {
         long accumlatedProcessTime = 0;
         while (nd != null) {
             nd.getData().addCol(colName, value);
-            accumlatedProcessTime += nd.getData().getProcessTime(value);
+            accumlatedProcessTime += nd.getData().getProcessTime(value) * nd.getData().getCount();
             nd = nd.next;
         }
         return accumlatedProcessTime;
@@ -285,6 +359,8 @@ public class Table {
         rows.clear(); // Clear row list
         size = 0; // Reset the number of rows
         hashIndex.clear(); // Clear the hash index
+        ranges = 0;
+        unindexed = 0;
     }
 
     /**
@@ -306,7 +382,15 @@ public class Table {
      */
     public void refresh(long deadLine) {
         List<Row> toDelRows = rows.refresh(deadLine);
-        size -= (toDelRows.size());
+        for (Row row : toDelRows) {
+            size -= row.getCount();
+            if (row instanceof RangeRow) {
+                ranges--;
+                if (!row.isIndexable()) {
+                    unindexed--;
+                }
+            }
+        }
         refreshIndex(deadLine, toDelRows);
     }
 
@@ -2,10 +2,12 @@ package org.piestream.merger;
 
 import org.piestream.engine.MPIEPair;
 import org.piestream.engine.Window;
+import org.piestream.engine.WindowType;
 import org.piestream.events.PointEvent;
 import org.piestream.parser.MPIEPairSource;
 import org.piestream.piepair.IE;
 import org.piestream.piepair.IEP;
+import org.piestream.piepair.RangeIEP;
 import org.piestream.piepair.TemporalRelations;
 import org.piestream.piepair.eba.EBA;
 import org.slf4j.Logger;
@@ -406,19 +408,21 @@ public class TreeNode {
             // We are sure that: lastFormerIE.getStartTime() <= latterPieStart.getTimestamp()
             if (lastFormerIE.getStartTime() == latterPieStart.getTimestamp()) { // starts, started-by
                 tail = tail.prev;
-            } else if (lastFormerIE.getEndTime() == null) { // lastFormerIE is not completed
+            } else if (!lastFormerIE.isCompleted()) { // lastFormerIE is not completed
                 tail = tail.prev;
             } else if (lastFormerIE.getEndTime() == latterPieStart.getTimestamp()) { // meets
                 tail = tail.prev;
             } else { // followed-by, ideal case
             }
             lastFormerIE = tail.getData();
-            IEP newIEP = new IEP(TemporalRelations.AllenRel.BEFORE, mpp.getFormerPred(), mpp.getLatterPred(),
+            IEP newIEP = befCol.newIEP(TemporalRelations.AllRel.BEFORE, source.getFormerPred(), source.getLatterPred(),
                     lastFormerIE.getStartEvent(), latterPieStart, lastFormerIE.getEndEvent(), null,
                     lastFormerIE.getStartTime(), latterPieStart.getTimestamp(), latterPieStart, latterPieStart.getTimestamp());
             befCol.setTriggerMSG(newIEP);
-            logger.debug("trigger(key): "
-                    + newIEP.getRelation() + "(" + newIEP.getFormerStartTime() + "," + newIEP.getLatterStartTime() + ")");
+            if (logger.isDebugEnabled()) {
+                logger.debug("trigger(key): "
+                        + newIEP.getRelation() + "(" + newIEP.getFormerStartTime() + "," + newIEP.getLatterStartTime() + ")");
+            }
             return tail.prev;
         }
         return null;
@@ -427,14 +431,21 @@ public class TreeNode {
 
     /**
      * Derives previous before temporal relationships (IEPs) starting from the given tail node and the `latterPieStart` event.
+     * In a time window, they are derived as one range of IEPs over the former IEs from the tail node to the head,
+     * see {@link RangeIEP}.
      *
      * @param tail The starting node in the formerIEList from which to derive previous before IEPs.
      * @param latterPieStart The PointEvent marking the start of the latter event for the "before" relation.
      */
     public void derivePreviousBefFromIE(LinkList<IE>.Node tail, PointEvent latterPieStart) {
+        if (tail != null && window.getWindowType() == WindowType.TIME_WINDOW) {
+            befCol.setTriggerRange(new RangeIEP(TemporalRelations.AllRel.BEFORE, source.getFormerPred(), source.getLatterPred(),
+                    true, latterPieStart.getTimestamp(), startTimesFrom(tail), latterPieStart.getTimestamp()));
+            return;
+        }
         while (tail != null) {
             IE lastFormerIE = tail.getData();
-            befCol.setTriggerMSG(new IEP(TemporalRelations.AllenRel.BEFORE, mpp.getFormerPred(), mpp.getLatterPred(),
+            befCol.setTriggerMSG(befCol.newIEP(TemporalRelations.AllRel.BEFORE, source.getFormerPred(), source.getLatterPred(),
                     lastFormerIE.getStartEvent(), latterPieStart, lastFormerIE.getEndEvent(), null,
                     lastFormerIE.getStartTime(), latterPieStart.getTimestamp(), latterPieStart, latterPieStart.getTimestamp()));
             tail = tail.prev;
@@ -456,19 +467,21 @@ public class TreeNode {
             // We are sure that: lastLatterIE.getStartTime() <= formerPieStart.getTimestamp()
             if (lastLatterIE.getStartTime() == formerPieStart.getTimestamp()) { // starts, started-by
                 tail = tail.prev;
-            } else if (lastLatterIE.getEndTime() == null) { // lastLatterIE is not completed
+            } else if (!lastLatterIE.isCompleted()) { // lastLatterIE is not completed
                 tail = tail.prev;
             } else if (lastLatterIE.getEndTime() == formerPieStart.getTimestamp()) { // met-by
                 tail = tail.prev;
             } else { // follow, ideal case
             }
             lastLatterIE = tail.getData();
-            IEP newIEP = new IEP(TemporalRelations.AllenRel.AFTER, mpp.getFormerPred(), mpp.getLatterPred(),
+            IEP newIEP = aftCol.newIEP(TemporalRelations.AllRel.AFTER, source.getFormerPred(), source.getLatterPred(),
                     formerPieStart, lastLatterIE.getStartEvent(), null, lastLatterIE.getEndEvent(),
                     formerPieStart.getTimestamp(), lastLatterIE.getStartTime(), formerPieStart, formerPieStart.getTimestamp());
             aftCol.setTriggerMSG(newIEP);
-            logger.debug("trigger(key): "
-                    + newIEP.getRelation() + "(" + newIEP.getFormerStartTime() + "," + newIEP.getLatterStartTime() + ")");
+            if (logger.isDebugEnabled()) {
+                logger.debug("trigger(key): "
+                        + newIEP.getRelation() + "(" + newIEP.getFormerStartTime() + "," + newIEP.getLatterStartTime() + ")");
+            }
             return tail.prev;
         }
         return null;
@@ -477,20 +490,46 @@ public class TreeNode {
 
     /**
      * Derives previous after temporal relationships (IEPs) starting from the given tail node and the `formerPieStart` event.
+     * In a time window, they are derived as one range of IEPs over the latter IEs from the tail node to the head,
+     * see {@link RangeIEP}.
      *
      * @param tail The starting node in the latterIEList from which to derive previous after IEPs.
      * @param formerPieStart The PointEvent marking the start of the former event for the "after" relation.
      */
     public void derivePreviousAftFromIE(LinkList<IE>.Node tail, PointEvent formerPieStart) {
+        if (tail != null && window.getWindowType() == WindowType.TIME_WINDOW) {
+            aftCol.setTriggerRange(new RangeIEP(TemporalRelations.AllRel.AFTER, source.getFormerPred(), source.getLatterPred(),
+                    false, formerPieStart.getTimestamp(), startTimesFrom(tail), formerPieStart.getTimestamp()));
+            return;
+        }
         while (tail != null) {
             IE lastLatterIE = tail.getData();
-            aftCol.setTriggerMSG(new IEP(TemporalRelations.AllenRel.AFTER, mpp.getFormerPred(), mpp.getLatterPred(),
+            aftCol.setTriggerMSG(aftCol.newIEP(TemporalRelations.AllRel.AFTER, source.getFormerPred(), source.getLatterPred(),
                     formerPieStart, lastLatterIE.getStartEvent(), null, lastLatterIE.getEndEvent(),
                     formerPieStart.getTimestamp(), lastLatterIE.getStartTime(), formerPieStart, formerPieStart.getTimestamp()));
             tail = tail.prev;
         }
     }
 
+    /**
+     * Copies the start times of the IEs from a node of an IE list to the head of the list.
+     *
+     * @param tail The node of the last IE.
+     * @return The start times, from the tail node to the head.
+     */
+    private static long[] startTimesFrom(LinkList<IE>.Node tail) {
+        int count = 0;
+        for (LinkList<IE>.Node node = tail; node != null; node = node.prev) {
+            count++;
+        }
+        long[] startTimes = new long[count];
+        int i = 0;
+        for (LinkList<IE>.Node node = tail; node != null; node = node.prev) {
+            startTimes[i++] = node.getData().getStartTime();
+        }
+        return startTimes;
+    }
+
     /**
      * Calculates the average processing time based on the total processing time and the result count.
      *
@@ -1,7 +1,10 @@
 package org.piestream.parser;
 
+import org.piestream.events.Attribute;
+import org.piestream.events.EventRetention;
 import org.piestream.piepair.TemporalRelations;
 import org.piestream.piepair.eba.EBA;
+import org.piestream.piepair.eba.EBAInterner;
 import org.piestream.piepair.eba.EBAParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +41,9 @@ public class QueryParser {
     // Map to store the mapping of PIEs (Event-Based Algebra) to their string representations (aliases)
     private Map<EBA, String> EBA2String = new HashMap<>();
 
+    // Interner sharing the equal sub-expressions of all PIEs of the query
+    private final EBAInterner interner = new EBAInterner();
+
     // List to store the parsed pattern clause, which defines the event pair pattern
     private List<MPIEPairSource> patternClause = new ArrayList<>(); // List of MPIEPairSource objects for pattern matching
 
@@ -95,6 +101,45 @@ public class QueryParser {
         return this.withinClause;
     }
 
+    /**
+     * Returns the output definitions of the 'RETURN' clause, e.g. "A1.ts" or "MAX(A1.attr)".
+     *
+     * @return The output definitions.
+     */
+    public List<String> getReturnClause() {
+        return this.returnClause;
+    }
+
+    /**
+     * Returns what has to be kept of the events referenced by the window to answer the 'RETURN' clause: the
+     * timestamps, which give the ts and te of the PIEs, and the attributes the clause projects. If the clause refers
+     * to an attribute the schema does not define, the full events are kept.
+     *
+     * @return The retention of the events.
+     */
+    public EventRetention getEventRetention() {
+        Set<Attribute> projected = new LinkedHashSet<>();
+        for (String outputDef : returnClause) {
+            int open = outputDef.indexOf('(');
+            String reference = open < 0 ? outputDef : outputDef.substring(open + 1, outputDef.length() - 1);
+            String name = reference.substring(reference.indexOf('.') + 1);
+            if (name.equalsIgnoreCase("ts") || name.equalsIgnoreCase("te")) {
+                continue; // Start and end of the PIE, given by the timestamps
+            }
+            Attribute attribute = null;
+            for (Attribute candidate : schema.getAttributes()) {
+                if (name.equals(candidate.getName())) {
+                    attribute = candidate;
+                }
+            }
+            if (attribute == null) {
+                return EventRetention.FULL;
+            }
+            projected.add(attribute);
+        }
+        return EventRetention.lean(projected);
+    }
+
     /**
      * Constructs a QueryParser object with the given query string and schema.
      * This constructor tokenizes the query and prepares it for parsing.
@@ -271,7 +316,7 @@ public class QueryParser {
             expressionBuilder.append(consume());
         }
         // Use the EBAParser to parse the constructed expression
-        EBA pred =EBAParser.parse(expressionBuilder.toString(), schema);
+        EBA pred =EBAParser.parse(expressionBuilder.toString(), schema, interner);
         return pred;
     }
 
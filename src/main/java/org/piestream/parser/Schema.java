@@ -1,9 +1,11 @@
 package org.piestream.parser;
 
 import org.piestream.events.Attribute;
+import org.piestream.events.EventLayout;
 import org.piestream.utils.Config;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +24,7 @@ public class Schema {
     private List<Attribute> attributes;  // A list of attributes (fields) in the schema
     private Map<String, Integer> fieldIndexMap;  // A map of field names to their index in the attribute list
     private TimestampUnit timestampUnit = TimestampUnit.S; // Default timestamp unit is SECOND
+    private EventLayout eventLayout;  // Slot layout of the events, built on first use
 
 
     /**
@@ -250,4 +253,38 @@ public class Schema {
     public Map<String, Integer> getFieldIndexMap() {
         return fieldIndexMap;
     }
+
+    /**
+     * Computes a 64-bit fingerprint of the record structure: the attribute names and types in their order and the
+     * native timestamp field. Schemas with the same fingerprint decode the same binary records. The raw data type
+     * and the timestamp unit are not part of the fingerprint.
+     *
+     * @return the FNV-1a hash of the record structure.
+     */
+    public long getFingerprint() {
+        StringBuilder sb = new StringBuilder();
+        for (Attribute attribute : attributes) {
+            sb.append(attribute.getName()).append(':').append(attribute.getType().trim().toLowerCase()).append(';');
+        }
+        sb.append('@').append(hasNativeTimestamp ? timestampField : "");
+
+        long hash = 0xcbf29ce484222325L;  // FNV-1a offset basis
+        for (byte b : sb.toString().getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xFF);
+            hash *= 0x100000001b3L;  // FNV-1a prime
+        }
+        return hash;
+    }
+
+    /**
+     * Gets the slot layout used by events of this schema. The attribute ordinals are taken from the field index map.
+     *
+     * @return the event layout of the schema.
+     */
+    public EventLayout getEventLayout() {
+        if (eventLayout == null) {
+            eventLayout = new EventLayout(attributes, fieldIndexMap, hasNativeTimestamp ? timestampField : null);
+        }
+        return eventLayout;
+    }
 }
@@ -11,15 +11,17 @@ import java.util.Objects;
  * defined by an Event-Based Automaton (EBA). It tracks a start event, an optional end event,
  * and associated timestamps for these events along with the trigger time.
  * This class implements the Expirable interface, allowing it to determine if it has expired based on a deadline.
+ * The timestamps are kept as primitives; whether the end time is set is tracked by {@link #isCompleted()}.
  */
 public class IE implements Expirable {
 
     private final EBA pred;            // The Event-Based Automaton (EBA) predicate associated with this interaction event
     private final PointEvent startEvent;    // The start event of the interaction
     private PointEvent endEvent;      // The end event of the interaction (can be null)
-    private final Long triggerTime;   // The time when the interaction event was triggered
-    private final Long startTime;     // The timestamp of the start event
-    private Long endTime;             // The timestamp of the end event (can be null)
+    private final long triggerTime;   // The time when the interaction event was triggered
+    private final long startTime;     // The timestamp of the start event
+    private long endTime;             // The timestamp of the end event, 0 if not completed
+    private boolean completed;        // Whether the end time is set
 
     /**
      * Constructs an IE (Interaction Event) with the specified parameters.
@@ -33,8 +35,9 @@ public class IE implements Expirable {
         this.pred = pred;
         this.startEvent = Objects.requireNonNull(startEvent, "startEvent cannot be null");  // Ensures startEvent is not null
         this.endEvent = endEvent;
-        this.startTime = Objects.requireNonNull(startEvent.getTimestamp(), "startEvent timestamp cannot be null");  // Ensures the start event has a timestamp
-        this.endTime = (endEvent != null) ? endEvent.getTimestamp() : null;  // Sets endTime to null if endEvent is null
+        this.startTime = startEvent.getTimestamp();
+        this.completed = endEvent != null;
+        this.endTime = completed ? endEvent.getTimestamp() : 0L;  // No end time if endEvent is null
         this.triggerTime = triggerTime;
     }
 
@@ -73,24 +76,32 @@ public class IE implements Expirable {
     /**
      * @return The timestamp of the start event.
      */
-    public Long getStartTime() {
+    public long getStartTime() {
         return startTime;
     }
 
     /**
-     * @return The timestamp of the end event, or null if the end event is not set.
+     * @return The timestamp of the end event, or 0 if the end time is not set.
      */
-    public Long getEndTime() {
+    public long getEndTime() {
         return endTime;
     }
 
+    /**
+     * @return true if the end time is set, false otherwise.
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
     /**
      * Sets the timestamp of the end event.
      *
      * @param endTime The timestamp to be set for the end event.
      */
-    public void setEndTime(Long endTime) {
+    public void setEndTime(long endTime) {
         this.endTime = endTime;
+        this.completed = true;
     }
 
     /**
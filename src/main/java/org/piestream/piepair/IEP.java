@@ -2,6 +2,7 @@ package org.piestream.piepair;
 
 import java.util.Objects;
 
+import org.piestream.engine.RuntimeSet;
 import org.piestream.events.Expirable;
 import org.piestream.events.PointEvent;
 import org.piestream.piepair.eba.EBA;
@@ -10,21 +11,25 @@ import org.piestream.piepair.eba.EBA;
  * The IEP class represents an Interval Event Pair, encapsulating the relationship between two events
  * with their respective start and end points, temporal relations, and trigger information.
  * It implements the Expirable interface to determine if the event pair has expired based on a deadline.
+ *
+ * The times are kept as primitives, and the system trigger time is only taken when the average processing time is
+ * recorded. An IEP that expired from its column is recycled by the column through {@link #init}, so IEPs are
+ * compared by identity.
  */
 public class IEP implements Expirable {
-    private final EBA formerPie;
-    private final EBA latterPie;
-    private final TemporalRelations.AllRel relation; /* Temporal relation */
-    private final PointEvent formerPieStart;         /* Start event of the former PIE */
-    private final PointEvent latterPieStart;         /* Start event of the latter PIE (can be null) */
+    private EBA formerPie;
+    private EBA latterPie;
+    private TemporalRelations.AllRel relation; /* Temporal relation */
+    private PointEvent formerPieStart;         /* Start event of the former PIE */
+    private PointEvent latterPieStart;         /* Start event of the latter PIE (can be null) */
     private PointEvent formerPieEnd;           /* End event of the former PIE */
     private PointEvent latterPieEnd;           /* End event of the latter PIE (can be null) */
-    private Long formerStartTime;              /* Start time of the former event */
-    private Long latterStartTime;              /* Start time of the latter event */
-    private final PointEvent triggerEvent;
-    private final Long triggerTime;
-    private final Long systemTriggerTime;
-    private final CompletedTime compTime;
+    private long formerStartTime;              /* Start time of the former event */
+    private long latterStartTime;              /* Start time of the latter event */
+    private PointEvent triggerEvent;
+    private long triggerTime;
+    private long systemTriggerTime;            /* System time of the trigger in nanoseconds, 0 if not recorded */
+    private CompletedTime compTime;
 
     /**
      * Enum representing the completion time of the IEP.
@@ -57,29 +62,13 @@ public class IEP implements Expirable {
                PointEvent latterPieStart,
                PointEvent formerPieEnd,
                PointEvent latterPieEnd,
-               Long formerStartTime,
-               Long latterStartTime,
+               long formerStartTime,
+               long latterStartTime,
                PointEvent triggerEvent,
-               Long triggerTime) {
+               long triggerTime) {
 
-        /* Validate non-null parameters */
-        this.relation = Objects.requireNonNull(relation, "relation cannot be null");
-        this.formerPieStart = Objects.requireNonNull(formerPieStart, "formerPieStart cannot be null");
-        this.latterPieStart = Objects.requireNonNull(latterPieStart, "latterPieStart cannot be null");
-        this.formerStartTime = Objects.requireNonNull(formerStartTime, "formerStartTime cannot be null");
-        this.latterStartTime = Objects.requireNonNull(latterStartTime, "latterStartTime cannot be null");
-        this.triggerEvent = Objects.requireNonNull(triggerEvent, "triggerEvent cannot be null");
-        this.triggerTime = Objects.requireNonNull(triggerTime, "triggerTime cannot be null");
-
-        /* Allow formerPieEnd and latterPieEnd to be null */
-        this.formerPieEnd = formerPieEnd;
-        this.latterPieEnd = latterPieEnd;
-        this.formerPie = formerPie;
-        this.latterPie = latterPie;
-        this.compTime = determinCompTimeByRel();
-        this.systemTriggerTime = System.nanoTime();
-
-        // this.isCompleted = false;
+        init(relation, formerPie, latterPie, formerPieStart, latterPieStart, formerPieEnd, latterPieEnd,
+                formerStartTime, latterStartTime, triggerEvent, triggerTime);
     }
 
     /**
@@ -104,10 +93,10 @@ public class IEP implements Expirable {
                PointEvent latterPieStart,
                PointEvent formerPieEnd,
                PointEvent latterPieEnd,
-               Long formerStartTime,
-               Long latterStartTime,
+               long formerStartTime,
+               long latterStartTime,
                PointEvent triggerEvent,
-               Long triggerTime) {
+               long triggerTime) {
 
         /* Delegate to the main constructor after converting PreciseRel to AllRel */
         this(TemporalRelations.AllRel.fromPreciseRel(relation), formerPie, latterPie, formerPieStart, latterPieStart,
@@ -136,15 +125,63 @@ public class IEP implements Expirable {
                PointEvent latterPieStart,
                PointEvent formerPieEnd,
                PointEvent latterPieEnd,
-               Long formerStartTime,
-               Long latterStartTime,
+               long formerStartTime,
+               long latterStartTime,
                PointEvent triggerEvent,
-               Long triggerTime) {
+               long triggerTime) {
 
         /* Delegate to the main constructor after converting AllenRel to AllRel */
         this(TemporalRelations.AllRel.fromAllenRel(relation), formerPie, latterPie, formerPieStart, latterPieStart,
                 formerPieEnd, latterPieEnd, formerStartTime, latterStartTime, triggerEvent, triggerTime);
     }
+
+    /**
+     * Initialises this IEP, replacing all of its contents. Used by the constructors and to recycle an IEP that is
+     * no longer referenced by its column.
+     *
+     * @param relation         The temporal relation defining the relationship between events (AllRel)
+     * @param formerPie        The former Event-Based Attribute (EBA)
+     * @param latterPie        The latter Event-Based Attribute (EBA)
+     * @param formerPieStart   The start event of the former PIE
+     * @param latterPieStart   The start event of the latter PIE
+     * @param formerPieEnd     The end event of the former PIE
+     * @param latterPieEnd     The end event of the latter PIE
+     * @param formerStartTime  The start time of the former event
+     * @param latterStartTime  The start time of the latter event
+     * @param triggerEvent     The event that triggers this IEP
+     * @param triggerTime      The time when the trigger event occurs
+     */
+    public void init(TemporalRelations.AllRel relation,
+                     EBA formerPie,
+                     EBA latterPie,
+                     PointEvent formerPieStart,
+                     PointEvent latterPieStart,
+                     PointEvent formerPieEnd,
+                     PointEvent latterPieEnd,
+                     long formerStartTime,
+                     long latterStartTime,
+                     PointEvent triggerEvent,
+                     long triggerTime) {
+
+        /* Validate non-null parameters */
+        this.relation = Objects.requireNonNull(relation, "relation cannot be null");
+        this.formerPieStart = Objects.requireNonNull(formerPieStart, "formerPieStart cannot be null");
+        this.latterPieStart = Objects.requireNonNull(latterPieStart, "latterPieStart cannot be null");
+        this.triggerEvent = Objects.requireNonNull(triggerEvent, "triggerEvent cannot be null");
+        this.formerStartTime = formerStartTime;
+        this.latterStartTime = latterStartTime;
+        this.triggerTime = triggerTime;
+
+        /* Allow formerPieEnd and latterPieEnd to be null */
+        this.formerPieEnd = formerPieEnd;
+        this.latterPieEnd = latterPieEnd;
+        this.formerPie = formerPie;
+        this.latterPie = latterPie;
+        this.compTime = determinCompTimeByRel();
+        this.systemTriggerTime = RuntimeSet.getInstance().isRecordAVGProceTime() ? System.nanoTime() : 0L;
+        // The trigger event is kept by the IEP, keep it out of the event pool
+        triggerEvent.retain();
+    }
     /**
      * Retrieves the former Event-Based Attribute (EBA).
      *
@@ -175,9 +212,9 @@ public class IEP implements Expirable {
     /**
      * Retrieves the system trigger time in nanoseconds.
      *
-     * @return the system trigger time.
+     * @return the system trigger time, 0 if the average processing time is not recorded.
      */
-    public Long getSystemTriggerTime() {
+    public long getSystemTriggerTime() {
         return systemTriggerTime;
     }
 
@@ -249,7 +286,7 @@ public class IEP implements Expirable {
      *
      * @param formerStartTime the former event start time to set.
      */
-    public void setFormerStartTime(Long formerStartTime) {
+    public void setFormerStartTime(long formerStartTime) {
         this.formerStartTime = formerStartTime;
     }
 
@@ -258,7 +295,7 @@ public class IEP implements Expirable {
      *
      * @return the former event start time.
      */
-    public Long getFormerStartTime() {
+    public long getFormerStartTime() {
         return formerStartTime;
     }
 
@@ -267,7 +304,7 @@ public class IEP implements Expirable {
      *
      * @return the latter event start time.
      */
-    public Long getLatterStartTime() {
+    public long getLatterStartTime() {
         return latterStartTime;
     }
 
@@ -276,7 +313,7 @@ public class IEP implements Expirable {
      *
      * @return the former PIE end time, or 0L if not finished.
      */
-    public Long getFormerEndTime() {
+    public long getFormerEndTime() {
         if (formerPieEnd == null) {
             return 0L;
         } else {
@@ -289,7 +326,7 @@ public class IEP implements Expirable {
      *
      * @return the latter PIE end time, or 0L if not finished.
      */
-    public Long getLatterEndTime() {
+    public long getLatterEndTime() {
         if (latterPieEnd == null) {
             return 0L;
         } else {
@@ -302,7 +339,7 @@ public class IEP implements Expirable {
      *
      * @param latterStartTime the latter event start time to set.
      */
-    public void setLatterStartTime(Long latterStartTime) {
+    public void setLatterStartTime(long latterStartTime) {
         this.latterStartTime = latterStartTime;
     }
 
@@ -324,16 +361,6 @@ public class IEP implements Expirable {
                 '}';
     }
 
-    /**
-     * Computes the hash code for this IEP.
-     *
-     * @return the hash code.
-     */
-    @Override
-    public int hashCode() {
-        return Objects.hash(relation, formerPieStart, latterPieStart, formerPieEnd, latterPieEnd, formerStartTime, latterStartTime);
-    }
-
     /**
      * Determines the completion time based on the temporal relation.
      *
@@ -362,40 +389,12 @@ public class IEP implements Expirable {
         }
     }
 
-    /**
-     * Determines if this IEP is equal to another object.
-     *
-     * @param o the object to compare with.
-     * @return true if equal, false otherwise.
-     */
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-
-        IEP iep = (IEP) o;
-
-        /* If hash codes are not equal, objects are not equal */
-        if (this.hashCode() != iep.hashCode()) {
-            return false;
-        }
-
-        /* Compare all relevant fields for equality */
-        return relation == iep.relation &&
-                Objects.equals(formerPieStart, iep.formerPieStart) &&
-                Objects.equals(latterPieStart, iep.latterPieStart) &&
-                Objects.equals(formerPieEnd, iep.formerPieEnd) &&
-                Objects.equals(latterPieEnd, iep.latterPieEnd) &&
-                Objects.equals(formerStartTime, iep.formerStartTime) &&
-                Objects.equals(latterStartTime, iep.latterStartTime);
-    }
-
     /**
      * Retrieves the trigger time of this IEP.
      *
      * @return the trigger time.
      */
-    public Long getTriggerTime() {
+    public long getTriggerTime() {
         return triggerTime;
     }
 
@@ -406,7 +405,7 @@ public class IEP implements Expirable {
      * @return the corresponding start time.
      * @throws IllegalArgumentException if the predicate does not match formerPie or latterPie.
      */
-    public Long getStartTime(EBA pred) {
+    public long getStartTime(EBA pred) {
         if (pred == formerPie) {
             return formerStartTime;
         } else if (pred == latterPie) {
@@ -5,9 +5,11 @@ import org.piestream.events.PointEvent;
 import org.piestream.piepair.dfa.Alphabet;
 import org.piestream.piepair.dfa.DFA;
 import org.piestream.piepair.dfa.Dot2DFA;
+import org.piestream.piepair.dfa.ProductDFA;
 import org.piestream.piepair.eba.EBA;
 import org.piestream.merger.IEPCol;
 
+import java.util.Arrays;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,14 +23,15 @@ public class PIEPair {
     private static final Logger logger = LoggerFactory.getLogger(PIEPair.class);
 
     private final DFA dfa; /* Finite State Automaton used for handling state transitions */
-    private final EventClassifier classifier; /* Event classifier used to classify events into different alphabets */
+    private ProductDFA fused; /* Fused automaton of the MPIEPair stepping this DFA instead, null if not fused */
+    private int component; /* Number of this DFA in the fused automaton */
     private PointEvent formerPieStart; /* Start event of the former PIE */
     private PointEvent formerPieEnd; /* End event of the former PIE */
     private PointEvent latterPieStart; /* Start event of the latter PIE */
     private PointEvent latterPieEnd; /* End event of the latter PIE */
     //    private Alphabet lastAlphabet;
 //    private Alphabet currentAlphabet;
-    public IEPCol Col;
+    private Subscriber[] subscribers = new Subscriber[0]; /* Columns the IEPs of the relation are fanned out to */
     //    public IEPCol befAssistCol;
 //    public IEPCol aftAssistCol;
 //    private  LinkList<IE> formerIEList;
@@ -37,6 +40,7 @@ public class PIEPair {
     private EBA latterPred;
     private TemporalRelations.PreciseRel relation;
     private boolean onTriggering; /* Current state of PIEPair, true indicates it has been triggered but not yet completed */
+    private final int completingTransitions; /* Alphabet transitions of the MPIEPair that complete a trigger, by code */
     private final MPIEPair mpp;
 //    private final boolean isAddToCol;
 //    private final boolean isAddToBefCol;
@@ -55,25 +59,66 @@ public class PIEPair {
         this.formerPred = formerPred;
         this.latterPred = latterPred;
         this.mpp = mpp;
-        this.Col = mpp.getCol();
 
         this.dfa = Dot2DFA.createDFAFromRelation(relation); /* Create DFA based on the given temporal relation */
-        this.classifier = new EventClassifier(formerPred, latterPred); /* Initialize event classifier using former and latter EBA */
         this.onTriggering = false;
+        this.completingTransitions = completingTransitions(relation);
+    }
+
+    /**
+     * Precomputes the alphabet transitions that complete a triggered IEP of a relation, as a bit per
+     * transition code of {@link MPIEPair#transitionOf(Alphabet, Alphabet)}.
+     */
+    private static int completingTransitions(TemporalRelations.PreciseRel relation) {
+        int bits = 0;
+        Alphabet[] lastAlphabets = {null, Alphabet.O, Alphabet.I, Alphabet.Z, Alphabet.E};
+        for (Alphabet last : lastAlphabets) {
+            for (Alphabet current : Alphabet.values()) {
+                if ((relation.triggerWithoutFormerPieEnd() && MPIEPair.isFormerPieEndTransition(last, current)) ||
+                        (relation.triggerWithoutLatterPieEnd() && MPIEPair.isLatterPieEndTransition(last, current)) ||
+                        relation.triggerWithCompleted()) {
+                    bits |= 1 << MPIEPair.transitionOf(last, current);
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Subscribes a column to the relation: every IEP triggered from now on is created in the column and
+     * completed there. The IEPs of a column refer to the EBAs of its query, which may be other instances than the
+     * EBAs this PIEPair was built from when several queries share it.
+     *
+     * @param col        The column of the tree node detecting the relation
+     * @param formerPred The former EBA of the column's query
+     * @param latterPred The latter EBA of the column's query
+     */
+    public void subscribe(IEPCol col, EBA formerPred, EBA latterPred) {
+        if (col == null || formerPred == null || latterPred == null) {
+            throw new IllegalArgumentException("Parameters cannot be null");
+        }
+        subscribers = Arrays.copyOf(subscribers, subscribers.length + 1);
+        subscribers[subscribers.length - 1] = new Subscriber(col, formerPred, latterPred);
     }
 
     private void tiggerEvents(PointEvent event) {
         this.onTriggering = true;
-        IEP newIEP = createIEPonTrigger(event);
-        logger.debug("trigger: "
-                //                +newIEP.getRelation()+"["+newIEP.getFormerPie() +"," +newIEP.getLatterPie()+"] = "
-                + newIEP.getRelation() + "(" + newIEP.getFormerStartTime() + "," + newIEP.getLatterStartTime() + ")");
-        Col.setTriggerMSG(newIEP);
+        for (Subscriber subscriber : subscribers) {
+            IEP newIEP = createIEPonTrigger(event, subscriber);
+            if (logger.isDebugEnabled()) {
+                logger.debug("trigger: "
+                        //                +newIEP.getRelation()+"["+newIEP.getFormerPie() +"," +newIEP.getLatterPie()+"] = "
+                        + newIEP.getRelation() + "(" + newIEP.getFormerStartTime() + "," + newIEP.getLatterStartTime() + ")");
+            }
+            subscriber.col.setTriggerMSG(newIEP);
+        }
     }
 
     private void completeEvents() {
         this.onTriggering = false;
-        updeteColWhenCompleted(Col);
+        for (Subscriber subscriber : subscribers) {
+            updeteColWhenCompleted(subscriber.col, subscriber.formerPred, subscriber.latterPred);
+        }
     }
 
     /**
@@ -89,13 +134,27 @@ public class PIEPair {
      */
     public void stepByPE(PointEvent event, Alphabet newAlphabet, PointEvent formerPieStart,
                          PointEvent formerPieEnd, PointEvent latterPieStart, PointEvent latterPieEnd) {
+        dfa.step(newAlphabet); /* Advance DFA state based on the alphabet */
+        followStep(event, formerPieStart, formerPieEnd, latterPieStart, latterPieEnd);
+    }
+
+    /**
+     * Records the start and end points of the PIEs and triggers or completes the relation after the DFA was
+     * advanced, either by {@link #stepByPE} or as part of the fused automaton of the MPIEPair.
+     *
+     * @param event          The input event (PointEvent)
+     * @param formerPieStart The start event of the former PIE
+     * @param formerPieEnd   The end event of the former PIE
+     * @param latterPieStart The start event of the latter PIE
+     * @param latterPieEnd   The end event of the latter PIE
+     */
+    public void followStep(PointEvent event, PointEvent formerPieStart, PointEvent formerPieEnd,
+                           PointEvent latterPieStart, PointEvent latterPieEnd) {
         this.formerPieStart = formerPieStart;
         this.formerPieEnd = formerPieEnd;
         this.latterPieStart = latterPieStart;
         this.latterPieEnd = latterPieEnd;
 
-        dfa.step(newAlphabet); /* Advance DFA state based on the alphabet */
-
         if (isTrigger()) {
             tiggerEvents(event);
         }
@@ -104,13 +163,34 @@ public class PIEPair {
         }
     }
 
+    /**
+     * Hands the stepping of the DFA over to a fused automaton of the MPIEPair. The state queries of this
+     * PIEPair then read the fused automaton, which the MPIEPair steps instead of calling {@link #stepByPE}.
+     *
+     * @param fused     The fused automaton, built from the DFA of this PIEPair in its current state
+     * @param component The number of the DFA of this PIEPair in the fused automaton
+     */
+    public void fuse(ProductDFA fused, int component) {
+        this.fused = fused;
+        this.component = component;
+    }
+
+    /**
+     * Returns the DFA of the relation, as built for this PIEPair.
+     *
+     * @return The DFA
+     */
+    public DFA getDfa() {
+        return dfa;
+    }
+
     /**
      * Determines if the DFA has reached a final state.
      *
      * @return true if the DFA has reached a final state, false otherwise
      */
     public boolean isFinal() {
-        return dfa.isFinalState();
+        return fused != null ? fused.isFinalState(component) : dfa.isFinalState();
     }
 
     /**
@@ -119,7 +199,7 @@ public class PIEPair {
      * @return true if the DFA has been triggered, false otherwise
      */
     public boolean isTrigger() {
-        return dfa.isTrigger();
+        return fused != null ? fused.isTrigger(component) : dfa.isTrigger();
     }
 
     /**
@@ -128,24 +208,57 @@ public class PIEPair {
      * @return true if the DFA has completed, false otherwise
      */
     public boolean isCompleted() {
-        return this.onTriggering == true && (
-                (relation.triggerWithoutFormerPieEnd() && mpp.isFormerPieEndTransition()) ||
-                        (relation.triggerWithoutLatterPieEnd() && mpp.isLatterPieEndTransition()) ||
-                        relation.triggerWithCompleted()
-        );
+        return this.onTriggering && completesOn(mpp.getTransition());
+    }
+
+    /**
+     * Determines if an alphabet transition of the MPIEPair completes a triggered IEP of the relation.
+     *
+     * @param transition The code of the transition, see {@link MPIEPair#transitionOf(Alphabet, Alphabet)}
+     * @return true if the transition completes a trigger
+     */
+    public boolean completesOn(int transition) {
+        return (completingTransitions & (1 << transition)) != 0;
+    }
+
+    /**
+     * Determines if the relation has been triggered but not yet completed.
+     *
+     * @return true if a trigger waits for its completion
+     */
+    public boolean isOnTriggering() {
+        return onTriggering;
     }
 
     public boolean isQUpdate() {
         return isCompleted() || isTrigger();
     }
 
+    /**
+     * Determines if another step on the last alphabet cannot change the DFA, see {@link DFA#isParked()}.
+     *
+     * @return true if the DFA is parked, false otherwise
+     */
+    public boolean isParked() {
+        return fused != null ? fused.isParked(component) : dfa.isParked();
+    }
+
+    /**
+     * Determines if a step on O cannot change the DFA, see {@link DFA#isParkedOnO()}.
+     *
+     * @return true if the DFA is parked on O, false otherwise
+     */
+    public boolean isParkedOnO() {
+        return fused != null ? fused.isParkedOnO(component) : dfa.isParkedOnO();
+    }
+
     /**
      * Determines if the DFA's state has changed.
      *
      * @return true if the state has changed, false otherwise
      */
     public boolean isStateChanged() {
-        return dfa.isStateChanged();
+        return fused != null ? fused.isStateChanged(component) : dfa.isStateChanged();
     }
 
     /* Getter methods */
@@ -165,19 +278,19 @@ public class PIEPair {
         return latterPieEnd;
     }
 
-    private IEP createIEPonTrigger(PointEvent event) {
-        /* Create a new IEP object */
-        IEP newIep = new IEP(
-                relation,                     /* Temporal relation */
-                formerPred,
-                latterPred,
+    private IEP createIEPonTrigger(PointEvent event, Subscriber subscriber) {
+        /* Create a new IEP object, reusing one that left the column */
+        IEP newIep = subscriber.col.newIEP(
+                TemporalRelations.AllRel.fromPreciseRel(relation), /* Temporal relation */
+                subscriber.formerPred,
+                subscriber.latterPred,
                 formerPieStart,               /* Start event of the former PIE */
                 latterPieStart,               /* Start event of the latter PIE */
                 formerPieEnd,                 /* End event of the former PIE */
                 latterPieEnd,                 /* End event of the latter PIE */
                 formerPieStart.getTimestamp(), /* Start time of the former PIE */
                 latterPieStart.getTimestamp(),  /* Start time of the latter PIE, null if latterPieStart is null */
-                event,
+                mpp.keep(event),               /* The trigger event, as kept by the MPIEPair */
                 event.getTimestamp()
         );
         if (this.relation.triggerWithoutLatterPieEnd()) {
@@ -188,7 +301,7 @@ public class PIEPair {
         return newIep;
     }
 
-    private void updeteColWhenCompleted(IEPCol updateCol) {
+    private void updeteColWhenCompleted(IEPCol updateCol, EBA formerPred, EBA latterPred) {
         /* Determine whether to update FormerPieEnd or LatterPieEnd */
         int n = 0;  /* Tracks the number of IEPs updated */
         PointEvent currentStartEvent;
@@ -243,7 +356,36 @@ public class PIEPair {
         return relation;
     }
 
+    /**
+     * Returns the column of the first subscriber.
+     *
+     * @return The column, null if no column subscribed
+     */
     public IEPCol getCol() {
-        return Col;
+        return subscribers.length == 0 ? null : subscribers[0].col;
+    }
+
+    /**
+     * Returns the number of columns the IEPs of the relation are fanned out to.
+     *
+     * @return The number of subscribers
+     */
+    public int getSubscriberCount() {
+        return subscribers.length;
+    }
+
+    /**
+     * A column subscribed to the relation, with the EBAs of its query.
+     */
+    private static final class Subscriber {
+        final IEPCol col;  // Column the IEPs are created and completed in
+        final EBA formerPred;  // Former EBA of the column's query
+        final EBA latterPred;  // Latter EBA of the column's query
+
+        Subscriber(IEPCol col, EBA formerPred, EBA latterPred) {
+            this.col = col;
+            this.formerPred = formerPred;
+            this.latterPred = latterPred;
+        }
     }
 }
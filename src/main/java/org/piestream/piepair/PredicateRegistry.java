@@ -0,0 +1,271 @@
+package org.piestream.piepair;
+
+import org.piestream.events.EventBlock;
+import org.piestream.events.PointEvent;
+import org.piestream.piepair.dfa.Alphabet;
+import org.piestream.piepair.eba.CompiledEBA;
+import org.piestream.piepair.eba.EBA;
+import org.piestream.piepair.eba.SubexpressionCache;
+import org.piestream.piepair.eba.ThresholdIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates every distinct PIE predicate of a query once per event.
+ *
+ * Each EBA is registered once and gets a bit index; PIEs are told apart by their alias in the query's EBA2String
+ * map, so a PIE used by several MPIEPairs is evaluated only once per event. {@link #evaluate(PointEvent)} runs all
+ * registered EBAs in registration order and stores their results as bits, and {@link #classify(int, int)}
+ * derives the alphabet symbol of a pair from two of its bits.
+ *
+ * A whole {@link EventBlock} can be evaluated up front with {@link #evaluate(EventBlock)}: compiled EBAs scan the
+ * columns of the block into one result bitmask per EBA, and {@link #select(int)} then points the lookups at a row
+ * of the block. Rows the columns cannot decide, and all rows of EBAs that are not compiled, are evaluated event by
+ * event when they are selected, in registration order like {@link #evaluate(PointEvent)} does.
+ *
+ * Distinct EBAs may still have sub-expressions in common, e.g. a_1 = 1 in both a_1 = 1 &amp; x &gt; 3 and
+ * a_1 = 1 &amp; y &lt; 2. The registry evaluates compiled EBAs through copies compiled against a
+ * {@link SubexpressionCache} of the sub-expressions they share, so those are evaluated once per event as well.
+ *
+ * Optionally, EBAs that compare the same attribute with different constants are resolved together by a
+ * {@link ThresholdIndex}: one binary search per attribute sets the bits of all of them.
+ */
+public class PredicateRegistry {
+
+    // Alphabet symbol by (former bit << 1 | latter bit)
+    private static final Alphabet[] SYMBOLS = {Alphabet.O, Alphabet.I, Alphabet.Z, Alphabet.E};
+
+    private final Map<EBA, String> EBA2String;  // Alias of every PIE of the query, may be null
+    private final Map<Object, Integer> indices = new HashMap<>();  // Alias (or the EBA itself) to bit index
+    private final List<EBA> predicates = new ArrayList<>();  // Registered EBAs by bit index
+    private EBA[] evaluated = new EBA[0];  // Registered EBAs as evaluated, compiled against the cache
+    private SubexpressionCache cache;  // Results of the sub-expressions the registered EBAs share, null if none
+    private ThresholdIndex thresholdIndex;  // Resolves comparisons on the same attribute together, null if off
+    private boolean thresholdIndexEnabled;  // Whether a threshold index is built
+    private int[] unindexed = new int[0];  // Bit indices of the EBAs the threshold index does not resolve
+    private long[] bits = new long[1];  // Result of every EBA for the last event evaluated on its own
+    private boolean single = true;  // Whether the lookups read the bits (or the masks of the selected row)
+    private long[][] masks = new long[0][1];  // Result bit of every EBA by row of the evaluated block
+    private long[] dirty = new long[1];  // Rows of the block that are evaluated when they are selected
+    private long[] anyTrue = new long[1];  // Rows of the block for which some EBA is true
+    private EventBlock block;  // The evaluated block, null after a single event was evaluated
+    private int row;  // The selected row
+
+    /**
+     * Creates a registry that identifies the PIEs by their alias.
+     *
+     * @param EBA2String The map from the EBAs of the query to their aliases, may be null to identify EBAs by instance
+     */
+    public PredicateRegistry(Map<EBA, String> EBA2String) {
+        this.EBA2String = EBA2String;
+    }
+
+    /**
+     * Registers an EBA, or looks up the bit index of an EBA that is already registered.
+     *
+     * @param eba The EBA to register
+     * @return The bit index of the EBA
+     */
+    public int register(EBA eba) {
+        if (eba == null) {
+            throw new IllegalArgumentException("EBA cannot be null");
+        }
+        String alias = EBA2String == null ? null : EBA2String.get(eba);
+        Object key = alias != null ? alias : eba;
+        Integer index = indices.get(key);
+        if (index == null) {
+            index = predicates.size();
+            indices.put(key, index);
+            predicates.add(eba);
+            share();
+            masks = Arrays.copyOf(masks, evaluated.length);
+            masks[index] = new long[dirty.length];
+            if (bits.length * 64 < predicates.size()) {
+                bits = new long[bits.length * 2];
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Recompiles the registered EBAs against a cache of the sub-expressions they share.
+     */
+    private void share() {
+        SubexpressionCache shared = new SubexpressionCache(predicates);
+        cache = shared.size() > 0 ? shared : null;
+        evaluated = new EBA[predicates.size()];
+        for (int i = 0; i < evaluated.length; i++) {
+            EBA eba = predicates.get(i);
+            evaluated[i] = cache != null && eba instanceof CompiledEBA
+                    ? CompiledEBA.compile(eba, ((CompiledEBA) eba).getLayout(), cache)
+                    : eba;
+        }
+        buildThresholdIndex();
+    }
+
+    private void buildThresholdIndex() {
+        thresholdIndex = thresholdIndexEnabled ? ThresholdIndex.build(evaluated) : null;
+        unindexed = thresholdIndex == null ? new int[0]
+                : IntStream.range(0, evaluated.length).filter(i -> !thresholdIndex.covers(i)).toArray();
+    }
+
+    /**
+     * Enables or disables the threshold index, which resolves EBAs comparing the same attribute with different
+     * constants by one binary search per attribute. Both give the same results; the index is off by default.
+     *
+     * @param enabled Whether to build a threshold index
+     */
+    public void setThresholdIndex(boolean enabled) {
+        thresholdIndexEnabled = enabled;
+        buildThresholdIndex();
+    }
+
+    /**
+     * @return The number of distinct EBAs registered
+     */
+    public int size() {
+        return predicates.size();
+    }
+
+    /**
+     * Evaluates every registered EBA on the event and keeps the results until the next call.
+     *
+     * @param event The event to evaluate
+     */
+    public void evaluate(PointEvent event) {
+        block = null;
+        evaluateSingle(event);
+    }
+
+    /**
+     * Evaluates every registered EBA on all events of a block and selects no row yet.
+     *
+     * @param block The block to evaluate
+     */
+    public void evaluate(EventBlock block) {
+        int words = (block.capacity() + 63) >>> 6;
+        if (dirty.length < words) {
+            dirty = new long[words];
+            anyTrue = new long[words];
+            for (int i = 0; i < masks.length; i++) {
+                masks[i] = new long[words];
+            }
+        }
+        Arrays.fill(dirty, 0L);
+        this.block = block;
+        this.row = -1;
+        this.single = false;
+        for (int i = 0; i < evaluated.length; i++) {
+            if (evaluated[i] instanceof CompiledEBA) {
+                ((CompiledEBA) evaluated[i]).evaluate(block, masks[i], dirty);
+            } else {
+                Arrays.fill(dirty, -1L);  // Only evaluated event by event
+            }
+        }
+        Arrays.fill(anyTrue, 0L);
+        for (long[] mask : masks) {
+            for (int w = 0; w < words; w++) {
+                anyTrue[w] |= mask[w];
+            }
+        }
+    }
+
+    /**
+     * Selects a row of the last evaluated block for the lookups, evaluating it event by event if the block
+     * evaluation could not decide it.
+     *
+     * @param row The row of the block
+     */
+    public void select(int row) {
+        this.row = row;
+        if ((dirty[row >>> 6] & (1L << row)) != 0) {
+            evaluateSingle(block.getEvent(row));
+        } else {
+            single = false;
+        }
+    }
+
+    /**
+     * Evaluates every registered EBA on an event in registration order and stores the results in the bits.
+     * EBAs resolved by the threshold index cannot fail, so resolving them up front keeps the failure order.
+     */
+    private void evaluateSingle(PointEvent event) {
+        single = true;
+        long[] words = bits;
+        for (int w = 0; w < words.length; w++) {
+            words[w] = 0L;
+        }
+        boolean indexed = thresholdIndex != null && thresholdIndex.evaluate(event, words);
+        if (cache != null) {
+            cache.begin(event);
+        }
+        try {
+            if (indexed) {
+                for (int i : unindexed) {
+                    if (evaluated[i].evaluate(event)) {
+                        words[i >>> 6] |= 1L << i;
+                    }
+                }
+            } else {
+                for (int i = 0; i < evaluated.length; i++) {
+                    if (evaluated[i].evaluate(event)) {
+                        words[i >>> 6] |= 1L << i;
+                    }
+                }
+            }
+        } finally {
+            if (cache != null) {
+                cache.end();
+            }
+        }
+    }
+
+    /**
+     * @param index The bit index of an EBA
+     * @return The result of the EBA for the last evaluated event or the selected row
+     */
+    public boolean get(int index) {
+        return bit(index) != 0;
+    }
+
+    /**
+     * Checks if every registered EBA is false for the last evaluated event or the selected row, i.e. if the event
+     * classifies as O for every pair.
+     *
+     * @return true if no EBA is true
+     */
+    public boolean isAllFalse() {
+        if (!single) {
+            return (anyTrue[row >>> 6] & (1L << row)) == 0;
+        }
+        for (long word : bits) {
+            if (word != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Classifies the last evaluated event or the selected row for a pair of EBAs, like
+     * {@link EventClassifier#classify(PointEvent)}.
+     *
+     * @param formerIndex The bit index of the former EBA
+     * @param latterIndex The bit index of the latter EBA
+     * @return The alphabet symbol (E, O, Z, I) of the event
+     */
+    public Alphabet classify(int formerIndex, int latterIndex) {
+        return SYMBOLS[bit(formerIndex) << 1 | bit(latterIndex)];
+    }
+
+    private int bit(int index) {
+        return single
+                ? (int) (bits[index >>> 6] >>> index) & 1
+                : (int) (masks[index][row >>> 6] >>> row) & 1;
+    }
+}
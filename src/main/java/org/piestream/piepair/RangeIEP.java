@@ -0,0 +1,118 @@
+package org.piestream.piepair;
+
+import org.piestream.engine.RuntimeSet;
+import org.piestream.piepair.eba.EBA;
+
+/**
+ * A RangeIEP stands for the IEPs a new PIE forms with every IE of a segment of an IE list at once, e.g. all the
+ * former IEs that precede the start of a new latter PIE in a before relation. The IEPs share the relation, the
+ * start time of the new PIE and the trigger time, and only differ in the start time of the IE, so the range keeps
+ * one start time per IE instead of one IEP per IE. The start times are copied from the IE list when the range is
+ * created, as the IEs may expire from the list before the range does.
+ */
+public class RangeIEP {
+    private final TemporalRelations.AllRel relation; /* Temporal relation of every IEP of the range */
+    private final EBA formerPie;
+    private final EBA latterPie;
+    private final boolean formerRanges;        /* Whether the IEs are former PIEs, otherwise they are latter PIEs */
+    private final long fixedStartTime;         /* Start time of the PIE shared by every IEP of the range */
+    private final long[] rangeStartTimes;      /* Start time of the IE of every IEP of the range, in IE list order from the tail */
+    private final long triggerTime;
+    private final long systemTriggerTime;      /* System time of the trigger in nanoseconds, 0 if not recorded */
+
+    /**
+     * Constructs a range of IEPs.
+     *
+     * @param relation         The temporal relation of every IEP of the range
+     * @param formerPie        The former Event-Based Attribute (EBA)
+     * @param latterPie        The latter Event-Based Attribute (EBA)
+     * @param formerRanges     Whether the IEs are former PIEs, otherwise they are latter PIEs
+     * @param fixedStartTime   The start time of the PIE shared by every IEP of the range
+     * @param rangeStartTimes  The start time of the IE of every IEP of the range, not empty
+     * @param triggerTime      The time when the trigger event occurs
+     */
+    public RangeIEP(TemporalRelations.AllRel relation, EBA formerPie, EBA latterPie, boolean formerRanges,
+                    long fixedStartTime, long[] rangeStartTimes, long triggerTime) {
+        if (rangeStartTimes == null || rangeStartTimes.length == 0) {
+            throw new IllegalArgumentException("A range of IEPs cannot be empty");
+        }
+        this.relation = relation;
+        this.formerPie = formerPie;
+        this.latterPie = latterPie;
+        this.formerRanges = formerRanges;
+        this.fixedStartTime = fixedStartTime;
+        this.rangeStartTimes = rangeStartTimes;
+        this.triggerTime = triggerTime;
+        this.systemTriggerTime = RuntimeSet.getInstance().isRecordAVGProceTime() ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * @return the temporal relation of every IEP of the range.
+     */
+    public TemporalRelations.AllRel getRelation() {
+        return relation;
+    }
+
+    /**
+     * @return the former EBA.
+     */
+    public EBA getFormerPie() {
+        return formerPie;
+    }
+
+    /**
+     * @return the latter EBA.
+     */
+    public EBA getLatterPie() {
+        return latterPie;
+    }
+
+    /**
+     * @return the EBA of the IEs, whose start time differs between the IEPs of the range.
+     */
+    public EBA getRangePie() {
+        return formerRanges ? formerPie : latterPie;
+    }
+
+    /**
+     * @return the EBA of the PIE shared by every IEP of the range.
+     */
+    public EBA getFixedPie() {
+        return formerRanges ? latterPie : formerPie;
+    }
+
+    /**
+     * @return the start time of the PIE shared by every IEP of the range.
+     */
+    public long getFixedStartTime() {
+        return fixedStartTime;
+    }
+
+    /**
+     * @return the start time of the IE of every IEP of the range; the array is shared and must not be modified.
+     */
+    public long[] getRangeStartTimes() {
+        return rangeStartTimes;
+    }
+
+    /**
+     * @return the number of IEPs of the range.
+     */
+    public int getCount() {
+        return rangeStartTimes.length;
+    }
+
+    /**
+     * @return the time when the trigger event occurs.
+     */
+    public long getTriggerTime() {
+        return triggerTime;
+    }
+
+    /**
+     * @return the system trigger time, 0 if the average processing time is not recorded.
+     */
+    public long getSystemTriggerTime() {
+        return systemTriggerTime;
+    }
+}
@@ -149,6 +149,8 @@ public class TemporalRelations {
         FOLLOWED_BY(PreciseRel.FOLLOWED_BY),
         FOLLOW(PreciseRel.FOLLOW);
 
+        private static final AllRel[] VALUES = values();  // Shared copy of the values, values() clones the array
+
         private final AllenRel allenRel;
         private final PreciseRel preciseRel;
 
@@ -227,7 +229,7 @@ public class TemporalRelations {
          * @throws IllegalArgumentException if no matching AllRel is found
          */
         public static AllRel fromPreciseRel(PreciseRel preciseRel) {
-            for (AllRel rel : AllRel.values()) {
+            for (AllRel rel : VALUES) {
                 if (rel.preciseRel == preciseRel) {
                     return rel;
                 }
@@ -243,7 +245,7 @@ public class TemporalRelations {
          * @throws IllegalArgumentException if no matching AllRel is found
          */
         public static AllRel fromAllenRel(AllenRel allenRel) {
-            for (AllRel rel : AllRel.values()) {
+            for (AllRel rel : VALUES) {
                 if (rel.allenRel == allenRel) {
                     return rel;
                 }
@@ -261,7 +263,7 @@ public class TemporalRelations {
         public static AllRel fromString(String relStr) {
             // Normalize the string (convert to uppercase and replace spaces with underscores)
             String normalizedRelStr = relStr.toUpperCase().replace(" ", "").replace("-", "_");
-            for (AllRel rel : AllRel.values()) {
+            for (AllRel rel : VALUES) {
                 if (rel.name().equals(normalizedRelStr)) {
                     return rel;
                 }
@@ -2,32 +2,42 @@ package org.piestream.piepair.dfa;
 
 import org.piestream.piepair.TemporalRelations;
 import org.jgrapht.Graph;
+import org.jgrapht.graph.AsUnmodifiableGraph;
 import org.jgrapht.graph.DefaultDirectedGraph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Represents a Deterministic Finite Automaton (DFA) used for processing temporal relations.
  * The DFA transitions between states based on input alphabets and evaluates specific temporal relations.
  * The DFA maintains a directed graph of states and edges where the edges are labeled with transition values.
+ *
+ * Once its transition map is set, the DFA is compiled into a {@link DFATable}, so a step and the trigger and final
+ * flags are array reads. The DFAs created by {@link Dot2DFA#createDFAFromRelation} share the graph, node map and
+ * table of their relation, which are read-only then, and only keep their own state.
  */
 public class DFA {
 
     private static final Logger logger = LoggerFactory.getLogger(DFA.class); // Logger for logging DFA operations
+    static final int ALPHABET_SIZE = DFATable.ALPHABET_SIZE; // Transitions per state
     private Graph<Node, LabeledEdge> graph; // Graph representing the DFA with nodes and labeled edges
     private Map<String, Node> nodeMap; // Map of node identifiers to Node objects
-    private Node currentState; // The current state of the DFA
-    private Node lastState; // The previous state of the DFA
+    private Node currentState; // The current state, until the DFA is compiled
+    private Node lastState; // The previous state, until the DFA is compiled
     private Node initState; // The initial state of the DFA
     private TemporalRelations.PreciseRel relation; // The temporal relation associated with the DFA
     private boolean isStateChanged; // Flag to check if the state has changed
     private Alphabet lastAlphabet; // The last alphabet processed by the DFA
     private Alphabet currentAlphabet; // The current alphabet being processed
     private Map<Node, Map<Alphabet, Node>> transMap; // Map of transitions, keyed by node and alphabet
+    DFATable table; // Compiled transitions, null until the transition map is set
+    int current = -1; // Number of the current state once compiled, -1 if not set
+    private int last = -1; // Number of the previous state once compiled, -1 if not set
+    private int transition = -1; // Last transition taken, -1 before the first step
 
     /**
      * Constructs a DFA without an initial temporal relation.
@@ -47,20 +57,61 @@ public class DFA {
      * @param relation The temporal relation for the DFA (e.g., "FINISHES", "EQUALS").
      */
     public DFA(TemporalRelations.PreciseRel relation) {
-        this();
-        this.relation = relation;
-        DFA dfa = Dot2DFA.createDFAFromRelation(relation); // Create DFA from relation
-        this.graph = dfa.getGraph();
-        this.nodeMap = dfa.getNodeMap();
-        this.currentState = dfa.getCurrentState();
-        this.lastState = dfa.getLastState();
-        this.initState = dfa.getInitState();
+        this(Dot2DFA.createDFAFromRelation(relation)); // Create DFA from relation
+    }
+
+    /**
+     * Constructs a DFA sharing the automaton of a compiled DFA, in the state of that DFA.
+     *
+     * @param shared The compiled DFA
+     */
+    private DFA(DFA shared) {
+        this.graph = shared.graph;
+        this.nodeMap = shared.nodeMap;
+        this.initState = shared.initState;
+        this.relation = shared.relation;
+        this.isStateChanged = shared.isStateChanged;
+        this.transMap = shared.transMap;
+        this.table = shared.table;
+        this.current = shared.current;
+        this.last = shared.last;
+        this.transition = shared.transition;
+    }
+
+    /**
+     * Freezes a compiled DFA, so DFAs sharing its automaton can be created by {@link #copy()}.
+     * The graph, node map and transition map cannot be modified afterwards.
+     */
+    void freeze() {
+        this.graph = new AsUnmodifiableGraph<>(graph);
+        this.nodeMap = Collections.unmodifiableMap(nodeMap);
+        this.transMap = Collections.unmodifiableMap(transMap);
+    }
+
+    /**
+     * @return A DFA in the same state, sharing the graph, node map and table of this DFA
+     */
+    DFA copy() {
+        return new DFA(this);
     }
 
     // Getter and Setter methods for various DFA properties
 
     public void setTransMap(Map<Node, Map<Alphabet, Node>> transMap) {
         this.transMap = transMap; // Set the transition map for state transitions
+        compile();
+    }
+
+    /**
+     * Compiles the transition map into a table, keeping the current and last state.
+     */
+    private void compile() {
+        Node currentNode = getCurrentState();
+        Node lastNode = getLastState();
+        table = DFATable.compile(graph, transMap, initState, currentNode, lastNode);
+        current = table.numberOf(currentNode);
+        last = table.numberOf(lastNode);
+        transition = -1;
     }
 
     public Graph<Node, LabeledEdge> getGraph() {
@@ -72,19 +123,29 @@ public class DFA {
     }
 
     public Node getCurrentState() {
-        return currentState; // Return the current state
+        return table == null ? currentState : table.stateOf(current); // Return the current state
     }
 
     public void setCurrentState(Node currentState) {
-        this.currentState = currentState; // Set the current state
+        if (table == null) {
+            this.currentState = currentState; // Set the current state
+        } else {
+            this.current = table.numberOf(currentState);
+            this.transition = -1;
+        }
     }
 
     public Node getLastState() {
-        return lastState; // Return the last state
+        return table == null ? lastState : table.stateOf(last); // Return the last state
     }
 
     public void setLastState(Node lastState) {
-        this.lastState = lastState; // Set the last state
+        if (table == null) {
+            this.lastState = lastState; // Set the last state
+        } else {
+            this.last = table.numberOf(lastState);
+            this.transition = -1;
+        }
     }
 
     public Node getInitState() {
@@ -93,6 +154,9 @@ public class DFA {
 
     public void setInitState(Node initState) {
         this.initState = initState; // Set the initial state
+        if (table != null) {
+            compile();
+        }
     }
 
     public TemporalRelations.PreciseRel getRelation() {
@@ -138,7 +202,11 @@ public class DFA {
      * @return true if the current state is final, false otherwise.
      */
     public boolean isFinalState() {
-        return currentState != null && currentState.isFinalState(); // Check if the current state is final
+        if (transition >= 0) {
+            return DFATable.bit(table.finalBits, transition);
+        }
+        Node state = getCurrentState();
+        return state != null && state.isFinalState(); // Check if the current state is final
     }
 
     /**
@@ -148,7 +216,12 @@ public class DFA {
      * @return true if the DFA is in a trigger state, false otherwise.
      */
     public boolean isTrigger() {
-        return (lastState != null && !lastState.isFinalState() && currentState != null && currentState.isFinalState());
+        if (transition >= 0) {
+            return DFATable.bit(table.triggerBits, transition);
+        }
+        Node state = getCurrentState();
+        Node previous = getLastState();
+        return previous != null && !previous.isFinalState() && state != null && state.isFinalState();
     }
 
     /**
@@ -162,64 +235,56 @@ public class DFA {
                 relation == TemporalRelations.PreciseRel.FINISHED_BY ||
                 relation == TemporalRelations.PreciseRel.EQUALS) {
             return isTrigger();
+        } else if (transition >= 0) {
+            return DFATable.bit(table.leaveFinalBits, transition);
         } else {
-            return (lastState != null && lastState.isFinalState() && currentState != null && !currentState.isFinalState());
+            Node state = getCurrentState();
+            Node previous = getLastState();
+            return previous != null && previous.isFinalState() && state != null && !state.isFinalState();
         }
     }
 
     /**
-     * Performs a transition in the DFA based on the provided alphabet.
-     * This method updates the current state of the DFA based on the transition map and checks if the state has changed.
+     * Checks if the DFA is parked: the last step stayed in a state that loops to itself on the alphabet of that step.
+     * Another step on the same alphabet then leaves the DFA exactly as it is, including its trigger and state change
+     * flags.
      *
-     * @param alphabet The input alphabet triggering the state transition.
-     * @return The new current state after the transition.
+     * @return true if a step on the last alphabet cannot change the DFA, false otherwise.
      */
-    public Node step(Alphabet alphabet) {
-        if (currentState == null) {
-            return null; // Return null if the current state is not set
-        }
-
-        // If current state is initState, first try to transition based on "X" transition
-        if (currentState.equals(initState)) {
-            Set<LabeledEdge> initOutgoingEdges = graph.outgoingEdgesOf(initState);
-            for (LabeledEdge edge : initOutgoingEdges) {
-                if (edge.getTrans().equals("X")) {
-                    lastState = currentState;
-                    currentState = graph.getEdgeTarget(edge);
-                    checkAndUpdateStateChange(); // Check and update state change
-                }
-            }
-            // Proceed with normal step operation
-            Node nextState = findNextState(currentState, alphabet);
-            lastState = currentState;
-            currentState = nextState;
-            return currentState;
-
-        } else {
-            // Proceed with normal step operation
-            Node nextState = findNextState(currentState, alphabet);
-            lastState = currentState;
-            currentState = nextState;
-            checkAndUpdateStateChange(); // Check and update state change
-            return currentState;
-        }
+    public boolean isParked() {
+        return transition >= 0 && DFATable.bit(table.parkedBits, transition);
     }
 
     /**
-     * Finds the next state in the DFA based on the current state and the input alphabet.
+     * Checks if the DFA is parked on O: it is parked, see {@link #isParked()}, and its last step was on O.
      *
-     * @param currentState The current state of the DFA.
-     * @param alphabet The input alphabet triggering the transition.
-     * @return The next state after the transition.
+     * @return true if a step on O cannot change the DFA, false otherwise.
      */
-    private Node findNextState(Node currentState, Alphabet alphabet) {
-        return transMap.get(currentState).get(alphabet); // Find the next state using the transition map
+    public boolean isParkedOnO() {
+        return isParked() && transition % ALPHABET_SIZE == Alphabet.O.ordinal();
     }
 
     /**
-     * Checks if the state has changed and updates the state change flag.
+     * Performs a transition in the DFA based on the provided alphabet.
+     * This method looks up the next state in the transition table and updates the state change flag.
+     * In the initial state, the "X" transition is taken first, as part of the same step.
+     *
+     * @param alphabet The input alphabet triggering the state transition.
+     * @return The new current state after the transition.
      */
-    private void checkAndUpdateStateChange() {
-        isStateChanged = !currentState.equals(lastState); // Update the state change flag
+    public Node step(Alphabet alphabet) {
+        if (current < 0) {
+            return null; // Return null if the current state is not set
+        }
+        int t = current * ALPHABET_SIZE + alphabet.ordinal();
+        int target = table.next[t];
+        if (target < 0) {
+            throw new IllegalStateException("No transition from state " + table.stateOf(current) + " on " + alphabet);
+        }
+        last = table.previous[t];
+        current = target;
+        transition = t;
+        isStateChanged = DFATable.bit(table.changedBits, t);
+        return table.stateOf(target);
     }
 }
@@ -0,0 +1,167 @@
+package org.piestream.piepair.dfa;
+
+import org.jgrapht.Graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compiled transition table of a DFA: states are numbered, and transition state * 4 + alphabet holds the next
+ * state, so a step is a single array read. The initial state's "X" transition is folded into the row of the initial
+ * state. Whether the DFA is final, triggered, changed its state or is parked after a transition is precomputed per
+ * transition in bit arrays; a parked DFA is not changed by another step on the same alphabet.
+ *
+ * A table is immutable once compiled, so the DFAs of a relation share one table and only keep their own state.
+ */
+final class DFATable {
+
+    static final int ALPHABET_SIZE = Alphabet.values().length;  // Transitions per state
+
+    private final Node[] states;  // States by number
+    private final Map<Node, Integer> numbers;  // Number of every state
+    final int[] next;  // Next state by transition, -1 if undefined
+    final int[] previous;  // Previous state after a transition, the X target for the initial state
+    final long[] finalBits;  // Transitions into a final state
+    final long[] triggerBits;  // Transitions from a non-final into a final state
+    final long[] leaveFinalBits;  // Transitions from a final into a non-final state
+    final long[] changedBits;  // Transitions that change the state
+    final long[] parkedBits;  // Transitions after which another step on the same alphabet cannot change the DFA
+
+    private DFATable(List<Node> states, Map<Node, Integer> numbers) {
+        this.states = states.toArray(new Node[0]);
+        this.numbers = Collections.unmodifiableMap(numbers);
+        int size = this.states.length * ALPHABET_SIZE;
+        this.next = new int[size];
+        this.previous = new int[size];
+        this.finalBits = new long[(size + 63) >>> 6];
+        this.triggerBits = new long[finalBits.length];
+        this.leaveFinalBits = new long[finalBits.length];
+        this.changedBits = new long[finalBits.length];
+        this.parkedBits = new long[finalBits.length];
+    }
+
+    /**
+     * Compiles the transition map of a DFA.
+     *
+     * @param graph the graph of the DFA, holding the "X" transitions of the initial state
+     * @param transMap the transitions by state and alphabet
+     * @param init the initial state, may be null
+     * @param others further states to number, e.g. the current state, may contain null
+     * @return the table
+     */
+    static DFATable compile(Graph<Node, LabeledEdge> graph, Map<Node, Map<Alphabet, Node>> transMap, Node init,
+                            Node... others) {
+        List<Node> states = new ArrayList<>();
+        Map<Node, Integer> numbers = new HashMap<>();
+        for (Map.Entry<Node, Map<Alphabet, Node>> entry : transMap.entrySet()) {
+            number(entry.getKey(), states, numbers);
+            for (Node target : entry.getValue().values()) {
+                number(target, states, numbers);
+            }
+        }
+        int initNumber = number(init, states, numbers);
+        for (Node other : others) {
+            number(other, states, numbers);
+        }
+        if (initNumber >= 0) {
+            for (LabeledEdge edge : graph.outgoingEdgesOf(init)) {
+                number(graph.getEdgeTarget(edge), states, numbers);
+            }
+        }
+
+        DFATable table = new DFATable(states, numbers);
+        for (int state = 0; state < states.size(); state++) {
+            int from = state; // State the transition is looked up from
+            int before = state; // State before the looked up transition
+            boolean changed = false; // Change flag of the "X" transition, kept by the step of the initial state
+            if (state == initNumber) {
+                for (LabeledEdge edge : graph.outgoingEdgesOf(init)) {
+                    if (edge.getTrans().equals("X")) {
+                        before = from;
+                        from = numbers.get(graph.getEdgeTarget(edge));
+                        changed = from != before;
+                    }
+                }
+                before = from;
+            }
+            for (Alphabet alphabet : Alphabet.values()) {
+                int t = state * ALPHABET_SIZE + alphabet.ordinal();
+                int target = table.lookup(transMap, from, alphabet);
+                table.next[t] = target;
+                table.previous[t] = before;
+                if (target < 0) {
+                    continue;
+                }
+                boolean beforeFinal = table.states[before].isFinalState();
+                boolean targetFinal = table.states[target].isFinalState();
+                setBit(table.finalBits, t, targetFinal);
+                setBit(table.triggerBits, t, !beforeFinal && targetFinal);
+                setBit(table.leaveFinalBits, t, beforeFinal && !targetFinal);
+                setBit(table.changedBits, t, state == initNumber ? changed : target != before);
+                setBit(table.parkedBits, t, state != initNumber && target == before
+                        && table.lookup(transMap, target, alphabet) == target);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Looks up the next state in the transition map.
+     *
+     * @return the number of the next state, -1 if there is no transition
+     */
+    private int lookup(Map<Node, Map<Alphabet, Node>> transMap, int state, Alphabet alphabet) {
+        Map<Alphabet, Node> targets = transMap.get(states[state]);
+        Node target = targets == null ? null : targets.get(alphabet);
+        return target == null ? -1 : numbers.get(target);
+    }
+
+    private static int number(Node node, List<Node> states, Map<Node, Integer> numbers) {
+        if (node == null) {
+            return -1;
+        }
+        Integer number = numbers.get(node);
+        if (number == null) {
+            number = states.size();
+            states.add(node);
+            numbers.put(node, number);
+        }
+        return number;
+    }
+
+    /**
+     * @param node a state, may be null
+     * @return the number of the state, -1 for null
+     */
+    int numberOf(Node node) {
+        if (node == null) {
+            return -1;
+        }
+        Integer number = numbers.get(node);
+        if (number == null) {
+            throw new IllegalArgumentException("Unknown state of the DFA: " + node);
+        }
+        return number;
+    }
+
+    /**
+     * @param number the number of a state, -1 for none
+     * @return the state, null for -1
+     */
+    Node stateOf(int number) {
+        return number < 0 ? null : states[number];
+    }
+
+    static boolean bit(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void setBit(long[] bits, int index, boolean value) {
+        if (value) {
+            bits[index >>> 6] |= 1L << index;
+        }
+    }
+}
@@ -6,7 +6,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class provides functionality for parsing DOT files representing Deterministic Finite Automata (DFA),
@@ -19,6 +21,9 @@ public class Dot2DFA {
     // Logger to log errors and informational messages
     private static final Logger logger = LoggerFactory.getLogger(Dot2DFA.class);
 
+    // Compiled DFA of every relation loaded so far, shared by the DFAs created from it
+    private static final Map<TemporalRelations.PreciseRel, DFA> COMPILED = new ConcurrentHashMap<>();
+
     /**
      * Parses a DOT file to construct a DFA object.
      *
@@ -26,93 +31,105 @@ public class Dot2DFA {
      * @return a DFA object representing the parsed DOT file, or null if an error occurred.
      */
     public static DFA parseDotFile(String dotFilePath) {
-        DFA dfa = new DFA();
         File dotFile = new File(dotFilePath);
         String relationName = dotFile.getName().replace(".dot", "").toUpperCase();
+        TemporalRelations.PreciseRel relation;
 
         try {
             // Attempt to parse the relation name from the DOT file name
-            TemporalRelations.PreciseRel relation = TemporalRelations.PreciseRel.valueOf(relationName);
-            dfa.setRelation(relation);
+            relation = TemporalRelations.PreciseRel.valueOf(relationName);
         } catch (IllegalArgumentException e) {
             // Handle invalid relation name in the DOT file name
             throw new IllegalArgumentException("Invalid relation name in the DOT file name.");
         }
 
         try (BufferedReader reader = new BufferedReader(new FileReader(dotFilePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
+            return parseDot(reader, relation);
+        } catch (IOException e) {
+            // Log and return null in case of errors during file reading or parsing
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-                // Skip lines that are part of DOT syntax but don't represent transitions or states
-                if (line.startsWith("digraph") || line.startsWith("{") || line.startsWith("}")) {
-                    continue;
-                }
+    /**
+     * Parses the DOT definition of a DFA.
+     *
+     * @param reader the reader of the DOT definition.
+     * @param relation the temporal relation of the DFA.
+     * @return a DFA object representing the DOT definition.
+     * @throws IOException if the definition cannot be read.
+     */
+    public static DFA parseDot(BufferedReader reader, TemporalRelations.PreciseRel relation) throws IOException {
+        DFA dfa = new DFA();
+        dfa.setRelation(relation);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+
+            // Skip lines that are part of DOT syntax but don't represent transitions or states
+            if (line.startsWith("digraph") || line.startsWith("{") || line.startsWith("}")) {
+                continue;
+            }
 
-                // Parse transition lines (fromNode -> toNode [label="transition"])
-                if (line.contains("->")) {
-                    String[] parts = line.split("->");
-                    String fromNodeName = parts[0].trim();
-                    String toNodeName = parts[1].split("\\[")[0].trim();
-                    String trans = parts[1].contains("label=")
-                            ? parts[1].split("label=")[1].split("]")[0].replaceAll("\"", "").trim()
-                            : "";
-
-                    // Normalize transition values (if necessary)
-                    if (!trans.equals("O") && !trans.equals("I") && !trans.equals("Z") && !trans.equals("E")) {
-                        trans = "X";
-                    }
-
-                    // Create or retrieve nodes
-                    Node fromNode = dfa.getNodeMap().getOrDefault(fromNodeName, new Node(fromNodeName, false));
-                    Node toNode = dfa.getNodeMap().getOrDefault(toNodeName, new Node(toNodeName, false));
-
-                    // Add nodes and edge to the DFA graph
-                    dfa.getGraph().addVertex(fromNode);
-                    dfa.getGraph().addVertex(toNode);
-                    dfa.getGraph().addEdge(fromNode, toNode, new LabeledEdge(trans));
-
-                    // Update node map
-                    dfa.getNodeMap().put(fromNodeName, fromNode);
-                    dfa.getNodeMap().put(toNodeName, toNode);
+            // Parse transition lines (fromNode -> toNode [label="transition"])
+            if (line.contains("->")) {
+                String[] parts = line.split("->");
+                String fromNodeName = parts[0].trim();
+                String toNodeName = parts[1].split("\\[")[0].trim();
+                String trans = parts[1].contains("label=")
+                        ? parts[1].split("label=")[1].split("]")[0].replaceAll("\"", "").trim()
+                        : "";
+
+                // Normalize transition values (if necessary)
+                if (!trans.equals("O") && !trans.equals("I") && !trans.equals("Z") && !trans.equals("E")) {
+                    trans = "X";
                 }
-                // Parse node definition lines (node [shape=doublecircle, initial])
-                else if (line.contains("[") && !line.contains("->")) {
-                    String nodeName = line.split("\\[")[0].trim();
-                    boolean isFinalState = line.contains("shape=doublecircle");
-                    Node node = dfa.getNodeMap().getOrDefault(nodeName, new Node(nodeName, isFinalState));
-
-                    if (isFinalState) {
-                        node.setFinalState(true);
-                    }
-
-                    dfa.getNodeMap().put(nodeName, node);
-                    dfa.getGraph().addVertex(node);
-
-                    // If the node is marked as initial, set it as the starting state
-                    if (line.contains("initial")) {
-                        dfa.setInitState(node);
-                        dfa.setCurrentState(node);
-                        dfa.setLastState(node);
-                    }
-                }
-            }
 
-            // Ensure that an initial state was found
-            if (dfa.getInitState() == null) {
-                throw new IllegalArgumentException("Initial state not found in the DOT file.");
+                // Create or retrieve nodes
+                Node fromNode = dfa.getNodeMap().getOrDefault(fromNodeName, new Node(fromNodeName, false));
+                Node toNode = dfa.getNodeMap().getOrDefault(toNodeName, new Node(toNodeName, false));
+
+                // Add nodes and edge to the DFA graph
+                dfa.getGraph().addVertex(fromNode);
+                dfa.getGraph().addVertex(toNode);
+                dfa.getGraph().addEdge(fromNode, toNode, new LabeledEdge(trans));
+
+                // Update node map
+                dfa.getNodeMap().put(fromNodeName, fromNode);
+                dfa.getNodeMap().put(toNodeName, toNode);
             }
+            // Parse node definition lines (node [shape=doublecircle, initial])
+            else if (line.contains("[") && !line.contains("->")) {
+                String nodeName = line.split("\\[")[0].trim();
+                boolean isFinalState = line.contains("shape=doublecircle");
+                Node node = dfa.getNodeMap().getOrDefault(nodeName, new Node(nodeName, isFinalState));
+
+                if (isFinalState) {
+                    node.setFinalState(true);
+                }
 
-            // Convert the graph to a transition map
-            dfa.setTransMap(graph2TransMap(dfa.getGraph()));
+                dfa.getNodeMap().put(nodeName, node);
+                dfa.getGraph().addVertex(node);
 
-            return dfa;
+                // If the node is marked as initial, set it as the starting state
+                if (line.contains("initial")) {
+                    dfa.setInitState(node);
+                    dfa.setCurrentState(node);
+                    dfa.setLastState(node);
+                }
+            }
+        }
 
-        } catch (IOException e) {
-            // Log and return null in case of errors during file reading or parsing
-            e.printStackTrace();
-            return null;
+        // Ensure that an initial state was found
+        if (dfa.getInitState() == null) {
+            throw new IllegalArgumentException("Initial state not found in the DOT file.");
         }
+
+        // Convert the graph to a transition map
+        dfa.setTransMap(graph2TransMap(dfa.getGraph()));
+
+        return dfa;
     }
 
     /**
@@ -165,21 +182,35 @@ public class Dot2DFA {
     }
 
     /**
-     * Creates a DFA from a specified temporal relation.
+     * Creates a DFA from a specified temporal relation, in its initial state.
+     * The DOT file of every relation is read from the classpath, so also from a packaged jar, and compiled once per
+     * JVM; the DFAs created for a relation share its graph, node map and transition table, which are read-only, and
+     * only keep their own state.
      *
      * @param relation the temporal relation used to determine the corresponding DOT file.
      * @return a DFA object representing the specified temporal relation.
      */
     public static DFA createDFAFromRelation(TemporalRelations.PreciseRel relation) {
-        String resourcePath = Dot2DFA.class.getClassLoader().getResource("dotFiles/").getPath();
+        return COMPILED.computeIfAbsent(relation, Dot2DFA::loadDFA).copy();
+    }
 
-        if (resourcePath == null) {
-            logger.error("PIE_PAIR_HOME environment variable is not set.");
-            System.exit(1);
+    /**
+     * Loads and compiles the DFA of a relation from the DOT file on the classpath.
+     */
+    private static DFA loadDFA(TemporalRelations.PreciseRel relation) {
+        String resource = "dotFiles/" + relation.name() + ".dot";
+        InputStream in = Dot2DFA.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalStateException("DFA definition not found on the classpath: " + resource);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            DFA dfa = parseDot(reader, relation);
+            dfa.freeze();
+            logger.debug("Compiled the DFA of " + relation);
+            return dfa;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the DFA definition " + resource, e);
         }
-
-        String dotFilePath = resourcePath + relation.name() + ".dot";
-        return parseDotFile(dotFilePath);
     }
 
 
@@ -0,0 +1,299 @@
+package org.piestream.piepair.dfa;
+
+import org.piestream.piepair.TemporalRelations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fuses the DFAs of several temporal relations that read the same alphabets into a single minimised product
+ * automaton, so one table lookup per event replaces a step of every DFA.
+ *
+ * A product state is a tuple of component states; only the tuples reachable from the current states of the components
+ * are built. Every product transition carries bitmasks with a bit per component: whether the component triggers, is
+ * final, changed its state and is parked (see {@link DFA#isParked()}) after the transition. The product is minimised as a machine with
+ * these outputs by partition refinement: two states are merged if every alphabet leads to merged states with the
+ * same outputs, so the fused automaton reports exactly what the component DFAs would report.
+ * A product automaton keeps its own state; the component DFAs are not stepped by it. The products of relations
+ * in their initial states are built once per JVM and list of relations, see {@link #ofRelations(List)}.
+ */
+public class ProductDFA {
+
+    public static final int MAX_COMPONENTS = 32;  // Components that fit into the bitmasks
+    public static final int MAX_STATES = 4096;  // Reachable product states above which fusing is given up
+
+    private static final int A = DFA.ALPHABET_SIZE;
+
+    // Product of every list of relations fused so far, shared by the automata created from it
+    private static final Map<List<TemporalRelations.PreciseRel>, ProductDFA> FUSED = new ConcurrentHashMap<>();
+
+    private final int[] next;  // Next state by transition state * 4 + alphabet, -1 if a component has no transition
+    private final int[] triggerMasks;  // Components triggered by a transition
+    private final int[] finalMasks;  // Components final after a transition
+    private final int[] changedMasks;  // Components whose state a transition changed
+    private final int[] parkedMasks;  // Components the same alphabet cannot change after a transition
+    private final int allMask;  // Bits of all components
+    private final int initialTriggerMask;  // Components triggered before the first step
+    private final int initialFinalMask;  // Components final before the first step
+    private final int initialChangedMask;  // Components that changed their state before the first step
+    private int current;  // The current state
+    private int transition = -1;  // Last transition taken, -1 before the first step
+
+    private ProductDFA(int[] next, int[] triggerMasks, int[] finalMasks, int[] changedMasks, int[] parkedMasks,
+                       int initial, List<DFA> components) {
+        this.next = next;
+        this.triggerMasks = triggerMasks;
+        this.finalMasks = finalMasks;
+        this.changedMasks = changedMasks;
+        this.parkedMasks = parkedMasks;
+        this.allMask = (int) ((1L << components.size()) - 1);
+        this.current = initial;
+        int trigger = 0, fin = 0, changed = 0;
+        for (int c = 0; c < components.size(); c++) {
+            DFA dfa = components.get(c);
+            trigger |= dfa.isTrigger() ? 1 << c : 0;
+            fin |= dfa.isFinalState() ? 1 << c : 0;
+            changed |= dfa.isStateChanged() ? 1 << c : 0;
+        }
+        this.initialTriggerMask = trigger;
+        this.initialFinalMask = fin;
+        this.initialChangedMask = changed;
+    }
+
+    /**
+     * Creates an automaton in the same state sharing the tables of a product.
+     */
+    private ProductDFA(ProductDFA shared) {
+        this.next = shared.next;
+        this.triggerMasks = shared.triggerMasks;
+        this.finalMasks = shared.finalMasks;
+        this.changedMasks = shared.changedMasks;
+        this.parkedMasks = shared.parkedMasks;
+        this.allMask = shared.allMask;
+        this.initialTriggerMask = shared.initialTriggerMask;
+        this.initialFinalMask = shared.initialFinalMask;
+        this.initialChangedMask = shared.initialChangedMask;
+        this.current = shared.current;
+        this.transition = shared.transition;
+    }
+
+    /**
+     * Fuses the DFAs of relations, in their initial states, into a product automaton. The product of a list of
+     * relations is built once per JVM; the automata created from it share its tables and only keep their own state.
+     *
+     * @param relations the relations, component c is reported by bit c of the masks
+     * @return the product automaton in its initial state, or null if there are too many components or reachable states
+     */
+    public static ProductDFA ofRelations(List<TemporalRelations.PreciseRel> relations) {
+        List<TemporalRelations.PreciseRel> key = new ArrayList<>(relations);
+        ProductDFA fused = FUSED.get(key);
+        if (fused == null) {
+            List<DFA> components = new ArrayList<>();
+            for (TemporalRelations.PreciseRel relation : key) {
+                components.add(Dot2DFA.createDFAFromRelation(relation));
+            }
+            fused = of(components);
+            if (fused == null) {
+                return null;
+            }
+            ProductDFA raced = FUSED.putIfAbsent(key, fused);
+            fused = raced != null ? raced : fused;
+        }
+        return new ProductDFA(fused);
+    }
+
+    /**
+     * Fuses DFAs into a product automaton starting at their current states.
+     *
+     * @param components the DFAs, component c is reported by bit c of the masks
+     * @return the product automaton, or null if there are too many components or reachable states
+     */
+    public static ProductDFA of(List<DFA> components) {
+        int size = components.size();
+        if (size == 0 || size > MAX_COMPONENTS) {
+            return null;
+        }
+        int[] start = new int[size];
+        for (int c = 0; c < size; c++) {
+            start[c] = components.get(c).current;
+            if (start[c] < 0 || components.get(c).table == null) {
+                return null;
+            }
+        }
+
+        // Reachable product states
+        List<int[]> tuples = new ArrayList<>();
+        Map<List<Integer>, Integer> numbers = new HashMap<>();
+        tuples.add(start);
+        numbers.put(key(start), 0);
+        List<int[]> rows = new ArrayList<>();  // Next state, trigger, final, changed and parked by transition
+        for (int s = 0; s < tuples.size(); s++) {
+            int[] tuple = tuples.get(s);
+            for (int a = 0; a < A; a++) {
+                int[] target = new int[size];
+                int trigger = 0, fin = 0, changed = 0, parked = 0;
+                boolean defined = true;
+                for (int c = 0; c < size && defined; c++) {
+                    DFATable table = components.get(c).table;
+                    int t = tuple[c] * A + a;
+                    target[c] = table.next[t];
+                    defined = target[c] >= 0;
+                    trigger |= DFATable.bit(table.triggerBits, t) ? 1 << c : 0;
+                    fin |= DFATable.bit(table.finalBits, t) ? 1 << c : 0;
+                    changed |= DFATable.bit(table.changedBits, t) ? 1 << c : 0;
+                    parked |= DFATable.bit(table.parkedBits, t) ? 1 << c : 0;
+                }
+                int number = -1;
+                if (defined) {
+                    Integer found = numbers.get(key(target));
+                    if (found == null) {
+                        if (tuples.size() == MAX_STATES) {
+                            return null;
+                        }
+                        found = tuples.size();
+                        tuples.add(target);
+                        numbers.put(key(target), found);
+                    }
+                    number = found;
+                }
+                rows.add(new int[]{number, trigger, fin, changed, parked});
+            }
+        }
+        return minimise(rows, tuples.size(), components);
+    }
+
+    private static List<Integer> key(int[] tuple) {
+        List<Integer> key = new ArrayList<>(tuple.length);
+        for (int state : tuple) {
+            key.add(state);
+        }
+        return key;
+    }
+
+    /**
+     * Merges equivalent states by partition refinement, starting from the states with equal outputs.
+     */
+    private static ProductDFA minimise(List<int[]> rows, int states, List<DFA> components) {
+        int[] classes = new int[states];
+        int count = 0;
+        while (true) {
+            Map<List<Integer>, Integer> signatures = new HashMap<>();
+            int[] refined = new int[states];
+            for (int s = 0; s < states; s++) {
+                List<Integer> signature = new ArrayList<>();
+                signature.add(classes[s]);
+                for (int a = 0; a < A; a++) {
+                    int[] row = rows.get(s * A + a);
+                    signature.add(row[0] < 0 ? -1 : classes[row[0]]);
+                    for (int i = 1; i < row.length; i++) {
+                        signature.add(row[i]);
+                    }
+                }
+                Integer number = signatures.get(signature);
+                if (number == null) {
+                    number = signatures.size();
+                    signatures.put(signature, number);
+                }
+                refined[s] = number;
+            }
+            classes = refined;
+            if (signatures.size() == count) {
+                break;
+            }
+            count = signatures.size();
+        }
+
+        int[] next = new int[count * A];
+        int[] triggerMasks = new int[count * A];
+        int[] finalMasks = new int[count * A];
+        int[] changedMasks = new int[count * A];
+        int[] parkedMasks = new int[count * A];
+        Arrays.fill(next, -1);
+        for (int s = 0; s < states; s++) {
+            for (int a = 0; a < A; a++) {
+                int[] row = rows.get(s * A + a);
+                int t = classes[s] * A + a;
+                next[t] = row[0] < 0 ? -1 : classes[row[0]];
+                triggerMasks[t] = row[1];
+                finalMasks[t] = row[2];
+                changedMasks[t] = row[3];
+                parkedMasks[t] = row[4];
+            }
+        }
+        return new ProductDFA(next, triggerMasks, finalMasks, changedMasks, parkedMasks, classes[0], components);
+    }
+
+    /**
+     * Steps all components on an alphabet.
+     *
+     * @param alphabet the input alphabet
+     * @return the components triggered by the step
+     */
+    public int step(Alphabet alphabet) {
+        int t = current * A + alphabet.ordinal();
+        if (next[t] < 0) {
+            throw new IllegalStateException("No transition of the product automaton on " + alphabet);
+        }
+        current = next[t];
+        transition = t;
+        return triggerMasks[t];
+    }
+
+    /**
+     * @return the number of states of the minimised product
+     */
+    public int size() {
+        return next.length / A;
+    }
+
+    /**
+     * @param component the number of a component
+     * @return true if the component is triggered, see {@link DFA#isTrigger()}
+     */
+    public boolean isTrigger(int component) {
+        return ((transition >= 0 ? triggerMasks[transition] : initialTriggerMask) & (1 << component)) != 0;
+    }
+
+    /**
+     * @param component the number of a component
+     * @return true if the component is in a final state, see {@link DFA#isFinalState()}
+     */
+    public boolean isFinalState(int component) {
+        return ((transition >= 0 ? finalMasks[transition] : initialFinalMask) & (1 << component)) != 0;
+    }
+
+    /**
+     * @param component the number of a component
+     * @return true if the last step changed the state of the component, see {@link DFA#isStateChanged()}
+     */
+    public boolean isStateChanged(int component) {
+        return ((transition >= 0 ? changedMasks[transition] : initialChangedMask) & (1 << component)) != 0;
+    }
+
+    /**
+     * @param component the number of a component
+     * @return true if a step on the last alphabet cannot change the component, see {@link DFA#isParked()}
+     */
+    public boolean isParked(int component) {
+        return transition >= 0 && (parkedMasks[transition] & (1 << component)) != 0;
+    }
+
+    /**
+     * @return true if a step on the last alphabet cannot change any component
+     */
+    public boolean isParked() {
+        return transition >= 0 && parkedMasks[transition] == allMask;
+    }
+
+    /**
+     * @param component the number of a component
+     * @return true if a step on O cannot change the component, see {@link DFA#isParkedOnO()}
+     */
+    public boolean isParkedOnO(int component) {
+        return isParked(component) && transition % A == Alphabet.O.ordinal();
+    }
+}
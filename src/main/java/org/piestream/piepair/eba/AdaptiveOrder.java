@@ -0,0 +1,237 @@
+package org.piestream.piepair.eba;
+
+import org.piestream.events.EventLayout;
+import org.piestream.events.PointEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reorders the operands of the AND and OR chains of an EBA tree by their observed selectivity, so short-circuit
+ * evaluation runs the operand most likely to decide the chain, per unit of cost, first.
+ *
+ * Nested ANDs and ORs are flattened into chains, e.g. ((SOBOR &gt; 0) &amp; (BOR &lt; 50)) &amp; (BOR &gt; 0) is an
+ * AND chain of three predicates. Every {@link #SAMPLE_INTERVAL}th event evaluates every operand of every chain and
+ * counts how often it passes; every {@link #REORDER_INTERVAL} samples the chains are sorted, AND operands by
+ * cost / (1 - pass rate) and OR operands by cost / pass rate, and the tree is recompiled in the new order if it
+ * changed. The counters are halved then, so the order follows a drifting predicate mix. The cost of an operand is its
+ * number of predicates.
+ *
+ * Operand order is only free while no predicate can fail: it is only used for trees whose predicates all compare
+ * primitive slots, and only for events whose compared slots all hold primitive values. Other events are evaluated
+ * in the original order, where null values raise their exception at the same predicate as before.
+ * The statistics are not synchronised; an EBA is evaluated by a single detection thread.
+ */
+class AdaptiveOrder {
+
+    static final int SAMPLE_INTERVAL = 64;  // Events between two samples
+    static final int REORDER_INTERVAL = 64;  // Samples between two reorderings
+
+    private static final byte LEAF = 0;
+    private static final byte NOT = 1;
+    private static final byte AND = 2;
+    private static final byte OR = 3;
+
+    private final EventLayout layout;  // Layout of the evaluated events
+    private final int[] guardOrdinals;  // Slots that must hold primitive values to use the adaptive order
+    private final Node root;  // The tree, with its chains in the current order
+    private CompiledEBA program;  // The tree compiled in the current order, null while it is the original order
+    private int untilSample = SAMPLE_INTERVAL;  // Guarded events until the next sample
+    private int untilReorder = REORDER_INTERVAL;  // Samples until the next reordering
+
+    private AdaptiveOrder(EventLayout layout, int[] guardOrdinals, Node root) {
+        this.layout = layout;
+        this.guardOrdinals = guardOrdinals;
+        this.root = root;
+    }
+
+    /**
+     * Creates the adaptive order of a tree.
+     *
+     * @param source the EBA tree, whose predicates all compare primitive slots
+     * @param layout the layout of the evaluated events
+     * @param guardOrdinals the ordinals of the compared slots
+     * @return the adaptive order, or null if the tree has no chain of two or more operands
+     */
+    static AdaptiveOrder of(EBA source, EventLayout layout, int[] guardOrdinals) {
+        Node root = build(source, layout);
+        return root.hasChain() ? new AdaptiveOrder(layout, guardOrdinals, root) : null;
+    }
+
+    /**
+     * Checks if the operands may be evaluated in any order for the event.
+     *
+     * @param event the event to be evaluated
+     * @return true if every compared slot of the event holds a primitive value
+     */
+    boolean accepts(PointEvent event) {
+        if (event.getLayout() != layout) {
+            return false;
+        }
+        for (int ordinal : guardOrdinals) {
+            if (!event.isPrimitive(ordinal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates an accepted event in the current order, sampling and reordering when due.
+     *
+     * @param event an event accepted by {@link #accepts(PointEvent)}
+     * @param original the program in the original order
+     * @return the result of the tree for the event
+     */
+    boolean evaluate(PointEvent event, CompiledEBA original) {
+        if (--untilSample == 0) {
+            untilSample = SAMPLE_INTERVAL;
+            boolean result = root.sample(event);
+            if (--untilReorder == 0) {
+                untilReorder = REORDER_INTERVAL;
+                if (root.reorder()) {
+                    program = CompiledEBA.compileFixed(root.toEBA(), layout);
+                }
+            }
+            return result;
+        }
+        return program != null ? program.run(event) : original.run(event);
+    }
+
+    /**
+     * Builds the node of a tree, flattening nested ANDs and ORs into chains.
+     */
+    private static Node build(EBA eba, EventLayout layout) {
+        if (eba instanceof AndEBA || eba instanceof OrEBA) {
+            byte kind = eba instanceof AndEBA ? AND : OR;
+            List<Node> operands = new ArrayList<>();
+            flatten(eba, kind, layout, operands);
+            return new Node(kind, null, null, operands.toArray(new Node[0]));
+        } else if (eba instanceof NotEBA) {
+            return new Node(NOT, null, null, new Node[]{build(((NotEBA) eba).getExpression(), layout)});
+        } else if (eba instanceof CompiledEBA) {
+            return build(((CompiledEBA) eba).getSource(), layout);
+        }
+        return new Node(LEAF, eba, CompiledEBA.compileFixed(eba, layout), new Node[0]);
+    }
+
+    private static void flatten(EBA eba, byte kind, EventLayout layout, List<Node> operands) {
+        if (kind == AND && eba instanceof AndEBA) {
+            flatten(((AndEBA) eba).getLeft(), kind, layout, operands);
+            flatten(((AndEBA) eba).getRight(), kind, layout, operands);
+        } else if (kind == OR && eba instanceof OrEBA) {
+            flatten(((OrEBA) eba).getLeft(), kind, layout, operands);
+            flatten(((OrEBA) eba).getRight(), kind, layout, operands);
+        } else {
+            operands.add(build(eba, layout));
+        }
+    }
+
+    /**
+     * A node of the tree: a predicate, a negation or a chain.
+     */
+    private static final class Node {
+        final byte kind;
+        final EBA predicate;  // Source of a LEAF
+        final CompiledEBA leafProgram;  // A LEAF compiled on its own, for sampling
+        final Node[] operands;  // Operand of a NOT, operands of a chain in the current order
+        final int cost;  // Number of predicates of the node
+        long samples;  // Samples of the node as a chain operand
+        long passes;  // Samples in which the node was true
+
+        Node(byte kind, EBA predicate, CompiledEBA leafProgram, Node[] operands) {
+            this.kind = kind;
+            this.predicate = predicate;
+            this.leafProgram = leafProgram;
+            this.operands = operands;
+            int cost = kind == LEAF ? 1 : 0;
+            for (Node operand : operands) {
+                cost += operand.cost;
+            }
+            this.cost = cost;
+        }
+
+        boolean hasChain() {
+            if (operands.length > 1) {
+                return true;
+            }
+            for (Node operand : operands) {
+                if (operand.hasChain()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Evaluates the node without short-circuiting and counts the results of the chain operands.
+         */
+        boolean sample(PointEvent event) {
+            switch (kind) {
+                case LEAF:
+                    return leafProgram.run(event);
+                case NOT:
+                    return !operands[0].sample(event);
+                default:
+                    boolean result = kind == AND;
+                    for (Node operand : operands) {
+                        boolean value = operand.sample(event);
+                        operand.samples++;
+                        if (value) {
+                            operand.passes++;
+                        }
+                        result = kind == AND ? result && value : result || value;
+                    }
+                    return result;
+            }
+        }
+
+        /**
+         * Sorts the chains of the node by rank and halves their counters.
+         *
+         * @return true if an order changed
+         */
+        boolean reorder() {
+            boolean changed = false;
+            for (Node operand : operands) {
+                changed |= operand.reorder();
+            }
+            if (operands.length > 1) {
+                Node[] sorted = operands.clone();
+                Arrays.sort(sorted, Comparator.comparingDouble(this::rank));  // Stable, ties keep their order
+                for (int i = 0; i < sorted.length; i++) {
+                    changed |= sorted[i] != operands[i];
+                    operands[i] = sorted[i];
+                    operands[i].samples >>= 1;
+                    operands[i].passes >>= 1;
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * Expected cost of an operand per chain it decides: an AND is decided by a false operand, an OR by a true one.
+         */
+        private double rank(Node operand) {
+            double passRate = (operand.passes + 1.0) / (operand.samples + 2.0);
+            return operand.cost / (kind == AND ? 1.0 - passRate : passRate);
+        }
+
+        EBA toEBA() {
+            switch (kind) {
+                case LEAF:
+                    return predicate;
+                case NOT:
+                    return new NotEBA(operands[0].toEBA());
+                default:
+                    EBA eba = operands[0].toEBA();
+                    for (int i = 1; i < operands.length; i++) {
+                        eba = kind == AND ? new AndEBA(eba, operands[i].toEBA()) : new OrEBA(eba, operands[i].toEBA());
+                    }
+                    return eba;
+            }
+        }
+    }
+}
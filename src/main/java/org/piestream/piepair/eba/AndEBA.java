@@ -25,6 +25,20 @@ public class AndEBA extends EBA {
         this.right = right;
     }
 
+    /**
+     * @return The left EBA operand.
+     */
+    public EBA getLeft() {
+        return left;
+    }
+
+    /**
+     * @return The right EBA operand.
+     */
+    public EBA getRight() {
+        return right;
+    }
+
     /**
      * Evaluates the "AND" of the left and right EBAs for the given event.
      * Returns true if both the left and right EBAs evaluate to true for the event, otherwise returns false.
@@ -36,4 +50,28 @@ public class AndEBA extends EBA {
     public boolean evaluate(PointEvent event) {
         return left.evaluate(event) && right.evaluate(event);
     }
+
+    /**
+     * Computes the hash code of the AND from the hash codes of its operands.
+     *
+     * @return The hash code of the EBA
+     */
+    @Override
+    public int hashCode() {
+        return 31 * left.hashCode() + right.hashCode();
+    }
+
+    /**
+     * Checks if two EBAs are structurally equal, i.e. if their left and right operands are equal.
+     *
+     * @param obj The object to compare
+     * @return True if the EBAs are equal, otherwise false
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        AndEBA other = (AndEBA) obj;
+        return left.equals(other.left) && right.equals(other.right);
+    }
 }
@@ -0,0 +1,559 @@
+package org.piestream.piepair.eba;
+
+import org.piestream.events.EventBlock;
+import org.piestream.events.EventLayout;
+import org.piestream.events.PointEvent;
+import org.piestream.piepair.predicate.Equals;
+import org.piestream.piepair.predicate.Greater;
+import org.piestream.piepair.predicate.GreaterOrEqual;
+import org.piestream.piepair.predicate.Less;
+import org.piestream.piepair.predicate.LessOrEqual;
+import org.piestream.piepair.predicate.Predicate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * An EBA compiled into a flat program over the typed slots of an {@link EventLayout}.
+ *
+ * The EBA tree is emitted once, in evaluation order, into parallel instruction arrays. Every comparison of a
+ * numeric attribute becomes a leaf instruction holding the attribute ordinal and its constant, already parsed into
+ * the comparison type of the attribute, so evaluating it reads a primitive slot and compares two primitives.
+ * AND, OR and NOT become conditional jumps and a negation, so the whole tree is evaluated in one loop without a
+ * virtual call per node; the jumps short-circuit exactly like {@link AndEBA} and {@link OrEBA}.
+ *
+ * The compiled program gives the same results as the source tree. Everything it cannot decide on the primitive
+ * slots is handed to the source predicate: null or non-numeric slot values, attributes that are not part of the
+ * layout, types the predicates do not compare, and events of another layout (the whole source tree is evaluated
+ * then).
+ *
+ * Sub-expressions shared with other EBAs can be evaluated through a {@link SubexpressionCache}, which skips them
+ * once their result for the event is known. The tree is also kept in postfix order for
+ * {@link #evaluate(EventBlock, long[], long[])}, which evaluates it over the columns of a whole block of events at once.
+ *
+ * The operands of AND and OR may be reordered at runtime by their observed selectivity, see {@link AdaptiveOrder}.
+ */
+public class CompiledEBA extends EBA {
+
+    // Instructions
+    static final byte LEAF_LONG = 0;  // Compares an integral slot with a long constant
+    static final byte LEAF_DOUBLE = 1;  // Compares a slot as double with a double constant
+    static final byte LEAF_FALSE = 2;  // Constant that does not parse in the attribute type, never true
+    private static final byte LEAF_INTERPRETED = 3;  // Evaluates the source EBA of the instruction
+    private static final byte NOT = 4;  // Negates the result
+    private static final byte JUMP_IF_FALSE = 5;  // Skips the right operand of an AND
+    private static final byte JUMP_IF_TRUE = 6;  // Skips the right operand of an OR
+    private static final byte LOAD_SHARED = 7;  // Skips a shared sub-expression whose result is cached
+    private static final byte STORE_SHARED = 8;  // Caches the result of a shared sub-expression
+
+    // Comparisons of the leaf instructions
+    static final byte GREATER = 0;
+    static final byte GREATER_OR_EQUAL = 1;
+    static final byte LESS = 2;
+    static final byte LESS_OR_EQUAL = 3;
+    static final byte EQUALS = 4;
+
+    // Operators of the block program; leaves are encoded as their program position
+    private static final int BLOCK_AND = -1;
+    private static final int BLOCK_OR = -2;
+    private static final int BLOCK_NOT = -3;
+
+    private final EBA source;  // The EBA tree the program was compiled from
+    private final EventLayout layout;  // Layout of the events the program reads
+    private final SubexpressionCache cache;  // Results of the shared sub-expressions, may be null
+    private final AdaptiveOrder adaptiveOrder;  // Selectivity-driven operand order, null if the order is fixed
+    final byte[] code;  // Instruction of every program position
+    final byte[] comparisons;  // Comparison of a leaf instruction
+    final int[] ordinals;  // Slot ordinal of a leaf instruction
+    final boolean[] integral;  // Whether a LEAF_DOUBLE reads a long slot
+    final long[] longConstants;  // Constant of a LEAF_LONG instruction
+    final double[] doubleConstants;  // Constant of a LEAF_DOUBLE instruction
+    private final int[] jumps;  // Target position of a jump instruction
+    private final EBA[] fallbacks;  // Source EBA of a leaf instruction, used for what the slots cannot decide
+    private final int[] blockProgram;  // The tree in postfix order, for block evaluation
+    private final boolean interpreted;  // Whether a leaf can only be evaluated by its source EBA
+    private long[][] blockStack = new long[0][];  // Masks of the block program operands, reused between blocks
+
+    private CompiledEBA(EBA source, EventLayout layout, SubexpressionCache cache, Program program, boolean adaptive) {
+        this.source = source;
+        this.layout = layout;
+        this.cache = cache;
+        int size = program.code.size();
+        this.code = new byte[size];
+        this.comparisons = new byte[size];
+        this.ordinals = new int[size];
+        this.integral = new boolean[size];
+        this.longConstants = new long[size];
+        this.doubleConstants = new double[size];
+        this.jumps = new int[size];
+        this.fallbacks = new EBA[size];
+        for (int pc = 0; pc < size; pc++) {
+            Instruction instruction = program.code.get(pc);
+            code[pc] = instruction.code;
+            comparisons[pc] = instruction.comparison;
+            ordinals[pc] = instruction.ordinal;
+            integral[pc] = instruction.integral;
+            longConstants[pc] = instruction.longConstant;
+            doubleConstants[pc] = instruction.doubleConstant;
+            jumps[pc] = instruction.jump;
+            fallbacks[pc] = instruction.fallback;
+        }
+        this.blockProgram = new int[program.postfix.size()];
+        for (int i = 0; i < blockProgram.length; i++) {
+            blockProgram[i] = program.postfix.get(i);
+        }
+        this.interpreted = program.code.stream().anyMatch(instruction -> instruction.code == LEAF_INTERPRETED);
+        this.adaptiveOrder = adaptive && !interpreted ? AdaptiveOrder.of(source, layout, leafOrdinals()) : null;
+    }
+
+    /**
+     * @return the distinct slot ordinals the leaf instructions compare.
+     */
+    private int[] leafOrdinals() {
+        return IntStream.range(0, code.length)
+                .filter(pc -> code[pc] == LEAF_LONG || code[pc] == LEAF_DOUBLE || code[pc] == LEAF_FALSE)
+                .map(pc -> ordinals[pc])
+                .distinct()
+                .toArray();
+    }
+
+    /**
+     * Compiles an EBA tree for events of the given layout.
+     *
+     * @param source the EBA tree; a compiled EBA is compiled from its source tree again.
+     * @param layout the layout of the evaluated events.
+     * @return the compiled EBA.
+     */
+    public static CompiledEBA compile(EBA source, EventLayout layout) {
+        return compile(source, layout, null);
+    }
+
+    /**
+     * Compiles an EBA tree whose shared sub-expressions are evaluated once per event through a cache. Leaves that
+     * compare a primitive slot are cheaper to evaluate than to look up and are never cached.
+     *
+     * @param source the EBA tree; a compiled EBA is compiled from its source tree again.
+     * @param layout the layout of the evaluated events.
+     * @param cache the cache of the sub-expressions shared with other EBAs, may be null.
+     * @return the compiled EBA.
+     */
+    public static CompiledEBA compile(EBA source, EventLayout layout, SubexpressionCache cache) {
+        if (source instanceof CompiledEBA) {
+            source = ((CompiledEBA) source).getSource();
+        }
+        Program program = new Program(layout, cache);
+        program.emit(source);
+        return new CompiledEBA(source, layout, cache, program, true);
+    }
+
+    /**
+     * Compiles an EBA tree whose operands are always evaluated in the given order.
+     */
+    static CompiledEBA compileFixed(EBA source, EventLayout layout) {
+        Program program = new Program(layout, null);
+        program.emit(source);
+        return new CompiledEBA(source, layout, null, program, false);
+    }
+
+    /**
+     * @return the EBA tree this EBA was compiled from.
+     */
+    public EBA getSource() {
+        return source;
+    }
+
+    /**
+     * @return the layout of the events the program reads.
+     */
+    public EventLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Runs the program on the slots of the event. Events whose compared slots all hold primitive values are
+     * evaluated in the adaptive operand order, if the tree has one.
+     *
+     * @param event the event to be evaluated.
+     * @return the result of the source EBA for the event.
+     */
+    @Override
+    public boolean evaluate(PointEvent event) {
+        if (adaptiveOrder != null && adaptiveOrder.accepts(event)) {
+            return adaptiveOrder.evaluate(event, this);
+        }
+        return run(event);
+    }
+
+    /**
+     * Runs the program in its compiled order.
+     */
+    boolean run(PointEvent event) {
+        if (event.getLayout() != layout) {
+            return source.evaluate(event);  // Map events and events of another layout
+        }
+        boolean result = false;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc]) {
+                case LEAF_LONG: {
+                    int ordinal = ordinals[pc];
+                    result = event.isPrimitive(ordinal)
+                            ? compare(event.getLong(ordinal), longConstants[pc], comparisons[pc])
+                            : fallbacks[pc].evaluate(event);
+                    pc++;
+                    break;
+                }
+                case LEAF_DOUBLE: {
+                    int ordinal = ordinals[pc];
+                    if (event.isPrimitive(ordinal)) {
+                        double value = integral[pc] ? event.getLong(ordinal) : event.getDouble(ordinal);
+                        result = compare(value, doubleConstants[pc], comparisons[pc]);
+                    } else {
+                        result = fallbacks[pc].evaluate(event);
+                    }
+                    pc++;
+                    break;
+                }
+                case LEAF_FALSE:
+                    result = !event.isPrimitive(ordinals[pc]) && fallbacks[pc].evaluate(event);  // Null values still fail
+                    pc++;
+                    break;
+                case LEAF_INTERPRETED:
+                    result = fallbacks[pc].evaluate(event);
+                    pc++;
+                    break;
+                case NOT:
+                    result = !result;
+                    pc++;
+                    break;
+                case JUMP_IF_FALSE:
+                    pc = result ? pc + 1 : jumps[pc];
+                    break;
+                case JUMP_IF_TRUE:
+                    pc = result ? jumps[pc] : pc + 1;
+                    break;
+                case LOAD_SHARED:
+                    if (cache.isCached(ordinals[pc], event)) {
+                        result = cache.get(ordinals[pc]);
+                        pc = jumps[pc];
+                    } else {
+                        pc++;
+                    }
+                    break;
+                default:  // STORE_SHARED
+                    cache.put(ordinals[pc], event, result);
+                    pc++;
+                    break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates the program over a whole block, one column scan per leaf. The scans compare the gathered column with
+     * the constant in a branch-free loop and pack the results into row bitmasks, which AND, OR and NOT then combine
+     * word by word. Without short-circuiting every leaf is evaluated on every row, which gives the same results
+     * because a comparison of primitive slots has no side effects.
+     *
+     * Rows the columns cannot decide are added to the dirty mask instead: rows with a non-primitive slot in one of
+     * the compared attributes, or every row if the program has an interpreted leaf or the block is of another layout.
+     * Their result bits are undefined and must be obtained from {@link #evaluate(PointEvent)}. The operand masks are
+     * kept in the EBA, so a compiled EBA evaluates one block at a time.
+     *
+     * @param block the block to be evaluated.
+     * @param result the result bit of every row of the block, overwritten.
+     * @param dirty the rows that must be evaluated event by event, only ever set.
+     */
+    public void evaluate(EventBlock block, long[] result, long[] dirty) {
+        int words = (block.size() + 63) >>> 6;
+        if (interpreted || block.getLayout() != layout) {
+            for (int w = 0; w < words; w++) {
+                dirty[w] = -1L;
+            }
+            return;
+        }
+        if (blockStack.length < blockProgram.length || (blockStack.length > 0 && blockStack[0].length < words)) {
+            blockStack = new long[blockProgram.length][(block.capacity() + 63) >>> 6];
+        }
+        int top = 0;
+        for (int op : blockProgram) {
+            if (op >= 0) {
+                long[] mask = blockStack[top++];
+                scan(block, op, mask);
+                long[] rows = block.nonPrimitiveRows(ordinals[op]);
+                for (int w = 0; w < words; w++) {
+                    dirty[w] |= rows[w];
+                }
+            } else if (op == BLOCK_NOT) {
+                long[] mask = blockStack[top - 1];
+                for (int w = 0; w < words; w++) {
+                    mask[w] = ~mask[w];
+                }
+            } else {
+                long[] right = blockStack[--top];
+                long[] left = blockStack[top - 1];
+                if (op == BLOCK_AND) {
+                    for (int w = 0; w < words; w++) {
+                        left[w] &= right[w];
+                    }
+                } else {
+                    for (int w = 0; w < words; w++) {
+                        left[w] |= right[w];
+                    }
+                }
+            }
+        }
+        System.arraycopy(blockStack[0], 0, result, 0, words);
+    }
+
+    /**
+     * Evaluates a leaf instruction on every row of the block.
+     */
+    private void scan(EventBlock block, int pc, long[] mask) {
+        int size = block.size();
+        switch (code[pc]) {
+            case LEAF_LONG:
+                scan(block.longColumn(ordinals[pc]), size, longConstants[pc], comparisons[pc], mask);
+                break;
+            case LEAF_DOUBLE:
+                scan(block.doubleColumn(ordinals[pc]), size, doubleConstants[pc], comparisons[pc], mask);
+                break;
+            default:  // LEAF_FALSE, gathered for its non-primitive rows
+                block.doubleColumn(ordinals[pc]);
+                for (int w = 0; w < (size + 63) >>> 6; w++) {
+                    mask[w] = 0L;
+                }
+                break;
+        }
+    }
+
+    private static void scan(long[] column, int size, long constant, byte comparison, long[] mask) {
+        for (int base = 0; base < size; base += 64) {
+            int end = Math.min(64, size - base);
+            long word = 0L;
+            switch (comparison) {
+                case GREATER:
+                    for (int b = 0; b < end; b++) {
+                        word |= (column[base + b] > constant ? 1L : 0L) << b;
+                    }
+                    break;
+                case GREATER_OR_EQUAL:
+                    for (int b = 0; b < end; b++) {
+                        word |= (column[base + b] >= constant ? 1L : 0L) << b;
+                    }
+                    break;
+                case LESS:
+                    for (int b = 0; b < end; b++) {
+                        word |= (column[base + b] < constant ? 1L : 0L) << b;
+                    }
+                    break;
+                case LESS_OR_EQUAL:
+                    for (int b = 0; b < end; b++) {
+                        word |= (column[base + b] <= constant ? 1L : 0L) << b;
+                    }
+                    break;
+                default:
+                    for (int b = 0; b < end; b++) {
+                        word |= (column[base + b] == constant ? 1L : 0L) << b;
+                    }
+                    break;
+            }
+            mask[base >>> 6] = word;
+        }
+    }
+
+    private static void scan(double[] column, int size, double constant, byte comparison, long[] mask) {
+        for (int base = 0; base < size; base += 64) {
+            int end = Math.min(64, size - base);
+            long word = 0L;
+            switch (comparison) {
+                case GREATER:
+                    for (int b = 0; b < end; b++) {
+                        word |= (column[base + b] > constant ? 1L : 0L) << b;
+                    }
+                    break;
+                case GREATER_OR_EQUAL:
+                    for (int b = 0; b < end; b++) {
+                        word |= (column[base + b] >= constant ? 1L : 0L) << b;
+                    }
+                    break;
+                case LESS:
+                    for (int b = 0; b < end; b++) {
+                        word |= (column[base + b] < constant ? 1L : 0L) << b;
+                    }
+                    break;
+                case LESS_OR_EQUAL:
+                    for (int b = 0; b < end; b++) {
+                        word |= (column[base + b] <= constant ? 1L : 0L) << b;
+                    }
+                    break;
+                default:
+                    for (int b = 0; b < end; b++) {
+                        word |= (column[base + b] == constant ? 1L : 0L) << b;
+                    }
+                    break;
+            }
+            mask[base >>> 6] = word;
+        }
+    }
+
+    private static boolean compare(long value, long constant, byte comparison) {
+        switch (comparison) {
+            case GREATER: return value > constant;
+            case GREATER_OR_EQUAL: return value >= constant;
+            case LESS: return value < constant;
+            case LESS_OR_EQUAL: return value <= constant;
+            default: return value == constant;
+        }
+    }
+
+    private static boolean compare(double value, double constant, byte comparison) {
+        switch (comparison) {
+            case GREATER: return value > constant;
+            case GREATER_OR_EQUAL: return value >= constant;
+            case LESS: return value < constant;
+            case LESS_OR_EQUAL: return value <= constant;
+            default: return value == constant;
+        }
+    }
+
+    /**
+     * A single instruction while the program is emitted.
+     */
+    private static class Instruction {
+        byte code;
+        byte comparison;
+        int ordinal;
+        boolean integral;
+        long longConstant;
+        double doubleConstant;
+        int jump;
+        EBA fallback;
+
+        Instruction(byte code) {
+            this.code = code;
+        }
+    }
+
+    /**
+     * Emits the instructions of an EBA tree in evaluation order.
+     */
+    private static class Program {
+        private final EventLayout layout;
+        private final List<Instruction> code = new ArrayList<>();
+        private final List<Integer> postfix = new ArrayList<>();  // Block program
+        private final SubexpressionCache cache;
+
+        Program(EventLayout layout, SubexpressionCache cache) {
+            this.layout = layout;
+            this.cache = cache;
+        }
+
+        void emit(EBA eba) {
+            int slot = cache == null ? -1 : cache.slotOf(eba);
+            if (slot < 0 || (eba instanceof PredicateEBA && isPrimitiveLeaf(leaf((PredicateEBA) eba)))) {
+                emitUncached(eba);
+                return;
+            }
+            Instruction load = new Instruction(LOAD_SHARED);
+            load.ordinal = slot;
+            code.add(load);
+            emitUncached(eba);
+            Instruction store = new Instruction(STORE_SHARED);
+            store.ordinal = slot;
+            code.add(store);
+            load.jump = code.size();
+        }
+
+        private static boolean isPrimitiveLeaf(Instruction instruction) {
+            return instruction.code == LEAF_LONG || instruction.code == LEAF_DOUBLE || instruction.code == LEAF_FALSE;
+        }
+
+        private void emitUncached(EBA eba) {
+            if (eba instanceof AndEBA) {
+                emitBinary(((AndEBA) eba).getLeft(), ((AndEBA) eba).getRight(), JUMP_IF_FALSE);
+                postfix.add(BLOCK_AND);
+            } else if (eba instanceof OrEBA) {
+                emitBinary(((OrEBA) eba).getLeft(), ((OrEBA) eba).getRight(), JUMP_IF_TRUE);
+                postfix.add(BLOCK_OR);
+            } else if (eba instanceof NotEBA) {
+                emit(((NotEBA) eba).getExpression());
+                code.add(new Instruction(NOT));
+                postfix.add(BLOCK_NOT);
+            } else if (eba instanceof CompiledEBA) {
+                emit(((CompiledEBA) eba).getSource());
+            } else if (eba instanceof PredicateEBA) {
+                postfix.add(code.size());
+                code.add(leaf((PredicateEBA) eba));
+            } else {
+                Instruction instruction = new Instruction(LEAF_INTERPRETED);
+                instruction.fallback = eba;
+                postfix.add(code.size());
+                code.add(instruction);
+            }
+        }
+
+        private void emitBinary(EBA left, EBA right, byte jumpCode) {
+            emit(left);
+            Instruction jump = new Instruction(jumpCode);
+            code.add(jump);
+            emit(right);
+            jump.jump = code.size();
+        }
+
+        /**
+         * Compiles a predicate. The constant is parsed like {@code PredicateUtils.compareValues} parses it for the
+         * attribute type; slot values of that type compare the same way as primitives.
+         */
+        private Instruction leaf(PredicateEBA eba) {
+            Instruction instruction = new Instruction(LEAF_INTERPRETED);
+            instruction.fallback = eba;
+            byte comparison = comparisonOf(eba.getPredicate());
+            int ordinal = layout.ordinalOf(eba.getAttribute());
+            if (comparison < 0 || ordinal < 0 || eba.getParameter() == null) {
+                return instruction;
+            }
+            String type = eba.getAttribute().getType();
+            byte kind = layout.getKind(ordinal);
+            String parameter = eba.getParameter().toString();
+            instruction.comparison = comparison;
+            instruction.ordinal = ordinal;
+            try {
+                if ("int".equals(type) && kind == EventLayout.KIND_INT) {
+                    instruction.longConstant = Integer.parseInt(parameter);
+                    instruction.code = LEAF_LONG;
+                } else if ("long".equals(type) && kind == EventLayout.KIND_LONG) {
+                    instruction.longConstant = Long.parseLong(parameter);
+                    instruction.code = LEAF_LONG;
+                } else if ("float".equals(type) && kind == EventLayout.KIND_FLOAT) {
+                    instruction.doubleConstant = Float.parseFloat(parameter);
+                    instruction.code = LEAF_DOUBLE;
+                } else if (("double".equals(type) && kind == EventLayout.KIND_DOUBLE)
+                        || ("byte".equals(type) && kind == EventLayout.KIND_BYTE)) {
+                    instruction.doubleConstant = Double.parseDouble(parameter);
+                    instruction.integral = kind == EventLayout.KIND_BYTE;
+                    instruction.code = LEAF_DOUBLE;
+                }
+            } catch (NumberFormatException e) {
+                instruction.code = LEAF_FALSE;
+            }
+            return instruction;
+        }
+
+        private static byte comparisonOf(Predicate predicate) {
+            if (predicate.getClass() == Greater.class) {
+                return GREATER;
+            } else if (predicate.getClass() == GreaterOrEqual.class) {
+                return GREATER_OR_EQUAL;
+            } else if (predicate.getClass() == Less.class) {
+                return LESS;
+            } else if (predicate.getClass() == LessOrEqual.class) {
+                return LESS_OR_EQUAL;
+            } else if (predicate.getClass() == Equals.class) {
+                return EQUALS;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.piestream.piepair.eba;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Canonicalises EBA trees and interns their structurally equal sub-expressions, so a sub-expression used by several
+ * PIEs, or several times within one PIE, is represented by a single instance.
+ *
+ * Trees are rebuilt bottom-up with the following rewrites, all of which evaluate exactly like the original tree,
+ * including which predicates are evaluated (predicates throw on null attribute values):
+ *   !!x        becomes  x
+ *   x &amp; x      becomes  x,  and  x | x  becomes  x
+ *   x &amp; (x | y)  becomes  x,  and  x | (x &amp; y)  becomes  x
+ * The operands of AND and OR keep their order, because short-circuiting makes the order observable.
+ * An interner is not thread-safe; the parser of a query owns one.
+ */
+public class EBAInterner {
+
+    private final Map<EBA, EBA> pool = new HashMap<>();  // Canonical instance of every interned sub-expression
+
+    /**
+     * Returns the canonical instance of an EBA tree. A compiled EBA is interned by its source tree.
+     *
+     * @param eba the EBA tree to intern.
+     * @return the canonical tree, structurally equal to the rewritten input.
+     */
+    public EBA intern(EBA eba) {
+        if (eba instanceof CompiledEBA) {
+            return intern(((CompiledEBA) eba).getSource());
+        } else if (eba instanceof NotEBA) {
+            EBA expression = intern(((NotEBA) eba).getExpression());
+            if (expression instanceof NotEBA) {
+                return ((NotEBA) expression).getExpression();
+            }
+            return canonical(new NotEBA(expression));
+        } else if (eba instanceof AndEBA) {
+            EBA left = intern(((AndEBA) eba).getLeft());
+            EBA right = intern(((AndEBA) eba).getRight());
+            if (left == right || (right instanceof OrEBA && ((OrEBA) right).getLeft() == left)) {
+                return left;
+            }
+            return canonical(new AndEBA(left, right));
+        } else if (eba instanceof OrEBA) {
+            EBA left = intern(((OrEBA) eba).getLeft());
+            EBA right = intern(((OrEBA) eba).getRight());
+            if (left == right || (right instanceof AndEBA && ((AndEBA) right).getLeft() == left)) {
+                return left;
+            }
+            return canonical(new OrEBA(left, right));
+        }
+        return canonical(eba);
+    }
+
+    /**
+     * @return the number of distinct sub-expressions interned so far.
+     */
+    public int size() {
+        return pool.size();
+    }
+
+    /**
+     * Looks up the canonical instance of an EBA whose operands are canonical already.
+     */
+    private EBA canonical(EBA eba) {
+        EBA existing = pool.putIfAbsent(eba, eba);
+        return existing != null ? existing : eba;
+    }
+}
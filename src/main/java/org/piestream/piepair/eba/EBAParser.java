@@ -17,14 +17,43 @@ public class EBAParser {
 
     /**
      * Parses an EBA expression and returns an EBA object representing the parsed logic.
-     * The expression consists of predicates and logical operators, including parentheses for grouping.
+     * The parsed tree is compiled into a {@link CompiledEBA} for the event layout of the schema,
+     * so its predicates compare typed slots against pre-parsed constants.
      *
      * @param expression the EBA expression to parse.
      * @param schema the schema that defines the attributes and their types.
-     * @return the EBA object representing the parsed expression.
+     * @return the compiled EBA representing the parsed expression.
      * @throws EBA.ParseException if there is an error during parsing.
      */
     public static EBA parse(String expression, Schema schema) throws EBA.ParseException {
+        return parse(expression, schema, new EBAInterner());
+    }
+
+    /**
+     * Parses an EBA expression like {@link #parse(String, Schema)}, canonicalising the tree with the given interner
+     * first, so sub-expressions equal to ones of previously parsed expressions share their instances.
+     * Every call still returns a new compiled EBA, so equal expressions parsed twice remain distinct PIEs.
+     *
+     * @param expression the EBA expression to parse.
+     * @param schema the schema that defines the attributes and their types.
+     * @param interner the interner shared by the expressions of a query.
+     * @return the compiled EBA representing the parsed expression.
+     * @throws EBA.ParseException if there is an error during parsing.
+     */
+    public static EBA parse(String expression, Schema schema, EBAInterner interner) throws EBA.ParseException {
+        return CompiledEBA.compile(interner.intern(parseTree(expression, schema)), schema.getEventLayout());
+    }
+
+    /**
+     * Parses an EBA expression and returns the EBA tree representing the parsed logic.
+     * The expression consists of predicates and logical operators, including parentheses for grouping.
+     *
+     * @param expression the EBA expression to parse.
+     * @param schema the schema that defines the attributes and their types.
+     * @return the EBA tree representing the parsed expression.
+     * @throws EBA.ParseException if there is an error during parsing.
+     */
+    public static EBA parseTree(String expression, Schema schema) throws EBA.ParseException {
         expression = expression.trim();
         Stack<EBA> operands = new Stack<>();
         Stack<Character> operators = new Stack<>();
@@ -188,7 +217,7 @@ public class EBAParser {
         String operator = parts[1];
         String value = parts[2];
 
-        Attribute attribute = new Attribute(attributeStr, findValueType(attributeStr, schema));
+        Attribute attribute = findAttribute(attributeStr, schema);
         Predicate predicate = PredicateUtils.fromOperator(operator);
         Object parameter = parseValue(value);
 
@@ -196,18 +225,19 @@ public class EBAParser {
     }
 
     /**
-     * Finds the data type of the specified attribute in the schema.
+     * Finds the specified attribute in the schema. The attribute is named like in the schema, whatever the case used
+     * in the expression, so predicates on the same attribute are equal.
      *
      * @param attributeStr the name of the attribute.
      * @param schema the schema containing the attribute information.
-     * @return the data type of the attribute.
+     * @return the attribute with its data type.
      * @throws EBA.ParseException if the attribute is not found in the schema.
      */
-    private static String findValueType(String attributeStr, Schema schema) throws EBA.ParseException {
+    private static Attribute findAttribute(String attributeStr, Schema schema) throws EBA.ParseException {
         List<Attribute> attributes = schema.getAttributes();
         for (Attribute attr : attributes) {
             if (attr.getName().equalsIgnoreCase(attributeStr)) {
-                return attr.getType().toLowerCase();
+                return new Attribute(attr.getName(), attr.getType().toLowerCase());
             }
         }
         throw new EBA.ParseException("Cannot find the correct type for attribute: " + attributeStr);
@@ -20,6 +20,13 @@ public class NotEBA extends EBA {
         this.expression = expression;
     }
 
+    /**
+     * @return The negated EBA expression.
+     */
+    public EBA getExpression() {
+        return expression;
+    }
+
     /**
      * Evaluates the negation of the expression for the given event.
      * Returns the opposite of the evaluation result of the expression.
@@ -31,4 +38,28 @@ public class NotEBA extends EBA {
     public boolean evaluate(PointEvent event) {
         return !expression.evaluate(event);
     }
+
+    /**
+     * Computes the hash code of the negation from the hash code of its expression.
+     *
+     * @return The hash code of the EBA
+     */
+    @Override
+    public int hashCode() {
+        return ~expression.hashCode();
+    }
+
+    /**
+     * Checks if two EBAs are structurally equal, i.e. if their negated expressions are equal.
+     *
+     * @param obj The object to compare
+     * @return True if the EBAs are equal, otherwise false
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        NotEBA other = (NotEBA) obj;
+        return expression.equals(other.expression);
+    }
 }
@@ -22,6 +22,20 @@ public class OrEBA extends EBA {
         this.right = right;
     }
 
+    /**
+     * @return The left EBA operand.
+     */
+    public EBA getLeft() {
+        return left;
+    }
+
+    /**
+     * @return The right EBA operand.
+     */
+    public EBA getRight() {
+        return right;
+    }
+
     /**
      * Evaluates the OR of the left and right EBAs for the given event.
      *
@@ -32,4 +46,28 @@ public class OrEBA extends EBA {
     public boolean evaluate(PointEvent event) {
         return left.evaluate(event) || right.evaluate(event);
     }
+
+    /**
+     * Computes the hash code of the OR from the hash codes of its operands.
+     *
+     * @return The hash code of the EBA
+     */
+    @Override
+    public int hashCode() {
+        return 31 * left.hashCode() + right.hashCode() + 1;
+    }
+
+    /**
+     * Checks if two EBAs are structurally equal, i.e. if their left and right operands are equal.
+     *
+     * @param obj The object to compare
+     * @return True if the EBAs are equal, otherwise false
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        OrEBA other = (OrEBA) obj;
+        return left.equals(other.left) && right.equals(other.right);
+    }
 }
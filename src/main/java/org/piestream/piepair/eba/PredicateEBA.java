@@ -4,6 +4,8 @@ import org.piestream.events.Attribute;
 import org.piestream.events.PointEvent;
 import org.piestream.piepair.predicate.Predicate;
 
+import java.util.Objects;
+
 /**
  * Represents an EBA  that evaluates an event based on a predicate applied to an attribute.
  * The predicate is tested on a specific attribute of the event with a parameter.
@@ -32,6 +34,27 @@ public class PredicateEBA extends EBA {
         this.parameter = parameter;
     }
 
+    /**
+     * @return The predicate applied to the event's attribute.
+     */
+    public Predicate getPredicate() {
+        return predicate;
+    }
+
+    /**
+     * @return The attribute of the event evaluated with the predicate.
+     */
+    public Attribute getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * @return The parameter used with the predicate.
+     */
+    public Object getParameter() {
+        return parameter;
+    }
+
     /**
      * Evaluates the event by applying the predicate to the event's attribute using the specified parameter.
      *
@@ -42,4 +65,32 @@ public class PredicateEBA extends EBA {
     public boolean evaluate(PointEvent event) {
         return predicate.test(event, attribute, parameter);
     }
+
+    /**
+     * Computes the hash code of the predicate from its comparison, attribute and parameter.
+     *
+     * @return The hash code of the EBA
+     */
+    @Override
+    public int hashCode() {
+        return (31 * predicate.getClass().hashCode() + attribute.hashCode()) * 31 + Objects.hashCode(parameter);
+    }
+
+    /**
+     * Checks if two EBAs are structurally equal, i.e. if they apply the same kind of predicate to the same attribute
+     * and an equal parameter. Predicates are stateless, so they are compared by class; lambdas only equal themselves.
+     *
+     * @param obj The object to compare
+     * @return True if the EBAs are equal, otherwise false
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        PredicateEBA other = (PredicateEBA) obj;
+        boolean samePredicate = predicate.getClass().isSynthetic()
+                ? predicate == other.predicate
+                : predicate.getClass() == other.predicate.getClass();
+        return samePredicate && attribute.equals(other.attribute) && Objects.equals(parameter, other.parameter);
+    }
 }
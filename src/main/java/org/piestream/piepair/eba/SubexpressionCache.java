@@ -0,0 +1,116 @@
+package org.piestream.piepair.eba;
+
+import org.piestream.events.PointEvent;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds the results of the sub-expressions that several EBAs have in common, so each of them is evaluated once
+ * per event however many EBAs use it. EBAs compiled with a cache (see
+ * {@link CompiledEBA#compile(EBA, org.piestream.events.EventLayout, SubexpressionCache)}) store the result of a
+ * shared sub-expression the first time they evaluate it for an event and read it back afterwards.
+ *
+ * Results are only kept between {@link #begin(PointEvent)} and {@link #end()}, so an EBA evaluated on its own,
+ * outside of such a span, evaluates everything. Sub-expressions are identified by structural equality.
+ */
+public class SubexpressionCache {
+
+    private final Map<EBA, Integer> slots = new HashMap<>();  // Slot of every shared sub-expression
+    private final boolean[] values;  // Cached result by slot
+    private final long[] stamps;  // Span the result of a slot belongs to
+    private long stamp;  // Current span
+    private PointEvent event;  // Event of the current span, null outside of a span
+
+    /**
+     * Creates a cache for the sub-expressions that occur more than once in the given EBA trees, whether in
+     * different trees or within the same tree. Compiled EBAs are searched by their source tree.
+     *
+     * @param roots the EBA trees that are evaluated together.
+     */
+    public SubexpressionCache(Collection<? extends EBA> roots) {
+        Map<EBA, Integer> occurrences = new HashMap<>();
+        for (EBA root : roots) {
+            count(root, occurrences);
+        }
+        for (Map.Entry<EBA, Integer> entry : occurrences.entrySet()) {
+            if (entry.getValue() > 1) {
+                slots.put(entry.getKey(), slots.size());
+            }
+        }
+        this.values = new boolean[slots.size()];
+        this.stamps = new long[slots.size()];
+    }
+
+    /**
+     * Counts the occurrences of the sub-expressions of a tree. A repeated sub-expression is not descended into
+     * again: its own sub-expressions are covered by the cached result.
+     */
+    private static void count(EBA eba, Map<EBA, Integer> occurrences) {
+        if (eba instanceof CompiledEBA) {
+            count(((CompiledEBA) eba).getSource(), occurrences);
+            return;
+        }
+        if (occurrences.merge(eba, 1, Integer::sum) > 1) {
+            return;
+        }
+        if (eba instanceof AndEBA) {
+            count(((AndEBA) eba).getLeft(), occurrences);
+            count(((AndEBA) eba).getRight(), occurrences);
+        } else if (eba instanceof OrEBA) {
+            count(((OrEBA) eba).getLeft(), occurrences);
+            count(((OrEBA) eba).getRight(), occurrences);
+        } else if (eba instanceof NotEBA) {
+            count(((NotEBA) eba).getExpression(), occurrences);
+        }
+    }
+
+    /**
+     * @return the number of shared sub-expressions.
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * @param eba a sub-expression.
+     * @return the slot of the sub-expression, or -1 if it is not shared.
+     */
+    public int slotOf(EBA eba) {
+        Integer slot = slots.get(eba);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Starts evaluating the EBAs of the cache on an event; results cached for previous events are dropped.
+     *
+     * @param event the event about to be evaluated.
+     */
+    public void begin(PointEvent event) {
+        stamp++;
+        this.event = event;
+    }
+
+    /**
+     * Ends the evaluation of the current event.
+     */
+    public void end() {
+        event = null;
+    }
+
+    boolean isCached(int slot, PointEvent event) {
+        return stamps[slot] == stamp && event == this.event && event != null;
+    }
+
+    boolean get(int slot) {
+        return values[slot];
+    }
+
+    void put(int slot, PointEvent event, boolean value) {
+        if (event == this.event && event != null) {
+            values[slot] = value;
+            stamps[slot] = stamp;
+        }
+    }
+}
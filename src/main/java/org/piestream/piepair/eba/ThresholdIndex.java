@@ -0,0 +1,253 @@
+package org.piestream.piepair.eba;
+
+import org.piestream.events.EventLayout;
+import org.piestream.events.PointEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves many comparison predicates on the same attribute with a single binary search.
+ *
+ * Every EBA of a predicate list that is a single comparison of a primitive slot with a constant (a_i = 1,
+ * BOR &gt; 50, ...) is grouped by its attribute. The distinct constants of a group are sorted, which splits the
+ * values of the attribute into the constants themselves and the gaps between them. Within one of those positions
+ * every predicate of the group has the same result, so the predicate bits of all positions are computed up front.
+ * Evaluating an event then costs one binary search per attribute and one OR of a bitmask, instead of one comparison
+ * per predicate. Only attributes with at least {@link #MIN_GROUP_SIZE} such predicates are indexed.
+ *
+ * The positions follow Java's primitive comparisons: -0.0 equals 0.0, a NaN value or constant is never equal,
+ * greater or less. Events whose indexed slots do not all hold primitive values are not handled by the index,
+ * since their predicates fall back to the interpreted comparison.
+ */
+public class ThresholdIndex {
+
+    public static final int MIN_GROUP_SIZE = 2;  // Minimum number of predicates of an indexed attribute
+
+    private final EventLayout layout;  // Layout of the evaluated events
+    private final Group[] groups;  // Indexed attributes
+    private final long[] covered;  // Bits of the predicates resolved by the index
+
+    private ThresholdIndex(EventLayout layout, Group[] groups, long[] covered) {
+        this.layout = layout;
+        this.groups = groups;
+        this.covered = covered;
+    }
+
+    /**
+     * Builds the index of a predicate list.
+     *
+     * @param predicates the predicates by bit index
+     * @return the index, or null if no attribute has enough comparison predicates
+     */
+    public static ThresholdIndex build(EBA[] predicates) {
+        EventLayout layout = null;
+        Map<Integer, List<Integer>> byOrdinal = new LinkedHashMap<>();
+        for (int i = 0; i < predicates.length; i++) {
+            if (!isComparison(predicates[i])) {
+                continue;
+            }
+            CompiledEBA comparison = (CompiledEBA) predicates[i];
+            if (layout == null) {
+                layout = comparison.getLayout();
+            } else if (comparison.getLayout() != layout) {
+                continue;
+            }
+            byOrdinal.computeIfAbsent(comparison.ordinals[0], ordinal -> new ArrayList<>()).add(i);
+        }
+
+        int words = (predicates.length + 63) >>> 6;
+        long[] covered = new long[words];
+        List<Group> groups = new ArrayList<>();
+        for (Map.Entry<Integer, List<Integer>> entry : byOrdinal.entrySet()) {
+            if (entry.getValue().size() < MIN_GROUP_SIZE) {
+                continue;
+            }
+            groups.add(new Group(layout, entry.getKey(), entry.getValue(), predicates, words));
+            for (int index : entry.getValue()) {
+                covered[index >>> 6] |= 1L << index;
+            }
+        }
+        return groups.isEmpty() ? null : new ThresholdIndex(layout, groups.toArray(new Group[0]), covered);
+    }
+
+    /**
+     * Checks if an EBA is a single comparison of a primitive slot.
+     */
+    private static boolean isComparison(EBA eba) {
+        if (!(eba instanceof CompiledEBA)) {
+            return false;
+        }
+        CompiledEBA compiled = (CompiledEBA) eba;
+        return compiled.code.length == 1 && (compiled.code[0] == CompiledEBA.LEAF_LONG
+                || compiled.code[0] == CompiledEBA.LEAF_DOUBLE || compiled.code[0] == CompiledEBA.LEAF_FALSE);
+    }
+
+    /**
+     * @param index the bit index of a predicate
+     * @return true if the index resolves the predicate
+     */
+    public boolean covers(int index) {
+        return (covered[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Sets the bits of the indexed predicates that are true for the event. The bits of the indexed predicates
+     * must be clear before.
+     *
+     * @param event the event to be evaluated
+     * @param bits the predicate bits
+     * @return false, leaving the bits untouched, if the event cannot be resolved by the index
+     */
+    public boolean evaluate(PointEvent event, long[] bits) {
+        if (event.getLayout() != layout) {
+            return false;
+        }
+        for (Group group : groups) {
+            if (!event.isPrimitive(group.ordinal)) {
+                return false;
+            }
+        }
+        for (Group group : groups) {
+            long[] mask = group.lookup(event);
+            if (mask != null) {
+                for (int w = 0; w < mask.length; w++) {
+                    bits[w] |= mask[w];
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The comparison predicates of one attribute.
+     */
+    private static final class Group {
+        final int ordinal;  // Slot ordinal of the attribute
+        final boolean longs;  // Whether values are compared as longs
+        final boolean integral;  // Whether double values are read from a long slot
+        final long[] longPoints;  // Distinct sorted constants, if compared as longs
+        final double[] doublePoints;  // Distinct sorted constants, if compared as doubles
+        final long[][] masks;  // Predicate bits by position: gap i at 2i, constant i at 2i + 1
+
+        Group(EventLayout layout, int ordinal, List<Integer> indices, EBA[] predicates, int words) {
+            this.ordinal = ordinal;
+            byte kind = layout.getKind(ordinal);
+            this.longs = kind == EventLayout.KIND_INT || kind == EventLayout.KIND_LONG;  // Like the LEAF_LONG instructions
+            this.integral = layout.isIntegral(ordinal);
+
+            // Point index of every predicate, -1 if it is never true
+            int[] points = new int[indices.size()];
+            int count;
+            if (longs) {
+                long[] constants = new long[indices.size()];
+                count = 0;
+                for (int index : indices) {
+                    CompiledEBA comparison = (CompiledEBA) predicates[index];
+                    if (comparison.code[0] == CompiledEBA.LEAF_LONG) {
+                        constants[count++] = comparison.longConstants[0];
+                    }
+                }
+                longPoints = distinct(Arrays.copyOf(constants, count));
+                doublePoints = null;
+                for (int i = 0; i < points.length; i++) {
+                    CompiledEBA comparison = (CompiledEBA) predicates[indices.get(i)];
+                    points[i] = comparison.code[0] == CompiledEBA.LEAF_LONG
+                            ? Arrays.binarySearch(longPoints, comparison.longConstants[0]) : -1;
+                }
+                count = longPoints.length;
+            } else {
+                double[] constants = new double[indices.size()];
+                count = 0;
+                for (int index : indices) {
+                    CompiledEBA comparison = (CompiledEBA) predicates[index];
+                    double constant = comparison.doubleConstants[0];
+                    if (comparison.code[0] == CompiledEBA.LEAF_DOUBLE && !Double.isNaN(constant)) {
+                        constants[count++] = normalize(constant);
+                    }
+                }
+                doublePoints = distinct(Arrays.copyOf(constants, count));
+                longPoints = null;
+                for (int i = 0; i < points.length; i++) {
+                    CompiledEBA comparison = (CompiledEBA) predicates[indices.get(i)];
+                    double constant = comparison.doubleConstants[0];
+                    points[i] = comparison.code[0] == CompiledEBA.LEAF_DOUBLE && !Double.isNaN(constant)
+                            ? Arrays.binarySearch(doublePoints, normalize(constant)) : -1;
+                }
+                count = doublePoints.length;
+            }
+
+            masks = new long[2 * count + 1][words];
+            for (int position = 0; position < masks.length; position++) {
+                for (int i = 0; i < points.length; i++) {
+                    int index = indices.get(i);
+                    if (points[i] >= 0 && holds(((CompiledEBA) predicates[index]).comparisons[0], position, points[i])) {
+                        masks[position][index >>> 6] |= 1L << index;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the predicate bits of the position of the event's value, or null if no predicate holds.
+         */
+        long[] lookup(PointEvent event) {
+            int found;
+            if (longs) {
+                found = Arrays.binarySearch(longPoints, event.getLong(ordinal));
+            } else {
+                double value = integral ? event.getLong(ordinal) : event.getDouble(ordinal);
+                if (Double.isNaN(value)) {
+                    return null;
+                }
+                found = Arrays.binarySearch(doublePoints, normalize(value));
+            }
+            return masks[found >= 0 ? 2 * found + 1 : -2 * (found + 1)];
+        }
+
+        /**
+         * Checks if a comparison with the constant at point j holds for the values of a position.
+         */
+        private static boolean holds(byte comparison, int position, int j) {
+            int i = position >>> 1;
+            // Sign of value - constant
+            int sign = (position & 1) == 1 ? Integer.compare(i, j) : (j < i ? 1 : -1);
+            switch (comparison) {
+                case CompiledEBA.GREATER: return sign > 0;
+                case CompiledEBA.GREATER_OR_EQUAL: return sign >= 0;
+                case CompiledEBA.LESS: return sign < 0;
+                case CompiledEBA.LESS_OR_EQUAL: return sign <= 0;
+                default: return sign == 0;
+            }
+        }
+
+        private static double normalize(double value) {
+            return value == 0.0 ? 0.0 : value;  // -0.0 compares equal to 0.0
+        }
+
+        private static long[] distinct(long[] values) {
+            Arrays.sort(values);
+            int count = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (count == 0 || values[i] != values[count - 1]) {
+                    values[count++] = values[i];
+                }
+            }
+            return Arrays.copyOf(values, count);
+        }
+
+        private static double[] distinct(double[] values) {
+            Arrays.sort(values);
+            int count = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (count == 0 || values[i] != values[count - 1]) {
+                    values[count++] = values[i];
+                }
+            }
+            return Arrays.copyOf(values, count);
+        }
+    }
+}
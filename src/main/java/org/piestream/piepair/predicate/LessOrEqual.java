@@ -21,7 +21,7 @@ public class LessOrEqual implements Predicate {
     @Override
     public boolean test(PointEvent event, Attribute attribute, Object parameter) {
         // Retrieve the value of the specified attribute from the event's payload
-        Object attributeValue = event.getPayload().get(attribute);
+        Object attributeValue = event.getValue(attribute);
 
         if (attributeValue == null) {
             throw new IllegalArgumentException(
@@ -0,0 +1,120 @@
+package org.piestream.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SpscRingBuffer is a bounded, lock-free queue for exactly one producer thread and one consumer thread.
+ * The slot array is allocated once; the producer publishes an element by advancing the tail with an ordered
+ * store and the consumer frees the slot by advancing the head, so no locks or per-element allocations are needed.
+ * Each side caches the last seen index of the other side and only reads the shared counter when the cached
+ * value says the buffer is full or empty.
+ * The producer signals the end of the stream with {@link #close()}; elements offered before closing can still
+ * be polled afterwards.
+ *
+ * @param <E> The element type
+ */
+public class SpscRingBuffer<E> {
+
+    private final Object[] buffer;  // Preallocated slots, the length is a power of two
+    private final int mask;  // buffer.length - 1
+    private final AtomicLong head = new AtomicLong();  // Index of the next slot to poll, written by the consumer
+    private final AtomicLong tail = new AtomicLong();  // Index of the next slot to offer, written by the producer
+    private long cachedHead;  // Producer's copy of head
+    private long cachedTail;  // Consumer's copy of tail
+    private volatile boolean closed;  // Set by the producer after its last offer
+
+    /**
+     * Creates a ring buffer holding at least {@code capacity} elements. The capacity is rounded up to a power of two.
+     *
+     * @param capacity The minimum number of elements the buffer can hold
+     */
+    public SpscRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be in (0, " + (1 << 30) + "]: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new Object[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds an element at the tail. Must only be called by the producer thread.
+     *
+     * @param element The element to add, must not be null
+     * @return true if the element was added, false if the buffer is full
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element cannot be null");
+        }
+        long currentTail = tail.get();
+        if (currentTail - cachedHead >= buffer.length) {
+            cachedHead = head.get();
+            if (currentTail - cachedHead >= buffer.length) {
+                return false;
+            }
+        }
+        buffer[(int) currentTail & mask] = element;
+        tail.lazySet(currentTail + 1);  // Publishes the slot after it has been written
+        return true;
+    }
+
+    /**
+     * Removes the element at the head. Must only be called by the consumer thread.
+     *
+     * @return The head element, or null if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long currentHead = head.get();
+        if (currentHead >= cachedTail) {
+            cachedTail = tail.get();
+            if (currentHead >= cachedTail) {
+                return null;
+            }
+        }
+        int index = (int) currentHead & mask;
+        E element = (E) buffer[index];
+        buffer[index] = null;
+        head.lazySet(currentHead + 1);  // Hands the slot back to the producer
+        return element;
+    }
+
+    /**
+     * Marks the end of the stream. Must only be called by the producer thread, after its last offer.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Checks if the producer closed the buffer. Elements may still be pending.
+     *
+     * @return true if the buffer was closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns the number of slots of the buffer.
+     *
+     * @return The capacity of the buffer
+     */
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Returns the number of elements currently in the buffer. The value is only a snapshot when called
+     * concurrently with offer or poll.
+     *
+     * @return The number of pending elements
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+}
@@ -0,0 +1,117 @@
+package org.piestream.engine;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.piestream.datasource.DataSource;
+import org.piestream.datasource.FileDataSource;
+import org.piestream.evaluation.Correctness;
+import org.piestream.parser.Schema;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the batch paths of the engine and of a query group find the same results as applying every event
+ * on its own, over queries whose window data expires while events do not touch the tree.
+ */
+public class BatchApplyTest {
+
+    private static final String DATA_PATH = "src/main/resources/data/events_col4_row100000.csv";
+    private static final long LIMIT = 5000;  // Events read from the data file
+
+    // Predicates holding for most events, and predicates holding for few events, so the tree stays untouched for long
+    private static final String[] DEFINES = {
+            "A1 AS a_1 = 1 , A2 AS a_2 = 1 , A3 AS a_3 = 1 , A4 AS a_4 = 1",
+            "A1 AS ((a_1 = 1) & (a_2 = 1)) , A2 AS ((a_2 = 1) & (a_3 = 1)) , "
+                    + "A3 AS ((a_3 = 1) & (a_4 = 1)) , A4 AS ((a_1 = 1) & (a_4 = 1))"
+    };
+    private static final String[] PATTERNS = {
+            "A1 before A2",
+            "A1 after A2",
+            "A1 overlaps A2",
+            "A1 meets;overlaps;starts A2",
+            "A1 before A2 AND A2 overlaps A3",
+            "A1 overlaps A2 AND A2 before A3",
+            "A1 overlaps A2 AND A2 during;contains A3",
+            "A1 before A2 AND A2 overlaps A3 AND A3 before A4"
+    };
+    private static final long[] WINDOWS = {200, 500, 1000};  // Window sizes, well below the span of the events read
+
+    private static Schema schema;
+    private static List<String> lines;
+
+    @BeforeAll
+    public static void readData() throws IOException {
+        RuntimeSet.initialize(false, false);
+        schema = Correctness.buildSchema(4);
+        lines = new ArrayList<>();
+        try (DataSource dataSource = new FileDataSource(DATA_PATH, LIMIT)) {
+            String line;
+            while ((line = dataSource.readNext()) != null) {
+                lines.add(line);
+            }
+        }
+    }
+
+    private static String query(String define, String pattern, long windSize) {
+        return " FROM dataStream DEFINE " + define + " PATTERN " + pattern + " WITHIN " + windSize + " s RETURN A1.ts, A1.te";
+    }
+
+    private static long applyOneByOne(String query) {
+        Engine engine = new Engine(schema, query, WindowType.TIME_WINDOW);
+        for (String line : lines) {
+            engine.apply("", line);
+        }
+        return engine.getResultCNT();
+    }
+
+    private static long applyInBatches(String query, int batchSize) {
+        Engine engine = new Engine(schema, query, WindowType.TIME_WINDOW);
+        for (int i = 0; i < lines.size(); i += batchSize) {
+            engine.applyBatch(lines.subList(i, Math.min(lines.size(), i + batchSize)));
+        }
+        return engine.getResultCNT();
+    }
+
+    @Test
+    public void engineBatchesMatchOneByOne() throws IOException {
+        for (String define : DEFINES) {
+            for (String pattern : PATTERNS) {
+                for (long windSize : WINDOWS) {
+                    String query = query(define, pattern, windSize);
+                    long expected = applyOneByOne(query);
+                    assertEquals(expected, applyInBatches(query, 1), query);
+                    assertEquals(expected, applyInBatches(query, 1024), query);
+
+                    Engine engine = new Engine(schema, query, WindowType.TIME_WINDOW);
+                    try (DataSource dataSource = new FileDataSource(DATA_PATH, LIMIT)) {
+                        engine.applyBatch(dataSource, 100);
+                    }
+                    assertEquals(expected, engine.getResultCNT(), query);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void queryGroupBatchesMatchOneByOne() {
+        for (String define : DEFINES) {
+            for (long windSize : WINDOWS) {
+                List<String> queries = new ArrayList<>();
+                for (String pattern : PATTERNS) {
+                    queries.add(query(define, pattern, windSize));
+                }
+                QueryGroup group = new QueryGroup(schema, queries, WindowType.TIME_WINDOW);
+                for (int i = 0; i < lines.size(); i += 100) {
+                    group.applyBatch(lines.subList(i, Math.min(lines.size(), i + 100)));
+                }
+                for (int q = 0; q < queries.size(); q++) {
+                    assertEquals(applyOneByOne(queries.get(q)), group.getResultCNT(q), queries.get(q));
+                }
+            }
+        }
+    }
+}